@@ -0,0 +1,55 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * A forward-only ResultSet over in-memory string columns, so SqlUpdateProcessor can be measured without a
+ * database or driver in the way. Only next(), getString(int), getObject(int), getLong(int), close() and
+ * isClosed() are supported.
+ */
+final class ArrayResultSet implements InvocationHandler {
+    private final String[][] columns;
+    private final int rows;
+    private int row = -1;
+    private boolean closed = false;
+
+    private ArrayResultSet(String[][] columns) {
+        this.columns = columns;
+        this.rows = columns[0].length;
+    }
+
+    static ResultSet of(String[]... columns) {
+        return (ResultSet) Proxy.newProxyInstance(ArrayResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new ArrayResultSet(columns));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "next":
+                return ++row < rows;
+            case "getString":
+            case "getObject":
+                return column(args)[row];
+            case "getLong":
+                return Long.parseLong(column(args)[row]);
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private String[] column(Object[] args) {
+        if (!(args[0] instanceof Integer)) {
+            throw new UnsupportedOperationException("Only column index lookups are supported");
+        }
+        return columns[(Integer) args[0] - 1];
+    }
+}
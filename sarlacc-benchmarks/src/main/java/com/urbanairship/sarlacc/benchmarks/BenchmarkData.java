@@ -0,0 +1,69 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic data sets shared by the benchmarks. Strings mirror the shape of the deny lists the library
+ * was built for: 22 character alphanumeric ids, as produced by TestUtil in sarlacc-client.
+ */
+public final class BenchmarkData {
+    private static final char[] ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    private static final int ID_LENGTH = 22;
+
+    private BenchmarkData() {
+    }
+
+    public static String[] randomIds(int count, long seed) {
+        final Random random = new Random(seed);
+        final Set<String> ids = new LinkedHashSet<>(count * 2);
+        while (ids.size() < count) {
+            ids.add(randomId(random));
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    public static String randomId(Random random) {
+        final char[] chars = new char[ID_LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHANUMERIC[random.nextInt(ALPHANUMERIC.length)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Builds lookup keys where roughly {@code hitRatio} of the keys are present in {@code members}. Present keys
+     * are copied so that lookups can't short circuit on reference equality.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    public static String[] lookupKeys(String[] members, int count, double hitRatio, long seed) {
+        final Random random = new Random(seed);
+        final String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (random.nextDouble() < hitRatio) {
+                keys[i] = new String(members[random.nextInt(members.length)]);
+            } else {
+                keys[i] = randomId(random);
+            }
+        }
+        return keys;
+    }
+
+    public static byte[] lines(String[] items) {
+        final StringBuilder builder = new StringBuilder(items.length * (ID_LENGTH + 1));
+        for (String item : items) {
+            builder.append(item).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] delimitedLines(String[] keys, String[] values, String delimiter) {
+        final StringBuilder builder = new StringBuilder(keys.length * (2 * ID_LENGTH + 2));
+        for (int i = 0; i < keys.length; i++) {
+            builder.append(keys[i]).append(delimiter).append(values[i]).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
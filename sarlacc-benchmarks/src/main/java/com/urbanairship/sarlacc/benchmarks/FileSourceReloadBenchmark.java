@@ -0,0 +1,73 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableArrayStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.FileConfigSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A reload as the service performs it against a local file: fetch() from a FileConfigSource and process the
+ * stream into an ImmutableArrayStringSet, for both plain and gzipped files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FileSourceReloadBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean gzipped;
+
+    private File file;
+    private FileConfigSource source;
+    private MultilinePlaintextUpdateProcessor<Set<String>> processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("sarlacc-benchmark", gzipped ? ".txt.gz" : ".txt");
+        try (OutputStream out = gzipped ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+            out.write(BenchmarkData.lines(BenchmarkData.randomIds(size, 42L)));
+        }
+
+        source = new FileConfigSource(file.getAbsolutePath(), gzipped);
+        processor = new MultilinePlaintextUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public Set<String> fetchAndProcess() throws Exception {
+        try (Update<InputStream> update = source.fetch()) {
+            return processor.process(update.newVal);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableArrayStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.FileConfigSource;
+import com.urbanairship.sarlacc.client.source.MappedLinesConfigSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mapped counterpart of {@link FileSourceReloadBenchmark}'s uncompressed case: fetch() from
+ * {@link FileConfigSource#mapped(String)} and scan the buffer into an ImmutableArrayStringSet, on the calling thread
+ * or in parallel on the common pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MappedFileSourceReloadBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    private File file;
+    private MappedLinesConfigSource source;
+    private MappedLinesUpdateProcessor<Set<String>> processor;
+    private MappedLinesUpdateProcessor<Set<String>> parallelProcessor;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("sarlacc-benchmark", ".txt");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(BenchmarkData.lines(BenchmarkData.randomIds(size, 42L)));
+        }
+
+        source = FileConfigSource.mapped(file.getAbsolutePath());
+        processor = new MappedLinesUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER);
+        parallelProcessor = processor.parallel(ForkJoinPool.commonPool());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public Set<String> fetchAndProcess() throws Exception {
+        try (Update<List<ByteBuffer>> update = source.fetch()) {
+            return processor.process(update.newVal);
+        }
+    }
+
+    @Benchmark
+    public Set<String> fetchAndProcessParallel() throws Exception {
+        try (Update<List<ByteBuffer>> update = source.fetch()) {
+            return parallelProcessor.process(update.newVal);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the reload benchmarks (processors alone, and fetch plus process from a file) with the GC profiler
+ * attached, reporting gc.alloc.rate.norm (bytes allocated per reload) next to the timings. Any further JMH
+ * command line options are passed through, e.g. {@code -p size=1000000}.
+ */
+public final class ReloadAllocationProfile {
+    private ReloadAllocationProfile() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ReloadBenchmark.class.getName())
+                .include(FileSourceReloadBenchmark.class.getName())
+                .include(MappedFileSourceReloadBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
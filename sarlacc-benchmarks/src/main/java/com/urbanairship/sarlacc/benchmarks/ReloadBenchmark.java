@@ -0,0 +1,109 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import com.google.common.collect.Maps;
+import com.urbanairship.sarlacc.client.processor.DelimitedStreamMapProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableArrayStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.sql.SqlUpdateProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Time for one full reload, from raw source output to the finished immutable structure, for each of the
+ * bundled processors. Run with {@code -prof gc} (or through {@link ReloadAllocationProfile}) to get the bytes
+ * allocated per reload, which is what sizes the heap headroom a service needs while swapping values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ReloadBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private String[] keys;
+    private String[] values;
+    private byte[] plaintext;
+    private byte[] delimited;
+
+    private MultilinePlaintextUpdateProcessor<Set<String>> arrayStringSetProcessor;
+    private MultilinePlaintextUpdateProcessor<Set<String>> immutableSetProcessor;
+    private DelimitedStreamMapProcessor<String, String> delimitedMapProcessor;
+    private SqlUpdateProcessor<Map<String, String>> sqlMapProcessor;
+    private SqlUpdateProcessor<Set<String>> sqlSetProcessor;
+
+    @Setup
+    public void setUp() {
+        keys = BenchmarkData.randomIds(size, 42L);
+        values = BenchmarkData.randomIds(size, 43L);
+        plaintext = BenchmarkData.lines(keys);
+        delimited = BenchmarkData.delimitedLines(keys, values, ",");
+
+        arrayStringSetProcessor = new MultilinePlaintextUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER);
+        immutableSetProcessor = MultilinePlaintextUpdateProcessor.set(Function.identity());
+        delimitedMapProcessor = DelimitedStreamMapProcessor.supplierBuilder()
+                .setDelimiter(",")
+                .build()
+                .get();
+
+        sqlMapProcessor = SqlUpdateProcessor.map(resultSet -> {
+            try {
+                return Maps.immutableEntry(resultSet.getString(1), resultSet.getString(2));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        sqlSetProcessor = SqlUpdateProcessor.set(resultSet -> {
+            try {
+                return resultSet.getString(1);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public Set<String> plaintextImmutableArrayStringSet() throws IOException {
+        return arrayStringSetProcessor.process(new ByteArrayInputStream(plaintext));
+    }
+
+    @Benchmark
+    public Set<String> plaintextImmutableSet() throws IOException {
+        return immutableSetProcessor.process(new ByteArrayInputStream(plaintext));
+    }
+
+    @Benchmark
+    public Map<String, String> delimitedStreamMap() throws IOException {
+        return delimitedMapProcessor.process(new ByteArrayInputStream(delimited));
+    }
+
+    @Benchmark
+    public Map<String, String> sqlMap() throws IOException {
+        return sqlMapProcessor.process(ArrayResultSet.of(keys, values));
+    }
+
+    @Benchmark
+    public Set<String> sqlSet() throws IOException {
+        return sqlSetProcessor.process(ArrayResultSet.of(keys));
+    }
+}
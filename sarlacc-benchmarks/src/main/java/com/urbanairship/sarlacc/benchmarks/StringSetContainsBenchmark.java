@@ -0,0 +1,99 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayStringSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableHashStringSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of the string set implementations a service can be built on. The ImmutableArrayStringSet
+ * javadoc figures (relative speed versus guava's ImmutableSet, ns per lookup at 310k items) come from this.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringSetContainsBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    public enum Implementation {
+        IMMUTABLE_ARRAY_STRING_SET {
+            @Override
+            Set<String> build(String[] items) {
+                final ImmutableArrayStringSet.Builder builder = ImmutableArrayStringSet.newBuilder();
+                for (String item : items) {
+                    builder.add(item);
+                }
+                return builder.build();
+            }
+        },
+        IMMUTABLE_HASH_STRING_SET {
+            @Override
+            Set<String> build(String[] items) {
+                final ImmutableHashStringSet.Builder builder = ImmutableHashStringSet.newBuilder(items.length);
+                for (String item : items) {
+                    builder.add(item);
+                }
+                return builder.build();
+            }
+        },
+        GUAVA_IMMUTABLE_SET {
+            @Override
+            Set<String> build(String[] items) {
+                return ImmutableSet.copyOf(items);
+            }
+        },
+        HASH_SET {
+            @Override
+            Set<String> build(String[] items) {
+                return new HashSet<>(Arrays.asList(items));
+            }
+        };
+
+        abstract Set<String> build(String[] items);
+    }
+
+    @Param({"10000", "310000"})
+    public int size;
+
+    @Param({"0.5"})
+    public double hitRatio;
+
+    @Param
+    public Implementation implementation;
+
+    private Set<String> set;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final String[] items = BenchmarkData.randomIds(size, 42L);
+        set = implementation.build(items);
+        keys = BenchmarkData.lookupKeys(items, LOOKUP_KEYS, hitRatio, 1337L);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        final String key = keys[next];
+        next = (next + 1) & (LOOKUP_KEYS - 1);
+        return set.contains(key);
+    }
+}
@@ -0,0 +1,163 @@
+package com.urbanairship.sarlacc.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency through the UpdatingSet, UpdatingMap and UpdatingList wrappers handed out by running services,
+ * alongside the same lookup against the wrapped value directly. The difference between each pair is the cost
+ * of the per-read checkState() and the AtomicReference indirection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdatingCollectionBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"10000", "310000"})
+    public int size;
+
+    private Set<String> rawSet;
+    private Map<String, String> rawMap;
+    private List<String> rawList;
+
+    private UpdateService<Set<String>, Set<String>> setService;
+    private UpdateService<Map<String, String>, Map<String, String>> mapService;
+    private UpdateService<List<String>, List<String>> listService;
+
+    private Set<String> updatingSet;
+    private Map<String, String> updatingMap;
+    private List<String> updatingList;
+
+    private String[] keys;
+    private int[] indexes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final String[] items = BenchmarkData.randomIds(size, 42L);
+        final ImmutableMap.Builder<String, String> mapBuilder = ImmutableMap.builder();
+        for (String item : items) {
+            mapBuilder.put(item, item);
+        }
+
+        rawSet = ImmutableSet.copyOf(items);
+        rawMap = mapBuilder.build();
+        rawList = ImmutableList.copyOf(items);
+
+        setService = UpdateService.<Set<String>, String>setServiceBuilder()
+                .setServiceName("set-benchmark")
+                .setConfigSource(staticSource(rawSet))
+                .setUpdateProcessor(input -> input)
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+        mapService = UpdateService.<Map<String, String>, String, String>mapServiceBuilder()
+                .setServiceName("map-benchmark")
+                .setConfigSource(staticSource(rawMap))
+                .setUpdateProcessor(input -> input)
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+        listService = UpdateService.<List<String>, String>listServiceBuilder()
+                .setServiceName("list-benchmark")
+                .setConfigSource(staticSource(rawList))
+                .setUpdateProcessor(input -> input)
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        setService.startAsync().awaitRunning();
+        mapService.startAsync().awaitRunning();
+        listService.startAsync().awaitRunning();
+
+        updatingSet = setService.getUpdatingCollection();
+        updatingMap = mapService.getUpdatingCollection();
+        updatingList = listService.getUpdatingCollection();
+
+        keys = BenchmarkData.lookupKeys(items, LOOKUP_KEYS, 0.5, 1337L);
+        indexes = new int[LOOKUP_KEYS];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = Math.floorMod(keys[i].hashCode(), size);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        setService.stopAsync().awaitTerminated();
+        mapService.stopAsync().awaitTerminated();
+        listService.stopAsync().awaitTerminated();
+    }
+
+    private static <T> ConfigSource<T> staticSource(T value) {
+        return new ConfigSource<T>() {
+            @Override
+            public Update<T> fetch() {
+                return new Update<>(1, value);
+            }
+
+            @Override
+            public Optional<Update<T>> fetchIfNewer(long ifNewerThan) {
+                return Optional.empty();
+            }
+        };
+    }
+
+    private int nextSlot() {
+        final int slot = next;
+        next = (next + 1) & (LOOKUP_KEYS - 1);
+        return slot;
+    }
+
+    @Benchmark
+    public boolean rawSetContains() {
+        return rawSet.contains(keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public boolean updatingSetContains() {
+        return updatingSet.contains(keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public String rawMapGet() {
+        return rawMap.get(keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public String updatingMapGet() {
+        return updatingMap.get(keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public String rawListGet() {
+        return rawList.get(indexes[nextSlot()]);
+    }
+
+    @Benchmark
+    public String updatingListGet() {
+        return updatingList.get(indexes[nextSlot()]);
+    }
+}
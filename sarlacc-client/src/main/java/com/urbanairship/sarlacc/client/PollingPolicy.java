@@ -0,0 +1,118 @@
+package com.urbanairship.sarlacc.client;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long an {@link UpdateService} waits between checks. The default, {@link #fixed()}, checks once per
+ * fetch interval. Policies built with {@link #newBuilder()} can add:
+ * <ul>
+ * <li>jitter, so that instances started together drift apart instead of polling the source in lockstep. The
+ * first check after startup is jittered too.</li>
+ * <li>exponential backoff while checks are failing, so an unhealthy source isn't polled at full rate.</li>
+ * <li>adaptive polling, checking at a minimum interval right after a change and backing off geometrically towards
+ * a maximum interval while the source stays quiet. In this mode the service's fetch interval is not used.</li>
+ * </ul>
+ * Failure backoff takes precedence over adaptive polling, and jitter is applied last.
+ */
+public final class PollingPolicy {
+    private static final PollingPolicy FIXED = new PollingPolicy(0, 1, Long.MAX_VALUE, 0, 0);
+
+    private final double jitter;
+    private final double backoffMultiplier;
+    private final long maxBackoffMillis;
+    private final long adaptiveMinMillis;
+    private final long adaptiveMaxMillis;
+
+    private PollingPolicy(double jitter, double backoffMultiplier, long maxBackoffMillis,
+                          long adaptiveMinMillis, long adaptiveMaxMillis) {
+        this.jitter = jitter;
+        this.backoffMultiplier = backoffMultiplier;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.adaptiveMinMillis = adaptiveMinMillis;
+        this.adaptiveMaxMillis = adaptiveMaxMillis;
+    }
+
+    public static PollingPolicy fixed() {
+        return FIXED;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @param fetchIntervalMillis The service's configured fetch interval.
+     * @param successiveFailures  Number of checks in a row which have failed, zero if the last check succeeded.
+     * @param checksSinceChange   Number of successful checks since the value last changed, zero if the last
+     *                            check changed it or the service has just started.
+     * @return the delay before the next check, in milliseconds
+     */
+    public long nextDelayMillis(long fetchIntervalMillis, int successiveFailures, int checksSinceChange) {
+        double delay;
+        if (successiveFailures > 0 && backoffMultiplier > 1) {
+            // a cap below the fetch interval must not make a failing source be polled faster than a healthy one
+            delay = Math.max(fetchIntervalMillis,
+                    Math.min(fetchIntervalMillis * Math.pow(backoffMultiplier, successiveFailures), maxBackoffMillis));
+        } else if (adaptiveMinMillis > 0) {
+            delay = Math.min(adaptiveMinMillis * Math.pow(2, checksSinceChange), adaptiveMaxMillis);
+        } else {
+            delay = fetchIntervalMillis;
+        }
+
+        if (jitter > 0) {
+            delay *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+        return Math.max(1, Math.round(delay));
+    }
+
+    public static class Builder {
+        private double jitter = 0;
+        private double backoffMultiplier = 1;
+        private long maxBackoffMillis = Long.MAX_VALUE;
+        private long adaptiveMinMillis = 0;
+        private long adaptiveMaxMillis = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * @param jitter Each delay is scaled by a random factor in [1 - jitter, 1 + jitter). Must be in [0, 1).
+         */
+        public Builder setJitter(double jitter) {
+            Preconditions.checkArgument(jitter >= 0 && jitter < 1, "jitter must be in [0, 1)");
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * After n failures in a row, wait fetchInterval * multiplier^n, capped at maxBackoff. A failing source is
+         * never checked more often than the fetch interval, even if maxBackoff is shorter.
+         */
+        public Builder setFailureBackoff(double multiplier, long maxBackoff, TimeUnit timeUnit) {
+            Preconditions.checkArgument(multiplier >= 1, "multiplier must be at least 1");
+            Preconditions.checkArgument(maxBackoff > 0, "maxBackoff must be positive");
+            this.backoffMultiplier = multiplier;
+            this.maxBackoffMillis = timeUnit.toMillis(maxBackoff);
+            return this;
+        }
+
+        /**
+         * Check after minInterval following a change, doubling the delay after every check which finds nothing
+         * new, up to maxInterval.
+         */
+        public Builder setAdaptive(long minInterval, long maxInterval, TimeUnit timeUnit) {
+            Preconditions.checkArgument(minInterval > 0, "minInterval must be positive");
+            Preconditions.checkArgument(maxInterval >= minInterval, "maxInterval must not be less than minInterval");
+            this.adaptiveMinMillis = timeUnit.toMillis(minInterval);
+            this.adaptiveMaxMillis = timeUnit.toMillis(maxInterval);
+            return this;
+        }
+
+        public PollingPolicy build() {
+            return new PollingPolicy(jitter, backoffMultiplier, maxBackoffMillis, adaptiveMinMillis, adaptiveMaxMillis);
+        }
+    }
+}
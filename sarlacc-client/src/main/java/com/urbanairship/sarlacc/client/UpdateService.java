@@ -14,23 +14,47 @@ import com.urbanairship.sarlacc.client.metrics.JmxMetricNamer;
 import com.urbanairship.sarlacc.client.metrics.MetricNamer;
 import com.urbanairship.sarlacc.client.model.LastSuccessDetails;
 import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.IncrementalUpdateProcessor;
 import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ChangeNotifyingConfigSource;
 import com.urbanairship.sarlacc.client.source.ConfigSource;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingCollection;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingIntMap;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingIntSet;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingList;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingLongMap;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingLongSet;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingMap;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingSet;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingUuidMap;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingUuidSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidSet;
+import com.urbanairship.sarlacc.client.structures.primitive.IntMap;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidMap;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidSet;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -58,10 +82,24 @@ public class UpdateService<S, C> extends AbstractIdleService {
     private final String serviceName;
     private final long fetchIntervalMillis;
     private final ScheduledExecutorService executorService;
+    private final boolean ownsExecutorService;
+    private final FetcherRunnable fetcher = new FetcherRunnable();
+
+    private final Object scheduleLock = new Object();
+    // guarded by scheduleLock
+    private ScheduledFuture<?> scheduledFetch;
+    private boolean stopped = false;
+    // only touched by startUp() and then by the fetcher, which run one after the other
+    private long nextFetchNanos;
+
+    private final AtomicReference<CompletableFuture<Void>> pendingRefresh = new AtomicReference<>(null);
+    private volatile boolean checkInProgress = false;
 
     private final FailureCallback failureCallback;
     private final UpdateCallback<C> updateCallback;
     private final AtomicInteger successiveFailures = new AtomicInteger(0);
+    private final AtomicInteger checksSinceChange = new AtomicInteger(0);
+    private final PollingPolicy pollingPolicy;
     private final long maxFailures;
 
     private final AtomicReference<Instant> lastSuccessfulCheck;
@@ -77,7 +115,8 @@ public class UpdateService<S, C> extends AbstractIdleService {
                           AtomicReference<C> reference, UpdatingCollection<C> updatingCollection,
                           final long fetchIntervalMillis, String serviceName, long maxFailures, Optional<MetricRegistry> metricRegistry,
                           MetricNamer metricNamer, FailureCallback failureCallback, UpdateCallback<C> updateCallback,
-                          Optional<C> fallbackValue, long fallbackVersion) {
+                          Optional<C> fallbackValue, long fallbackVersion,
+                          Optional<ScheduledExecutorService> sharedExecutorService, PollingPolicy pollingPolicy) {
 
         this.configSource = configSource;
         this.updateProcessor = updateProcessor;
@@ -92,7 +131,9 @@ public class UpdateService<S, C> extends AbstractIdleService {
         this.fallbackVersion = fallbackVersion;
 
         this.currentVersion = new AtomicReference<>(0L);
-        this.executorService = Executors.newScheduledThreadPool(1);
+        this.executorService = sharedExecutorService.orElseGet(() -> Executors.newScheduledThreadPool(1));
+        this.ownsExecutorService = !sharedExecutorService.isPresent();
+        this.pollingPolicy = pollingPolicy;
         this.lastSuccessfulCheck = new AtomicReference<>(Instant.now());
 
         this.metrics = metricRegistry.map(registry -> new Metrics(registry, metricNamer));
@@ -122,6 +163,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
     protected synchronized void startUp() throws Exception {
         try (Update<S> initialFetch = configSource.fetch()) {
             C initialVal = updateProcessor.process(initialFetch.newVal);
+            initialFetch.markProcessed();
 
             reference.set(initialVal);
             currentVersion.set(initialFetch.version);
@@ -170,17 +212,152 @@ public class UpdateService<S, C> extends AbstractIdleService {
             }
         }
 
-        executorService.scheduleAtFixedRate(new FetcherRunnable(), fetchIntervalMillis, fetchIntervalMillis, TimeUnit.MILLISECONDS);
+        nextFetchNanos = System.nanoTime();
+        scheduleNextFetch();
+
+        if (configSource instanceof ChangeNotifyingConfigSource) {
+            // refreshNow() rejects calls until startUp() returns; a change arriving before then is left to the
+            // source to report again on the next scheduled check
+            try {
+                ((ChangeNotifyingConfigSource<S>) configSource).startWatching(this::refreshNow);
+            } catch (IOException e) {
+                log.error(String.format("Couldn't watch source for %s, relying on scheduled checks", serviceName), e);
+            }
+        }
     }
 
     @Override
     protected void shutDown() {
-        executorService.shutdown();
+        if (configSource instanceof ChangeNotifyingConfigSource) {
+            ((ChangeNotifyingConfigSource<S>) configSource).stopWatching();
+        }
+
+        final CompletableFuture<Void> refresh = pendingRefresh.getAndSet(null);
+        if (refresh != null) {
+            refresh.completeExceptionally(new IllegalStateException(String.format("UpdateService %s stopped", serviceName)));
+        }
+
+        synchronized (scheduleLock) {
+            stopped = true;
+            if (scheduledFetch != null) {
+                // lets an in progress check finish, as shutdown() does
+                scheduledFetch.cancel(false);
+            }
+        }
+        if (ownsExecutorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /*
+     * Each check schedules the next one. Delays are measured from when the previous check was due rather than from
+     * when it finished, so that with the fixed policy checks keep to the same rate as scheduleAtFixedRate would; a
+     * check which overruns its slot is followed immediately, without a burst of catch up runs.
+     */
+    private void scheduleNextFetch() {
+        final long delayMillis = pollingPolicy.nextDelayMillis(fetchIntervalMillis, successiveFailures.get(), checksSinceChange.get());
+        final long now = System.nanoTime();
+        nextFetchNanos = Math.max(nextFetchNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis), now);
+
+        synchronized (scheduleLock) {
+            if (!stopped) {
+                scheduledFetch = executorService.schedule(fetcher, nextFetchNanos - now, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Check for an update now rather than waiting for the next scheduled check, e.g. when a new version is known to
+     * have just been published. Calls made before the requested check starts share it, so any number of concurrent
+     * callers result in a single fetch. The check runs on the service's executor and, like scheduled checks, never
+     * overlaps another.
+     *
+     * @return a future completing when the check does, or exceptionally with the error if it fails or the service
+     * isn't running
+     */
+    public CompletableFuture<Void> refreshNow() {
+        if (!isRunning()) {
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException(String.format("UpdateService %s is %s", serviceName, state())));
+            return failed;
+        }
+
+        while (true) {
+            final CompletableFuture<Void> pending = pendingRefresh.get();
+            if (pending != null) {
+                return pending;
+            }
+
+            final CompletableFuture<Void> refresh = new CompletableFuture<>();
+            if (pendingRefresh.compareAndSet(null, refresh)) {
+                try {
+                    executorService.execute(() -> {
+                        // a scheduled check may already have started since, and taken care of it
+                        if (pendingRefresh.get() != null) {
+                            runCheck();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    pendingRefresh.compareAndSet(refresh, null);
+                    refresh.completeExceptionally(e);
+                }
+                return refresh;
+            }
+        }
+    }
+
+    private void runCheck() {
+        final CompletableFuture<Void> refresh;
+        final Optional<Throwable> failure;
+        synchronized (this) {
+            checkInProgress = true;
+            try {
+                // whoever asked for a refresh before this point is answered by this check
+                refresh = pendingRefresh.getAndSet(null);
+                failure = fetcher.check();
+            } finally {
+                checkInProgress = false;
+            }
+        }
+
+        // completed outside the lock, since dependent stages may run on this thread
+        if (refresh != null) {
+            if (failure.isPresent()) {
+                refresh.completeExceptionally(failure.get());
+            } else {
+                refresh.complete(null);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private C process(Update<S> update, boolean onFallback) throws IOException {
+        if (!onFallback && updateProcessor instanceof IncrementalUpdateProcessor) {
+            // the current value came from this same processor, so it is of the type the processor expects
+            return ((IncrementalUpdateProcessor<S, C>) updateProcessor).process(update.newVal, reference.get(), currentVersion.get());
+        }
+        return updateProcessor.process(update.newVal);
     }
 
     private class FetcherRunnable implements Runnable {
         @Override
         public void run() {
+            try {
+                if (checkInProgress) {
+                    // an on demand refresh is running on another thread of a shared executor, no need to repeat it
+                    log.debug(String.format("Skipping scheduled check for '%s', a check is in progress", serviceName));
+                } else {
+                    runCheck();
+                }
+            } finally {
+                scheduleNextFetch();
+            }
+        }
+
+        /**
+         * @return the exception which failed the check, if any
+         */
+        private Optional<Throwable> check() {
             try {
                 if (log.isDebugEnabled()) {
                     log.debug("Performing update run for " + serviceName);
@@ -188,8 +365,9 @@ public class UpdateService<S, C> extends AbstractIdleService {
                 // This shouldn't be called in an overlapping manner, but let's be paranoid.
                 synchronized (UpdateService.this) {
                     final Optional<Update<S>> maybeUpdate;
+                    final boolean onFallback = fallbackValue.isPresent() && fallbackValue.get() == reference.get();
                     try (AutoCloseable checkTime = getTimer(Metrics::getCheckTimer)) {
-                        if (fallbackValue.isPresent() && fallbackValue.get() == reference.get()) {
+                        if (onFallback) {
                             maybeUpdate = Optional.of(configSource.fetch());
                         } else {
                             maybeUpdate = configSource.fetchIfNewer(currentVersion.get());
@@ -203,7 +381,8 @@ public class UpdateService<S, C> extends AbstractIdleService {
                             final C oldVal;
                             final long oldVersion;
                             try (final AutoCloseable processTime = getTimer(Metrics::getFetchAndProcessTimer)) {
-                                newVal = updateProcessor.process(update.newVal);
+                                newVal = process(update, onFallback);
+                                update.markProcessed();
                                 newVersion = update.version;
                                 oldVal = reference.get();
                                 oldVersion = currentVersion.get();
@@ -212,27 +391,39 @@ public class UpdateService<S, C> extends AbstractIdleService {
                                 currentVersion.set(newVersion);
                             }
 
-                            log.info("Updated backing value for " + serviceName);
-
-                            try (final AutoCloseable callbackTimer = getTimer(Metrics::getUpdateCallbackTimer)) {
-                                final Optional<C> oldValForCallback;
-                                final Optional<Long> oldVersionForCallback;
-                                if (fallbackValue.isPresent() && fallbackValue.get() == oldVal) {
-                                    oldValForCallback = Optional.empty();
-                                    oldVersionForCallback = Optional.empty();
-                                } else {
-                                    oldValForCallback = Optional.of(oldVal);
-                                    oldVersionForCallback = Optional.of(oldVersion);
+                            if (newVal == oldVal) {
+                                // The processor handed back the value we already hold, e.g. DigestingUpdateProcessor
+                                // seeing identical content under a new version, so there is nothing to announce.
+                                log.info(String.format("Payload for %s unchanged at version %d, keeping current value", serviceName, newVersion));
+                                metrics.ifPresent(metrics -> metrics.getSkippedIdenticalPayloads().inc());
+                                checksSinceChange.incrementAndGet();
+                            } else {
+                                checksSinceChange.set(0);
+                                log.info("Updated backing value for " + serviceName);
+
+                                try (final AutoCloseable callbackTimer = getTimer(Metrics::getUpdateCallbackTimer)) {
+                                    final Optional<C> oldValForCallback;
+                                    final Optional<Long> oldVersionForCallback;
+                                    if (fallbackValue.isPresent() && fallbackValue.get() == oldVal) {
+                                        oldValForCallback = Optional.empty();
+                                        oldVersionForCallback = Optional.empty();
+                                    } else {
+                                        oldValForCallback = Optional.of(oldVal);
+                                        oldVersionForCallback = Optional.of(oldVersion);
+                                    }
+
+                                    updateCallback.onUpdate(oldValForCallback, oldVersionForCallback, newVal, newVersion);
+                                } catch (Throwable t) {
+                                    log.error("Update callback threw!", t);
+                                    metrics.ifPresent(metrics -> metrics.getUpdateCallbackFailures().inc());
                                 }
-
-                                updateCallback.onUpdate(oldValForCallback, oldVersionForCallback, newVal, newVersion);
-                            } catch (Throwable t) {
-                                log.error("Update callback threw!", t);
-                                metrics.ifPresent(metrics -> metrics.getUpdateCallbackFailures().inc());
                             }
                         }
-                    } else if (log.isDebugEnabled()) {
-                        log.debug(String.format("Checked for update for '%s', but everything was up to date.", serviceName));
+                    } else {
+                        checksSinceChange.incrementAndGet();
+                        if (log.isDebugEnabled()) {
+                            log.debug(String.format("Checked for update for '%s', but everything was up to date.", serviceName));
+                        }
                     }
 
                     successiveFailures.set(0);
@@ -240,6 +431,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
                     lastError.set(null);
                     lastSuccessfulCheck.set(Instant.now());
                 }
+                return Optional.empty();
             } catch (Throwable t) {
                 final int failures = successiveFailures.incrementAndGet();
                 if (failures >= maxFailures) {
@@ -264,7 +456,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
 
                         case SHUT_DOWN:
                             UpdateService.this.stopAsync();
-                            return;
+                            return Optional.of(t);
 
                         default:
                             log.error("Unknown failure callback action!");
@@ -274,6 +466,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
                     log.error("Failure callback threw!", callbackThrown);
                     metrics.ifPresent(metrics -> metrics.getFailureCallbackFailures().inc());
                 }
+                return Optional.of(t);
             }
         }
     }
@@ -293,6 +486,36 @@ public class UpdateService<S, C> extends AbstractIdleService {
         return new Builder<>(ref, new UpdatingList<>(ref));
     }
 
+    public static <S> Builder<S, LongSet> longSetServiceBuilder() {
+        AtomicReference<LongSet> ref = new AtomicReference<>(ImmutableArrayLongSet.of());
+        return new Builder<>(ref, new UpdatingLongSet(ref));
+    }
+
+    public static <S> Builder<S, IntSet> intSetServiceBuilder() {
+        AtomicReference<IntSet> ref = new AtomicReference<>(ImmutableArrayIntSet.of());
+        return new Builder<>(ref, new UpdatingIntSet(ref));
+    }
+
+    public static <S, V> Builder<S, LongMap<V>> longMapServiceBuilder() {
+        AtomicReference<LongMap<V>> ref = new AtomicReference<>(ImmutableArrayLongMap.<V>of());
+        return new Builder<>(ref, new UpdatingLongMap<>(ref));
+    }
+
+    public static <S, V> Builder<S, IntMap<V>> intMapServiceBuilder() {
+        AtomicReference<IntMap<V>> ref = new AtomicReference<>(ImmutableArrayIntMap.<V>of());
+        return new Builder<>(ref, new UpdatingIntMap<>(ref));
+    }
+
+    public static <S> Builder<S, UuidSet> uuidSetServiceBuilder() {
+        AtomicReference<UuidSet> ref = new AtomicReference<>(ImmutableUuidSet.of());
+        return new Builder<>(ref, new UpdatingUuidSet(ref));
+    }
+
+    public static <S, V> Builder<S, UuidMap<V>> uuidMapServiceBuilder() {
+        AtomicReference<UuidMap<V>> ref = new AtomicReference<>(ImmutableUuidMap.<V>of());
+        return new Builder<>(ref, new UpdatingUuidMap<>(ref));
+    }
+
     public static class Builder<S, D> {
         private final AtomicReference<D> backingRef;
         private final UpdatingCollection<D> collectionWrapper;
@@ -312,6 +535,8 @@ public class UpdateService<S, C> extends AbstractIdleService {
         };
         private FailureCallback failureCallback = (d, t) -> FailureCallback.Action.NO_ACTION;
         private long maxFailures = Long.MAX_VALUE;
+        private Optional<ScheduledExecutorService> executorService = Optional.empty();
+        private PollingPolicy pollingPolicy = PollingPolicy.fixed();
 
         private Builder(AtomicReference<D> backingRef, UpdatingCollection<D> collectionWrapper) {
             this.backingRef = backingRef;
@@ -369,6 +594,32 @@ public class UpdateService<S, C> extends AbstractIdleService {
             return this;
         }
 
+        /**
+         * Schedule checks on the given executor rather than on a single thread owned by the service, so that many
+         * services can share a bounded pool. The executor is not shut down with the service.
+         * <p>
+         * A service's checks still never overlap each other. Scheduled checks are one-shot tasks, each scheduling the
+         * next only once it has finished, so at most one is pending at a time. Checks started by {@link #refreshNow()}
+         * may run alongside a scheduled one on another thread of the pool, but every check holds the service's monitor
+         * while it runs, and a scheduled check which finds one already in progress skips its fetch.
+         * <p>
+         * Checks block their thread for the whole fetch and process, so the pool should be sized for the number of
+         * services expected to be fetching at once, or a slow source will delay the checks of the others.
+         */
+        public Builder<S, D> setScheduledExecutorService(ScheduledExecutorService executorService) {
+            this.executorService = Optional.of(executorService);
+            return this;
+        }
+
+        /**
+         * Adds jitter, failure backoff or adaptive intervals to the schedule of checks, see {@link PollingPolicy}.
+         * Defaults to checking once every fetch interval.
+         */
+        public Builder<S, D> setPollingPolicy(PollingPolicy pollingPolicy) {
+            this.pollingPolicy = Preconditions.checkNotNull(pollingPolicy);
+            return this;
+        }
+
         public UpdateService<S, D> build() {
             Preconditions.checkNotNull(serviceName);
             Preconditions.checkNotNull(updateProcessor);
@@ -378,7 +629,8 @@ public class UpdateService<S, C> extends AbstractIdleService {
 
             final UpdateService<S, D> updateService = new UpdateService<>(configSource, updateProcessor, backingRef,
                     collectionWrapper, fetchIntervalMillis, serviceName, maxFailures, metricRegistry, metricNamer,
-                    failureCallback, updateCallback, fallbackValue, fallbackVersion);
+                    failureCallback, updateCallback, fallbackValue, fallbackVersion, executorService,
+                    pollingPolicy);
 
             collectionWrapper.setUpdateService(updateService);
 
@@ -403,6 +655,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
         private final Counter updateCallbackFailures;
         private final Counter fetchFailureCallbackFailures;
         private final Counter fallbackUsed;
+        private final Counter skippedIdenticalPayloads;
 
         private Metrics(MetricRegistry metricRegistry, MetricNamer metricNamer) {
             this.checkTimer = metricRegistry.timer(metricNamer.name(UpdateService.class, "Check Time", Optional.of(serviceName)));
@@ -413,6 +666,7 @@ public class UpdateService<S, C> extends AbstractIdleService {
             this.updateCallbackFailures = metricRegistry.counter(metricNamer.name(UpdateService.class, "Update Callback Errors", Optional.of(serviceName)));
             this.fetchFailureCallbackFailures = metricRegistry.counter(metricNamer.name(UpdateService.class, "Fetch Failure Callback Errors", Optional.of(serviceName)));
             this.fallbackUsed = metricRegistry.counter(metricNamer.name(UpdateService.class, "Fallback Used", Optional.of(serviceName)));
+            this.skippedIdenticalPayloads = metricRegistry.counter(metricNamer.name(UpdateService.class, "Skipped Identical Payloads", Optional.of(serviceName)));
 
             metricRegistry.register(metricNamer.name(UpdateService.class, "Check Age", Optional.of(serviceName)),
                     (Gauge<Long>) () -> System.currentTimeMillis() - lastSuccessfulCheck.get().toEpochMilli());
@@ -452,5 +706,9 @@ public class UpdateService<S, C> extends AbstractIdleService {
         private Counter getFallbackUsed() {
             return fallbackUsed;
         }
+
+        private Counter getSkippedIdenticalPayloads() {
+            return skippedIdenticalPayloads;
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.urbanairship.sarlacc.client.model;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+
+/**
+ * Payload of a source which can send either a full snapshot or a patch relative to an earlier version, for use with
+ * {@link com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor}.
+ * <p>
+ * Such a source should answer fetch() with a snapshot, since the service calls it when it has nothing to patch,
+ * and may answer fetchIfNewer(ifNewerThan) with a patch whose base version is ifNewerThan. A patch against any
+ * other version is rejected by the processor, failing the check, so a source which can't produce a patch from the
+ * requested version should send a snapshot instead.
+ */
+public final class Delta<P> implements AutoCloseable {
+    public final P payload;
+
+    private final boolean patch;
+    private final long baseVersion;
+
+    private Delta(P payload, boolean patch, long baseVersion) {
+        this.payload = Preconditions.checkNotNull(payload);
+        this.patch = patch;
+        this.baseVersion = baseVersion;
+    }
+
+    public static <P> Delta<P> snapshot(P payload) {
+        return new Delta<>(payload, false, 0);
+    }
+
+    public static <P> Delta<P> patch(long baseVersion, P payload) {
+        return new Delta<>(payload, true, baseVersion);
+    }
+
+    public boolean isPatch() {
+        return patch;
+    }
+
+    /**
+     * @return the version this patch applies to
+     * @throws IllegalStateException if this is a snapshot
+     */
+    public long getBaseVersion() {
+        Preconditions.checkState(patch, "A snapshot has no base version");
+        return baseVersion;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (payload instanceof Closeable) {
+            ((Closeable) payload).close();
+        } else if (payload instanceof AutoCloseable) {
+            ((AutoCloseable) payload).close();
+        }
+    }
+}
@@ -6,11 +6,25 @@ public class Update<T> implements AutoCloseable {
     public final long version;
     public final T newVal;
 
+    private volatile boolean processed = false;
+
     public Update(long version, T newVal) {
         this.version = version;
         this.newVal = newVal;
     }
 
+    /**
+     * Called by the update service once newVal has been successfully processed, before the update is closed.
+     * Sources can check this in close() to act only on payloads which were actually accepted.
+     */
+    public void markProcessed() {
+        processed = true;
+    }
+
+    public boolean isProcessed() {
+        return processed;
+    }
+
     @Override
     public void close() throws Exception {
         if (newVal instanceof Closeable) {
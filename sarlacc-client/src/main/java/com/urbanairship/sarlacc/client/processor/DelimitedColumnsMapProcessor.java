@@ -0,0 +1,296 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.ChunkedLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.ParallelLines;
+import com.urbanairship.sarlacc.client.processor.flatfile.Utf8Lines;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds a map from two columns of a delimited file, e.g. a TSV or CSV export, one entry per line. Delimiters are
+ * literal strings found by index rather than regexes, and only the key and value columns are ever copied out of
+ * the line; other columns are skipped over. Lines may have any number of columns at or beyond those selected.
+ * <p>
+ * When a quote character is set, a field which starts with it runs to the next unpaired quote, may contain the
+ * delimiter, and uses a doubled quote for a literal one, as in RFC 4180. Quoted fields can't span lines.
+ * Empty lines are skipped.
+ */
+public class DelimitedColumnsMapProcessor<K, V> implements UpdateProcessor<InputStream, Map<K, V>> {
+    private static final char NO_QUOTE = 0;
+
+    private final String delimiter;
+    private final int keyColumn;
+    private final int valueColumn;
+    private final char quote;
+    private final boolean skipHeader;
+    private final Function<String, K> keyParser;
+    private final Function<String, V> valueParser;
+    private final ForkJoinPool pool;
+
+    private DelimitedColumnsMapProcessor(String delimiter, int keyColumn, int valueColumn, char quote, boolean skipHeader,
+                                         Function<String, K> keyParser, Function<String, V> valueParser,
+                                         ForkJoinPool pool) {
+        this.delimiter = delimiter;
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+        this.quote = quote;
+        this.skipHeader = skipHeader;
+        this.keyParser = keyParser;
+        this.valueParser = valueParser;
+        this.pool = pool;
+    }
+
+    public static Builder<String, String> newBuilder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public Map<K, V> process(InputStream input) throws IOException {
+        Preconditions.checkNotNull(input);
+        if (pool != null) {
+            return ParallelLines.readLines(input, ColumnsLineProcessor::new, pool, ParallelLines.DEFAULT_CHUNK_SIZE);
+        }
+        return Utf8Lines.readLines(input, new ColumnsLineProcessor());
+    }
+
+    /**
+     * For use with {@link com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor}, including
+     * its parallel mode.
+     */
+    public Supplier<AbstractLineProcessor<Map<K, V>>> lineProcessorSupplier() {
+        return ColumnsLineProcessor::new;
+    }
+
+    private class ColumnsLineProcessor extends ChunkedLineProcessor<Map<K, V>> {
+        // raw entries, so merging chunks is a concatenation and the map is only built once
+        private final ArrayList<Map.Entry<K, V>> entries = new ArrayList<>();
+        private final int lastColumn = Math.max(keyColumn, valueColumn);
+        private boolean headerSkipped = !skipHeader;
+
+        // the fields of the current line, set by readColumns()
+        private String keyText;
+        private String valueText;
+
+        @Override
+        public void process(String line) {
+            process((CharSequence) line);
+        }
+
+        @Override
+        public void process(CharSequence line) {
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            if (line.length() == 0) {
+                return;
+            }
+
+            readColumns(line);
+
+            final K key;
+            try {
+                key = keyParser.apply(keyText);
+            } catch (Throwable t) {
+                throw new RuntimeException(String.format("Couldn't parse key from line: '%s'", line), t);
+            }
+
+            final V value;
+            try {
+                value = valueParser.apply(valueText);
+            } catch (Throwable t) {
+                throw new RuntimeException(String.format("Couldn't parse value from line: '%s'", line), t);
+            }
+
+            entries.add(Maps.immutableEntry(Preconditions.checkNotNull(key), Preconditions.checkNotNull(value)));
+        }
+
+        private void readColumns(CharSequence line) {
+            final int length = line.length();
+            int column = 0;
+            int start = 0;
+            while (true) {
+                final boolean wanted = column == keyColumn || column == valueColumn;
+                final int end;
+                String text = null;
+
+                if (quote != NO_QUOTE && start < length && line.charAt(start) == quote) {
+                    boolean escapes = false;
+                    int i = start + 1;
+                    while (true) {
+                        if (i >= length) {
+                            throw new RuntimeException(String.format("Unterminated quoted field in line: '%s'", line));
+                        }
+                        if (line.charAt(i) == quote) {
+                            if (i + 1 < length && line.charAt(i + 1) == quote) {
+                                escapes = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    end = i + 1;
+                    if (end < length && !delimiterAt(line, end)) {
+                        throw new RuntimeException(String.format("Expected '%s' after quoted field in line: '%s'", delimiter, line));
+                    }
+                    if (wanted) {
+                        text = line.subSequence(start + 1, i).toString();
+                        if (escapes) {
+                            text = text.replace(new String(new char[]{quote, quote}), String.valueOf(quote));
+                        }
+                    }
+                } else {
+                    final int next = indexOfDelimiter(line, start);
+                    end = next < 0 ? length : next;
+                    if (wanted) {
+                        text = line.subSequence(start, end).toString();
+                    }
+                }
+
+                if (column == keyColumn) {
+                    keyText = text;
+                }
+                if (column == valueColumn) {
+                    valueText = text;
+                }
+
+                if (column == lastColumn) {
+                    return;
+                }
+                if (end >= length) {
+                    throw new RuntimeException(String.format("Expected at least %d columns, but got %d in line: '%s'",
+                            lastColumn + 1, column + 1, line));
+                }
+                column++;
+                start = end + delimiter.length();
+            }
+        }
+
+        private int indexOfDelimiter(CharSequence line, int from) {
+            final int last = line.length() - delimiter.length();
+            for (int i = from; i <= last; i++) {
+                if (delimiterAt(line, i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean delimiterAt(CharSequence line, int offset) {
+            if (offset + delimiter.length() > line.length()) {
+                return false;
+            }
+            for (int i = 0; i < delimiter.length(); i++) {
+                if (line.charAt(offset + i) != delimiter.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<Map<K, V>> next) {
+            entries.addAll(((ColumnsLineProcessor) next).entries);
+        }
+
+        @Override
+        public void markContinuation() {
+            headerSkipped = true;
+        }
+
+        @Override
+        public Map<K, V> getResult() {
+            return ImmutableMap.copyOf(entries);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static class Builder<K, V> {
+        private Function keyParser = Function.identity();
+        private Function valueParser = Function.identity();
+
+        private String delimiter = "\t";
+        private int keyColumn = 0;
+        private int valueColumn = 1;
+        private char quote = NO_QUOTE;
+        private boolean skipHeader = false;
+        private ForkJoinPool pool = null;
+
+        private Builder() {
+        }
+
+        public <NK> Builder<NK, V> setKeyParser(Function<String, NK> keyParser) {
+            this.keyParser = keyParser;
+            return (Builder<NK, V>) this;
+        }
+
+        public <NV> Builder<K, NV> setValueParser(Function<String, NV> valueParser) {
+            this.valueParser = valueParser;
+            return (Builder<K, NV>) this;
+        }
+
+        /**
+         * @param delimiter Literal string separating columns, tab by default.
+         */
+        public Builder<K, V> setDelimiter(String delimiter) {
+            Preconditions.checkArgument(delimiter != null && !delimiter.isEmpty(), "delimiter must not be empty");
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * @param keyColumn   Zero based index of the key column, 0 by default.
+         * @param valueColumn Zero based index of the value column, 1 by default.
+         */
+        public Builder<K, V> setColumns(int keyColumn, int valueColumn) {
+            Preconditions.checkArgument(keyColumn >= 0 && valueColumn >= 0, "columns must not be negative");
+            this.keyColumn = keyColumn;
+            this.valueColumn = valueColumn;
+            return this;
+        }
+
+        /**
+         * Enables quoted fields, typically with '"' for CSV. Off by default.
+         */
+        public Builder<K, V> setQuoteChar(char quote) {
+            Preconditions.checkArgument(quote != NO_QUOTE, "quote must not be the NUL character");
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * Ignore the first line of each payload.
+         */
+        public Builder<K, V> setSkipHeader(boolean skipHeader) {
+            this.skipHeader = skipHeader;
+            return this;
+        }
+
+        /**
+         * Parse chunks of each payload in parallel on the given pool, see {@link ParallelLines}.
+         */
+        public Builder<K, V> setForkJoinPool(ForkJoinPool pool) {
+            this.pool = Preconditions.checkNotNull(pool);
+            return this;
+        }
+
+        public DelimitedColumnsMapProcessor<K, V> build() {
+            Preconditions.checkState(quote == NO_QUOTE || delimiter.indexOf(quote) < 0,
+                    "delimiter must not contain the quote character");
+            return new DelimitedColumnsMapProcessor<>(delimiter, keyColumn, valueColumn, quote, skipHeader,
+                    keyParser, valueParser, pool);
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package com.urbanairship.sarlacc.client.processor;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.io.CharStreams;
 import com.google.common.io.LineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.Utf8Lines;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class DelimitedStreamMapProcessor<K, V> implements UpdateProcessor<InputStream, Map<K, V>> {
     private final Supplier<LineProcessor<Map<K, V>>> lineProcessorSupplier;
@@ -20,7 +21,7 @@ public class DelimitedStreamMapProcessor<K, V> implements UpdateProcessor<InputS
 
     @Override
     public Map<K, V> process(InputStream input) throws IOException {
-        return CharStreams.readLines(new InputStreamReader(input), lineProcessorSupplier.get());
+        return Utf8Lines.readLines(input, lineProcessorSupplier.get());
     }
 
     public static SupplierBuilder<String, String> supplierBuilder() {
@@ -56,41 +57,96 @@ public class DelimitedStreamMapProcessor<K, V> implements UpdateProcessor<InputS
         }
     }
 
-    private static class ParsingLineProcessor<K, V> implements LineProcessor<Map<K, V>> {
+    private static class ParsingLineProcessor<K, V> extends AbstractLineProcessor<Map<K, V>> {
+        private static final Pattern REGEX_METACHARACTERS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
         private final ImmutableMap.Builder<K, V> mapBuilder = ImmutableMap.builder();
 
         private final Function<String, K> keyParser;
         private final Function<String, V> valueParser;
         private final String delimiter;
+        // set when the delimiter regex only matches itself, so lines can be split without the regex engine
+        private final String literalDelimiter;
 
         public ParsingLineProcessor(Function<String, K> keyParser, Function<String, V> valueParser, String delimiter) {
             this.keyParser = keyParser;
             this.valueParser = valueParser;
             this.delimiter = delimiter;
+            this.literalDelimiter = !delimiter.isEmpty() && !REGEX_METACHARACTERS.matcher(delimiter).find() ? delimiter : null;
         }
 
         @Override
-        public boolean processLine(String line) throws IOException {
+        public void process(String line) {
             final String[] split = line.split(delimiter);
             if (split.length != 2) {
                 throw new RuntimeException(String.format("Expected line in format 'key%svalue', but got: '%s'", delimiter, line));
             }
+            put(line, split[0], split[1]);
+        }
+
+        @Override
+        public void process(CharSequence line) {
+            if (literalDelimiter == null) {
+                process(line.toString());
+                return;
+            }
+
+            // the same fields String.split() would find, which drops trailing empty fields so "k:v:" is accepted
+            final int keyEnd = indexOf(line, 0);
+            final int valueStart = keyEnd + literalDelimiter.length();
+            int valueEnd = keyEnd < 0 ? -1 : indexOf(line, valueStart);
+            if (valueEnd < 0) {
+                valueEnd = line.length();
+            }
+            if (keyEnd < 0 || valueEnd == valueStart || !onlyDelimiters(line, valueEnd)) {
+                throw new RuntimeException(String.format("Expected line in format 'key%svalue', but got: '%s'", delimiter, line));
+            }
+            put(line, line.subSequence(0, keyEnd).toString(), line.subSequence(valueStart, valueEnd).toString());
+        }
 
+        private void put(CharSequence line, String keyText, String valueText) {
             final K key;
             try {
-                key = keyParser.apply(split[0]);
+                key = keyParser.apply(keyText);
             } catch (Throwable t) {
                 throw new RuntimeException(String.format("Couldn't parse key from line: '%s'", line), t);
             }
 
             final V value;
             try {
-                value = valueParser.apply(split[1]);
+                value = valueParser.apply(valueText);
             } catch (Throwable t) {
                 throw new RuntimeException(String.format("Couldn't parse value from line: '%s'", line), t);
             }
 
             mapBuilder.put(key, value);
+        }
+
+        private int indexOf(CharSequence line, int from) {
+            final int last = line.length() - literalDelimiter.length();
+            for (int i = from; i <= last; i++) {
+                if (matchesAt(line, i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean onlyDelimiters(CharSequence line, int from) {
+            for (int i = from; i < line.length(); i += literalDelimiter.length()) {
+                if (i + literalDelimiter.length() > line.length() || !matchesAt(line, i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesAt(CharSequence line, int offset) {
+            for (int i = 0; i < literalDelimiter.length(); i++) {
+                if (line.charAt(offset + i) != literalDelimiter.charAt(i)) {
+                    return false;
+                }
+            }
             return true;
         }
 
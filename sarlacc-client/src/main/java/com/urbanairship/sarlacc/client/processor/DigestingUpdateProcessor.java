@@ -0,0 +1,136 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.urbanairship.sarlacc.client.source.DigestedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Wraps a stream processor, skipping payloads which are byte for byte identical to the previous one. The previous
+ * result is returned in place of a new one, and the update service then keeps its current value rather than
+ * swapping in an equal copy and firing the update callback.
+ * <p>
+ * When the payload's digest is known up front, because the source served a {@link DigestedInputStream}, an
+ * identical payload is never handed to the delegate, so no duplicate structure is built at all. Buffers, such as
+ * memory mapped files, can be hashed before parsing too, see {@link #mapped(UpdateProcessor)} and
+ * {@link #mappedLines(UpdateProcessor)}. Other streams can
+ * only be read once, so they are hashed as the delegate consumes them: the delegate still parses the payload, and
+ * what is saved is the swap, the callback, and the promotion and collection of a second full sized copy.
+ * <p>
+ * Instances remember the last result, so each should be used by a single service.
+ */
+public class DigestingUpdateProcessor<C> implements UpdateProcessor<InputStream, C> {
+    private final UpdateProcessor<InputStream, C> delegate;
+    private final HashFunction hashFunction;
+    private final LastResult<C> last = new LastResult<>();
+
+    public DigestingUpdateProcessor(UpdateProcessor<InputStream, C> delegate) {
+        this(delegate, Hashing.murmur3_128());
+    }
+
+    public DigestingUpdateProcessor(UpdateProcessor<InputStream, C> delegate, HashFunction hashFunction) {
+        this.delegate = Preconditions.checkNotNull(delegate);
+        this.hashFunction = Preconditions.checkNotNull(hashFunction);
+    }
+
+    /**
+     * A processor for buffers, e.g. from {@link com.urbanairship.sarlacc.client.source.MappedFileConfigSource},
+     * which hashes the buffer before parsing it and skips the delegate entirely when nothing changed.
+     */
+    public static <C> UpdateProcessor<ByteBuffer, C> mapped(UpdateProcessor<ByteBuffer, C> delegate) {
+        return mapped(delegate, Hashing.murmur3_128());
+    }
+
+    public static <C> UpdateProcessor<ByteBuffer, C> mapped(UpdateProcessor<ByteBuffer, C> delegate, HashFunction hashFunction) {
+        return hashedFirst(delegate, hashFunction, (hasher, input) -> hasher.putBytes(input.duplicate()));
+    }
+
+    /**
+     * A processor for the windows of a file mapped by
+     * {@link com.urbanairship.sarlacc.client.source.MappedLinesConfigSource}, which hashes them before parsing and
+     * skips the delegate entirely when nothing changed.
+     */
+    public static <C> UpdateProcessor<List<ByteBuffer>, C> mappedLines(UpdateProcessor<List<ByteBuffer>, C> delegate) {
+        return mappedLines(delegate, Hashing.murmur3_128());
+    }
+
+    public static <C> UpdateProcessor<List<ByteBuffer>, C> mappedLines(UpdateProcessor<List<ByteBuffer>, C> delegate,
+                                                                      HashFunction hashFunction) {
+        return hashedFirst(delegate, hashFunction, (hasher, input) -> {
+            for (ByteBuffer window : input) {
+                hasher.putBytes(window.duplicate());
+            }
+        });
+    }
+
+    private static <S, C> UpdateProcessor<S, C> hashedFirst(UpdateProcessor<S, C> delegate, HashFunction hashFunction,
+                                                           BiConsumer<Hasher, S> hashInput) {
+        Preconditions.checkNotNull(delegate);
+        Preconditions.checkNotNull(hashFunction);
+        final LastResult<C> last = new LastResult<>();
+        return input -> {
+            Preconditions.checkNotNull(input);
+            final Hasher hasher = hashFunction.newHasher();
+            hashInput.accept(hasher, input);
+            final HashCode digest = hasher.hash();
+            synchronized (last) {
+                if (last.matches(digest, false)) {
+                    return last.result;
+                }
+                return last.remember(digest, false, delegate.process(input));
+            }
+        };
+    }
+
+    @Override
+    public synchronized C process(InputStream input) throws IOException {
+        Preconditions.checkNotNull(input);
+
+        if (input instanceof DigestedInputStream) {
+            final HashCode digest = ((DigestedInputStream) input).getDigest();
+            if (last.matches(digest, true)) {
+                return last.result;
+            }
+            return last.remember(digest, true, delegate.process(input));
+        }
+
+        final HashingInputStream hashingInput = new HashingInputStream(hashFunction, input);
+        final C result = delegate.process(hashingInput);
+        // anything the delegate left unread is still part of the content
+        ByteStreams.exhaust(hashingInput);
+        final HashCode digest = hashingInput.hash();
+
+        if (last.matches(digest, false)) {
+            return last.result;
+        }
+        return last.remember(digest, false, result);
+    }
+
+    private static class LastResult<C> {
+        private HashCode digest;
+        // digests from sources and our own hashes are never compared with each other
+        private boolean fromSource;
+        private C result;
+
+        private boolean matches(HashCode digest, boolean fromSource) {
+            return result != null && this.fromSource == fromSource && digest.equals(this.digest);
+        }
+
+        private C remember(HashCode digest, boolean fromSource, C result) {
+            this.digest = digest;
+            this.fromSource = fromSource;
+            this.result = result;
+            return result;
+        }
+    }
+}
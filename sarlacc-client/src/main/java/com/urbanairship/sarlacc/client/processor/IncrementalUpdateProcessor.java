@@ -0,0 +1,17 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import java.io.IOException;
+
+/**
+ * An update processor which can build on the value the service already holds, e.g. by applying a patch to it.
+ * The update service calls {@link #process(Object)} for the initial fetch and while it is serving a fallback
+ * value, and {@link #process(Object, Object, long)} for every later update.
+ */
+public interface IncrementalUpdateProcessor<S, C> extends UpdateProcessor<S, C> {
+    /**
+     * @param current        The value the service currently holds, previously returned by this processor. It may
+     *                       still be in use by readers, so it must not be modified.
+     * @param currentVersion The version of current.
+     */
+    C process(S input, C current, long currentVersion) throws IOException;
+}
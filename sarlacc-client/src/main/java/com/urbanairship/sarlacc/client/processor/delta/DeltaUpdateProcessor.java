@@ -0,0 +1,335 @@
+package com.urbanairship.sarlacc.client.processor.delta;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.processor.IncrementalUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.Utf8Lines;
+import com.urbanairship.sarlacc.client.structures.impl.PersistentHashMap;
+import com.urbanairship.sarlacc.client.structures.impl.PersistentHashSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Processes {@link Delta} payloads: snapshots are built in full by one processor, and patches are applied to the
+ * service's current value by a {@link PatchApplier}, after checking that the patch was made against the version
+ * the service holds.
+ * <p>
+ * {@link #set} and {@link #map} handle line based payloads. Snapshots hold one element, or one
+ * {@code key<delimiter>value} entry, per line. Patch lines are {@code +element} or {@code +key<delimiter>value} to
+ * add or replace and {@code -element} or {@code -key} to remove, applied in order, so the last line for a key wins.
+ * Empty lines are skipped in both. The results are {@link PersistentHashSet}s and {@link PersistentHashMap}s, so a
+ * patch costs time and memory in proportion to its own size rather than that of the whole collection.
+ */
+public class DeltaUpdateProcessor<P, C> implements IncrementalUpdateProcessor<Delta<P>, C> {
+    private final UpdateProcessor<P, ? extends C> snapshotProcessor;
+    private final PatchApplier<P, C> patchApplier;
+
+    public DeltaUpdateProcessor(UpdateProcessor<P, ? extends C> snapshotProcessor, PatchApplier<P, C> patchApplier) {
+        this.snapshotProcessor = Preconditions.checkNotNull(snapshotProcessor);
+        this.patchApplier = Preconditions.checkNotNull(patchApplier);
+    }
+
+    @Override
+    public C process(Delta<P> input) throws IOException {
+        Preconditions.checkNotNull(input);
+        if (input.isPatch()) {
+            throw new IOException(String.format("Got a patch against version %d, but there is no current value to apply it to",
+                    input.getBaseVersion()));
+        }
+        return snapshotProcessor.process(input.payload);
+    }
+
+    @Override
+    public C process(Delta<P> input, C current, long currentVersion) throws IOException {
+        Preconditions.checkNotNull(input);
+        if (!input.isPatch()) {
+            return snapshotProcessor.process(input.payload);
+        }
+        if (input.getBaseVersion() != currentVersion) {
+            throw new IOException(String.format("Got a patch against version %d, but the current version is %d",
+                    input.getBaseVersion(), currentVersion));
+        }
+        return patchApplier.apply(current, input.payload);
+    }
+
+    public static <T> DeltaUpdateProcessor<InputStream, Set<T>> set(final Function<String, T> parseFunc) {
+        final UpdateProcessor<InputStream, Set<T>> snapshot = input -> Utf8Lines.readLines(input, new AbstractLineProcessor<Set<T>>() {
+            private final PersistentHashSet.Builder<T> builder = PersistentHashSet.newBuilder();
+
+            @Override
+            public void process(String line) {
+                if (!line.isEmpty()) {
+                    builder.add(Preconditions.checkNotNull(parseFunc.apply(line)));
+                }
+            }
+
+            @Override
+            public Set<T> getResult() {
+                return builder.build();
+            }
+        });
+
+        return new DeltaUpdateProcessor<>(snapshot, setPatchApplier(parseFunc));
+    }
+
+    /**
+     * @param delimiter Literal (not a regex) separating keys from values. Lines are split at its first occurrence.
+     */
+    public static <K, V> DeltaUpdateProcessor<InputStream, Map<K, V>> map(final String delimiter,
+                                                                          final Function<String, K> keyParser,
+                                                                          final Function<String, V> valueParser) {
+        Preconditions.checkArgument(!delimiter.isEmpty(), "delimiter must not be empty");
+
+        final UpdateProcessor<InputStream, Map<K, V>> snapshot = input -> Utf8Lines.readLines(input, new AbstractLineProcessor<Map<K, V>>() {
+            private final PersistentHashMap.Builder<K, V> builder = PersistentHashMap.newBuilder();
+
+            @Override
+            public void process(String line) {
+                if (!line.isEmpty()) {
+                    final int split = splitAt(line, delimiter);
+                    builder.put(keyParser.apply(line.substring(0, split)), valueParser.apply(line.substring(split + delimiter.length())));
+                }
+            }
+
+            @Override
+            public Map<K, V> getResult() {
+                return builder.build();
+            }
+        });
+
+        return new DeltaUpdateProcessor<>(snapshot, mapPatchApplier(delimiter, keyParser, valueParser));
+    }
+
+    /**
+     * For logs such as those followed by {@link com.urbanairship.sarlacc.client.source.AppendLogConfigSource}, where
+     * snapshots are made of the same {@code +element} / {@code -element} lines as patches, replayed from empty.
+     * Snapshots are replayed into a plain HashSet and copied once, rather than built up as pending changes.
+     */
+    public static <T> DeltaUpdateProcessor<InputStream, Set<T>> appendLogSet(final Function<String, T> parseFunc) {
+        final UpdateProcessor<InputStream, Set<T>> snapshot = input -> {
+            final Set<T> elements = new HashSet<>();
+            Utf8Lines.readLines(input, new PatchLineProcessor() {
+                @Override
+                void add(String element) {
+                    elements.add(Preconditions.checkNotNull(parseFunc.apply(element)));
+                }
+
+                @Override
+                void remove(String element) {
+                    elements.remove(Preconditions.checkNotNull(parseFunc.apply(element)));
+                }
+            });
+            return PersistentHashSet.copyOf(elements);
+        };
+
+        return new DeltaUpdateProcessor<>(snapshot, setPatchApplier(parseFunc));
+    }
+
+    /**
+     * As {@link #appendLogSet}, with {@link #map} style patch lines.
+     */
+    public static <K, V> DeltaUpdateProcessor<InputStream, Map<K, V>> appendLogMap(final String delimiter,
+                                                                                   final Function<String, K> keyParser,
+                                                                                   final Function<String, V> valueParser) {
+        Preconditions.checkArgument(!delimiter.isEmpty(), "delimiter must not be empty");
+
+        final UpdateProcessor<InputStream, Map<K, V>> snapshot = input -> {
+            final Map<K, V> entries = new HashMap<>();
+            Utf8Lines.readLines(input, new PatchLineProcessor() {
+                @Override
+                void add(String entry) {
+                    final int split = splitAt(entry, delimiter);
+                    entries.put(Preconditions.checkNotNull(keyParser.apply(entry.substring(0, split))),
+                            Preconditions.checkNotNull(valueParser.apply(entry.substring(split + delimiter.length()))));
+                }
+
+                @Override
+                void remove(String key) {
+                    entries.remove(Preconditions.checkNotNull(keyParser.apply(key)));
+                }
+            });
+            return PersistentHashMap.copyOf(entries);
+        };
+
+        return new DeltaUpdateProcessor<>(snapshot, mapPatchApplier(delimiter, keyParser, valueParser));
+    }
+
+    /**
+     * For incremental sources such as {@link com.urbanairship.sarlacc.client.source.JdbcConfigSource}, where snapshots
+     * and patches are both rows, and a patch holds the rows changed since the base version.
+     *
+     * @param deleted Whether a row is a tombstone. In snapshots these are skipped, in patches they remove the element.
+     */
+    public static <T> DeltaUpdateProcessor<ResultSet, Set<T>> sqlSet(final Function<ResultSet, T> parseFunc,
+                                                                    final Predicate<ResultSet> deleted) {
+        final UpdateProcessor<ResultSet, Set<T>> snapshot = input -> {
+            final PersistentHashSet.Builder<T> builder = PersistentHashSet.newBuilder();
+            forEachRow(input, row -> {
+                if (!deleted.test(row)) {
+                    builder.add(Preconditions.checkNotNull(parseFunc.apply(row)));
+                }
+            });
+            return builder.build();
+        };
+
+        final PatchApplier<ResultSet, Set<T>> patch = (current, input) -> {
+            final Set<T> additions = new HashSet<>();
+            final Set<T> removals = new HashSet<>();
+            forEachRow(input, row -> {
+                final T parsed = Preconditions.checkNotNull(parseFunc.apply(row));
+                if (deleted.test(row)) {
+                    additions.remove(parsed);
+                    removals.add(parsed);
+                } else {
+                    removals.remove(parsed);
+                    additions.add(parsed);
+                }
+            });
+            return PersistentHashSet.copyOf(current).withChanges(removals, additions);
+        };
+
+        return new DeltaUpdateProcessor<>(snapshot, patch);
+    }
+
+    /**
+     * As {@link #sqlSet}, for maps. The value function is not called for deleted rows.
+     */
+    public static <K, V> DeltaUpdateProcessor<ResultSet, Map<K, V>> sqlMap(final Function<ResultSet, K> keyFunc,
+                                                                          final Function<ResultSet, V> valueFunc,
+                                                                          final Predicate<ResultSet> deleted) {
+        final UpdateProcessor<ResultSet, Map<K, V>> snapshot = input -> {
+            final PersistentHashMap.Builder<K, V> builder = PersistentHashMap.newBuilder();
+            forEachRow(input, row -> {
+                if (!deleted.test(row)) {
+                    builder.put(Preconditions.checkNotNull(keyFunc.apply(row)), Preconditions.checkNotNull(valueFunc.apply(row)));
+                }
+            });
+            return builder.build();
+        };
+
+        final PatchApplier<ResultSet, Map<K, V>> patch = (current, input) -> {
+            final Map<K, V> upserts = new HashMap<>();
+            final Set<K> removals = new HashSet<>();
+            forEachRow(input, row -> {
+                final K key = Preconditions.checkNotNull(keyFunc.apply(row));
+                if (deleted.test(row)) {
+                    upserts.remove(key);
+                    removals.add(key);
+                } else {
+                    removals.remove(key);
+                    upserts.put(key, Preconditions.checkNotNull(valueFunc.apply(row)));
+                }
+            });
+            return PersistentHashMap.copyOf(current).withChanges(removals, upserts);
+        };
+
+        return new DeltaUpdateProcessor<>(snapshot, patch);
+    }
+
+    private static void forEachRow(ResultSet resultSet, Consumer<ResultSet> action) throws IOException {
+        try {
+            while (resultSet.next()) {
+                action.accept(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <T> PatchApplier<InputStream, Set<T>> setPatchApplier(final Function<String, T> parseFunc) {
+        return (current, input) -> {
+            final Set<T> additions = new HashSet<>();
+            final Set<T> removals = new HashSet<>();
+            Utf8Lines.readLines(input, new PatchLineProcessor() {
+                @Override
+                void add(String element) {
+                    final T parsed = Preconditions.checkNotNull(parseFunc.apply(element));
+                    removals.remove(parsed);
+                    additions.add(parsed);
+                }
+
+                @Override
+                void remove(String element) {
+                    final T parsed = Preconditions.checkNotNull(parseFunc.apply(element));
+                    additions.remove(parsed);
+                    removals.add(parsed);
+                }
+            });
+            return PersistentHashSet.copyOf(current).withChanges(removals, additions);
+        };
+    }
+
+    private static <K, V> PatchApplier<InputStream, Map<K, V>> mapPatchApplier(final String delimiter,
+                                                                             final Function<String, K> keyParser,
+                                                                             final Function<String, V> valueParser) {
+        return (current, input) -> {
+            final Map<K, V> upserts = new HashMap<>();
+            final Set<K> removals = new HashSet<>();
+            Utf8Lines.readLines(input, new PatchLineProcessor() {
+                @Override
+                void add(String entry) {
+                    final int split = splitAt(entry, delimiter);
+                    final K key = Preconditions.checkNotNull(keyParser.apply(entry.substring(0, split)));
+                    removals.remove(key);
+                    upserts.put(key, Preconditions.checkNotNull(valueParser.apply(entry.substring(split + delimiter.length()))));
+                }
+
+                @Override
+                void remove(String key) {
+                    final K parsed = Preconditions.checkNotNull(keyParser.apply(key));
+                    upserts.remove(parsed);
+                    removals.add(parsed);
+                }
+            });
+            return PersistentHashMap.copyOf(current).withChanges(removals, upserts);
+        };
+    }
+
+    private static int splitAt(String line, String delimiter) {
+        final int split = line.indexOf(delimiter);
+        if (split < 0) {
+            throw new IllegalArgumentException(String.format("Expected line in format 'key%svalue', but got: '%s'", delimiter, line));
+        }
+        return split;
+    }
+
+    private abstract static class PatchLineProcessor extends AbstractLineProcessor<Void> {
+        abstract void add(String element);
+
+        abstract void remove(String element);
+
+        @Override
+        public void process(String line) {
+            if (line.isEmpty()) {
+                return;
+            }
+            switch (line.charAt(0)) {
+                case '+':
+                    add(line.substring(1));
+                    break;
+                case '-':
+                    remove(line.substring(1));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Expected patch line starting with '+' or '-', but got: '%s'", line));
+            }
+        }
+
+        @Override
+        public Void getResult() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.urbanairship.sarlacc.client.processor.delta;
+
+import java.io.IOException;
+
+/**
+ * Applies a patch payload to the current value, returning the patched value. The current value may still be in use
+ * by readers, so it must be left unchanged, typically by using persistent structures such as
+ * {@link com.urbanairship.sarlacc.client.structures.impl.PersistentHashSet}.
+ */
+public interface PatchApplier<P, C> {
+    C apply(C current, P patch) throws IOException;
+}
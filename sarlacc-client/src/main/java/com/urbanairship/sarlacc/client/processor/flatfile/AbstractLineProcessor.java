@@ -18,5 +18,15 @@ public abstract class AbstractLineProcessor<T> implements LineProcessor<T> {
 
     public abstract void process(String line);
 
+    /**
+     * Called by {@link Utf8Lines} with a view of the line's bytes. The view is reused for the next line, so it must
+     * not be retained; copy whatever is kept, e.g. with toString() or subSequence(). By default this simply calls
+     * {@link #process(String)}. Processors which parse or keep only part of each line can override it to avoid
+     * creating a String per line.
+     */
+    public void process(CharSequence line) {
+        process(line.toString());
+    }
+
     public abstract T getResult();
 }
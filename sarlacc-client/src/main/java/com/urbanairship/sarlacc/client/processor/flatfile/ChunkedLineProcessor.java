@@ -0,0 +1,20 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+/**
+ * A line processor which can take part in parallel parsing: each chunk of the input is fed to a processor of its
+ * own, and the processors are then merged in input order before getResult() is called on the first of them.
+ */
+public abstract class ChunkedLineProcessor<T> extends AbstractLineProcessor<T> {
+    /**
+     * Adds everything next has processed, which came from the part of the input immediately following what this
+     * processor has seen. next is always an instance from the same supplier, and is discarded afterwards.
+     */
+    public abstract void merge(ChunkedLineProcessor<T> next);
+
+    /**
+     * Called before any lines are processed when this processor's chunk is not the start of the input. Does
+     * nothing by default; processors which treat the first line specially, e.g. as a header, override it.
+     */
+    public void markContinuation() {
+    }
+}
@@ -0,0 +1,59 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntSet;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+
+import java.util.function.Supplier;
+
+/**
+ * Parses one decimal int per line, ignoring blank lines and surrounding whitespace.
+ */
+public final class ImmutableArrayIntSetLineProcessor extends ChunkedLineProcessor<IntSet> {
+    public static final Supplier<ImmutableArrayIntSetLineProcessor> SUPPLIER = ImmutableArrayIntSetLineProcessor::new;
+
+    private final ImmutableArrayIntSet.Builder builder;
+    private ImmutableArrayIntSet intSet;
+
+    public ImmutableArrayIntSetLineProcessor() {
+        builder = ImmutableArrayIntSet.newBuilder();
+    }
+
+    /**
+     * @param expectedLines Approximate number of lines in the payload, used to presize the set builder.
+     */
+    public ImmutableArrayIntSetLineProcessor(int expectedLines) {
+        builder = ImmutableArrayIntSet.newBuilder(expectedLines);
+    }
+
+    public static Supplier<ImmutableArrayIntSetLineProcessor> supplier(int expectedLines) {
+        return () -> new ImmutableArrayIntSetLineProcessor(expectedLines);
+    }
+
+    @Override
+    public void process(String line) {
+        process((CharSequence) line);
+    }
+
+    @Override
+    public void process(CharSequence line) {
+        if (LineParsing.isNotBlank(line)) {
+            final int start = LineParsing.trimStart(line);
+            final int end = LineParsing.trimEnd(line, start);
+            builder.add(LineParsing.parseInt(line, start, end));
+        }
+    }
+
+    @Override
+    public void merge(ChunkedLineProcessor<IntSet> next) {
+        builder.addAll(((ImmutableArrayIntSetLineProcessor) next).builder);
+    }
+
+    @Override
+    public ImmutableArrayIntSet getResult() {
+        if (intSet == null) {
+            intSet = builder.build();
+        }
+
+        return intSet;
+    }
+}
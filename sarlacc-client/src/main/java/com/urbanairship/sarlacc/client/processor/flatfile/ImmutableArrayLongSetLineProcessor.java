@@ -0,0 +1,59 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+
+import java.util.function.Supplier;
+
+/**
+ * Parses one decimal long per line, ignoring blank lines and surrounding whitespace.
+ */
+public final class ImmutableArrayLongSetLineProcessor extends ChunkedLineProcessor<LongSet> {
+    public static final Supplier<ImmutableArrayLongSetLineProcessor> SUPPLIER = ImmutableArrayLongSetLineProcessor::new;
+
+    private final ImmutableArrayLongSet.Builder builder;
+    private ImmutableArrayLongSet longSet;
+
+    public ImmutableArrayLongSetLineProcessor() {
+        builder = ImmutableArrayLongSet.newBuilder();
+    }
+
+    /**
+     * @param expectedLines Approximate number of lines in the payload, used to presize the set builder.
+     */
+    public ImmutableArrayLongSetLineProcessor(int expectedLines) {
+        builder = ImmutableArrayLongSet.newBuilder(expectedLines);
+    }
+
+    public static Supplier<ImmutableArrayLongSetLineProcessor> supplier(int expectedLines) {
+        return () -> new ImmutableArrayLongSetLineProcessor(expectedLines);
+    }
+
+    @Override
+    public void process(String line) {
+        process((CharSequence) line);
+    }
+
+    @Override
+    public void process(CharSequence line) {
+        if (LineParsing.isNotBlank(line)) {
+            final int start = LineParsing.trimStart(line);
+            final int end = LineParsing.trimEnd(line, start);
+            builder.add(LineParsing.parseLong(line, start, end));
+        }
+    }
+
+    @Override
+    public void merge(ChunkedLineProcessor<LongSet> next) {
+        builder.addAll(((ImmutableArrayLongSetLineProcessor) next).builder);
+    }
+
+    @Override
+    public ImmutableArrayLongSet getResult() {
+        if (longSet == null) {
+            longSet = builder.build();
+        }
+
+        return longSet;
+    }
+}
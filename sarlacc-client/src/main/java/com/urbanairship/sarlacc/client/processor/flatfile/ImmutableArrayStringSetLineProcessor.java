@@ -6,7 +6,7 @@ import org.apache.commons.lang.StringUtils;
 import java.util.Set;
 import java.util.function.Supplier;
 
-public final class ImmutableArrayStringSetLineProcessor extends AbstractLineProcessor<Set<String>> {
+public final class ImmutableArrayStringSetLineProcessor extends ChunkedLineProcessor<Set<String>> {
     public static final Supplier<ImmutableArrayStringSetLineProcessor> SUPPLIER = ImmutableArrayStringSetLineProcessor::new;
 
     private final ImmutableArrayStringSet.Builder builder;
@@ -16,6 +16,17 @@ public final class ImmutableArrayStringSetLineProcessor extends AbstractLineProc
         builder = ImmutableArrayStringSet.newBuilder();
     }
 
+    /**
+     * @param expectedLines Approximate number of lines in the payload, used to presize the set builder.
+     */
+    public ImmutableArrayStringSetLineProcessor(int expectedLines) {
+        builder = ImmutableArrayStringSet.newBuilder(expectedLines);
+    }
+
+    public static Supplier<ImmutableArrayStringSetLineProcessor> supplier(int expectedLines) {
+        return () -> new ImmutableArrayStringSetLineProcessor(expectedLines);
+    }
+
     @Override
     public void process(String line) {
         if (StringUtils.isNotBlank(line)) {
@@ -23,6 +34,11 @@ public final class ImmutableArrayStringSetLineProcessor extends AbstractLineProc
         }
     }
 
+    @Override
+    public void merge(ChunkedLineProcessor<Set<String>> next) {
+        builder.addAll(((ImmutableArrayStringSetLineProcessor) next).builder);
+    }
+
     @Override
     public ImmutableArrayStringSet getResult() {
         if (arrayStringSet == null) {
@@ -0,0 +1,50 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableHashStringSet;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+public final class ImmutableHashStringSetLineProcessor extends ChunkedLineProcessor<Set<String>> {
+    public static final Supplier<ImmutableHashStringSetLineProcessor> SUPPLIER = ImmutableHashStringSetLineProcessor::new;
+
+    private final ImmutableHashStringSet.Builder builder;
+    private ImmutableHashStringSet hashStringSet;
+
+    public ImmutableHashStringSetLineProcessor() {
+        builder = ImmutableHashStringSet.newBuilder();
+    }
+
+    /**
+     * @param expectedLines Approximate number of lines in the payload, used to presize the set builder.
+     */
+    public ImmutableHashStringSetLineProcessor(int expectedLines) {
+        builder = ImmutableHashStringSet.newBuilder(expectedLines);
+    }
+
+    public static Supplier<ImmutableHashStringSetLineProcessor> supplier(int expectedLines) {
+        return () -> new ImmutableHashStringSetLineProcessor(expectedLines);
+    }
+
+    @Override
+    public void process(String line) {
+        if (StringUtils.isNotBlank(line)) {
+            builder.add(line);
+        }
+    }
+
+    @Override
+    public void merge(ChunkedLineProcessor<Set<String>> next) {
+        builder.addAll(((ImmutableHashStringSetLineProcessor) next).builder);
+    }
+
+    @Override
+    public ImmutableHashStringSet getResult() {
+        if (hashStringSet == null) {
+            hashStringSet = builder.build();
+        }
+
+        return hashStringSet;
+    }
+}
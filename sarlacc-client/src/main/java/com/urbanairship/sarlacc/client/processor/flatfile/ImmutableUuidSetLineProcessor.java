@@ -0,0 +1,59 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidSet;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidSet;
+
+import java.util.function.Supplier;
+
+/**
+ * Parses one canonical form UUID per line, ignoring blank lines and surrounding whitespace.
+ */
+public final class ImmutableUuidSetLineProcessor extends ChunkedLineProcessor<UuidSet> {
+    public static final Supplier<ImmutableUuidSetLineProcessor> SUPPLIER = ImmutableUuidSetLineProcessor::new;
+
+    private final ImmutableUuidSet.Builder builder;
+    private ImmutableUuidSet uuidSet;
+
+    public ImmutableUuidSetLineProcessor() {
+        builder = ImmutableUuidSet.newBuilder();
+    }
+
+    /**
+     * @param expectedLines Approximate number of lines in the payload, used to presize the set builder.
+     */
+    public ImmutableUuidSetLineProcessor(int expectedLines) {
+        builder = ImmutableUuidSet.newBuilder(expectedLines);
+    }
+
+    public static Supplier<ImmutableUuidSetLineProcessor> supplier(int expectedLines) {
+        return () -> new ImmutableUuidSetLineProcessor(expectedLines);
+    }
+
+    @Override
+    public void process(String line) {
+        process((CharSequence) line);
+    }
+
+    @Override
+    public void process(CharSequence line) {
+        if (LineParsing.isNotBlank(line)) {
+            final int start = LineParsing.trimStart(line);
+            final int end = LineParsing.trimEnd(line, start);
+            builder.add(start == 0 && end == line.length() ? line : line.subSequence(start, end));
+        }
+    }
+
+    @Override
+    public void merge(ChunkedLineProcessor<UuidSet> next) {
+        builder.addAll(((ImmutableUuidSetLineProcessor) next).builder);
+    }
+
+    @Override
+    public ImmutableUuidSet getResult() {
+        if (uuidSet == null) {
+            uuidSet = builder.build();
+        }
+
+        return uuidSet;
+    }
+}
@@ -0,0 +1,94 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+/**
+ * CharSequence versions of the StringUtils.isNotBlank(), trim() and parseLong() calls the numeric line processors
+ * make, so that lines can be parsed without becoming Strings first.
+ */
+final class LineParsing {
+    private LineParsing() {
+    }
+
+    static boolean isNotBlank(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the first character String.trim() would keep
+     */
+    static int trimStart(CharSequence s) {
+        int start = 0;
+        while (start < s.length() && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @return the index after the last character String.trim() would keep
+     */
+    static int trimEnd(CharSequence s, int start) {
+        int end = s.length();
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Parses s[start, end) exactly as Long.parseLong() would parse it as a String.
+     */
+    static long parseLong(CharSequence s, int start, int end) {
+        if (start >= end) {
+            throw numberFormatException(s, start, end);
+        }
+
+        int i = start;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        final char first = s.charAt(i);
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            } else if (first != '+') {
+                throw numberFormatException(s, start, end);
+            }
+            if (++i == end) {
+                throw numberFormatException(s, start, end);
+            }
+        }
+
+        // accumulate negatively, since the negative range is the larger one
+        final long multiplyMin = limit / 10;
+        long result = 0;
+        while (i < end) {
+            final int digit = Character.digit(s.charAt(i++), 10);
+            if (digit < 0 || result < multiplyMin) {
+                throw numberFormatException(s, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(s, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static int parseInt(CharSequence s, int start, int end) {
+        final long value = parseLong(s, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormatException(s, start, end);
+        }
+        return (int) value;
+    }
+
+    private static NumberFormatException numberFormatException(CharSequence s, int start, int end) {
+        return new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,71 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Feeds the lines of UTF-8 buffers, typically the windows of a file mapped by
+ * {@link com.urbanairship.sarlacc.client.source.MappedLinesConfigSource}, to the same line processors used by
+ * {@link MultilinePlaintextUpdateProcessor}. Line breaks are found by scanning the bytes, in place for heap buffers,
+ * and each line reaches the processor as a view of those bytes, see {@link Utf8Lines}.
+ */
+public class MappedLinesUpdateProcessor<C> implements UpdateProcessor<List<ByteBuffer>, C> {
+    private final Supplier<? extends AbstractLineProcessor<C>> processorSupplier;
+
+    private final Supplier<ChunkedLineProcessor<C>> chunkedSupplier;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public MappedLinesUpdateProcessor(Supplier<? extends AbstractLineProcessor<C>> processorSupplier) {
+        this.processorSupplier = processorSupplier;
+        this.chunkedSupplier = null;
+        this.pool = null;
+        this.chunkSize = 0;
+    }
+
+    private MappedLinesUpdateProcessor(Supplier<? extends AbstractLineProcessor<C>> processorSupplier,
+                                       ForkJoinPool pool, int chunkSize) {
+        this.processorSupplier = processorSupplier;
+        this.chunkedSupplier = ParallelLines.chunked(processorSupplier);
+        this.pool = Preconditions.checkNotNull(pool);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param input Consecutive windows of the payload. In parallel mode, every window but the last must end with a
+     *              line break.
+     */
+    @Override
+    public C process(List<ByteBuffer> input) throws IOException {
+        Preconditions.checkNotNull(input);
+
+        if (pool != null) {
+            return ParallelLines.readLines(input, chunkedSupplier, pool, chunkSize);
+        }
+        return Utf8Lines.readLines(input, processorSupplier.get());
+    }
+
+    public C process(ByteBuffer input) throws IOException {
+        return process(Collections.singletonList(Preconditions.checkNotNull(input)));
+    }
+
+    /**
+     * A processor which parses slices of the buffer on the given pool, see {@link ParallelLines}. The line
+     * processors must be {@link ChunkedLineProcessor}s.
+     */
+    public MappedLinesUpdateProcessor<C> parallel(ForkJoinPool pool) {
+        return parallel(pool, ParallelLines.DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedLinesUpdateProcessor<C> parallel(ForkJoinPool pool, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        return new MappedLinesUpdateProcessor<>(processorSupplier, pool, chunkSize);
+    }
+}
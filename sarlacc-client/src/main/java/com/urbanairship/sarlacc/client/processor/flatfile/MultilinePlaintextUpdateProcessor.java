@@ -4,90 +4,302 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.CharStreams;
 import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidMap;
+import com.urbanairship.sarlacc.client.structures.impl.Uuids;
+import com.urbanairship.sarlacc.client.structures.primitive.IntMap;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidMap;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidSet;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class MultilinePlaintextUpdateProcessor<C> implements UpdateProcessor<InputStream, C> {
     private final Supplier<? extends AbstractLineProcessor<C>> processorSupplier;
 
+    private final Supplier<ChunkedLineProcessor<C>> chunkedSupplier;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
     public MultilinePlaintextUpdateProcessor(Supplier<? extends AbstractLineProcessor<C>> processorSupplier) {
         this.processorSupplier = processorSupplier;
+        this.chunkedSupplier = null;
+        this.pool = null;
+        this.chunkSize = 0;
+    }
+
+    private MultilinePlaintextUpdateProcessor(Supplier<? extends AbstractLineProcessor<C>> processorSupplier,
+                                              ForkJoinPool pool, int chunkSize) {
+        this.processorSupplier = processorSupplier;
+        this.chunkedSupplier = ParallelLines.chunked(processorSupplier);
+        this.pool = Preconditions.checkNotNull(pool);
+        this.chunkSize = chunkSize;
     }
 
     @Override
     public C process(InputStream input) throws IOException {
         Preconditions.checkNotNull(input);
 
-        AbstractLineProcessor<C> lineProcessor = processorSupplier.get();
-        final InputStreamReader readable = new InputStreamReader(input);
+        if (pool != null) {
+            return ParallelLines.readLines(input, chunkedSupplier, pool, chunkSize);
+        }
+        return Utf8Lines.readLines(input, processorSupplier.get());
+    }
+
+    /**
+     * A processor which parses chunks of the input on the given pool, see {@link ParallelLines}. The line
+     * processors must be {@link ChunkedLineProcessor}s, as those from the bundled suppliers and the factories on
+     * this class are.
+     */
+    public MultilinePlaintextUpdateProcessor<C> parallel(ForkJoinPool pool) {
+        return parallel(pool, ParallelLines.DEFAULT_CHUNK_SIZE);
+    }
 
-        CharStreams.readLines(readable, lineProcessor);
-        return lineProcessor.getResult();
+    public MultilinePlaintextUpdateProcessor<C> parallel(ForkJoinPool pool, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        return new MultilinePlaintextUpdateProcessor<>(processorSupplier, pool, chunkSize);
     }
 
     public static <T> MultilinePlaintextUpdateProcessor<List<T>> list(final Function<String, T> parseFunc) {
-        final Supplier<AbstractLineProcessor<List<T>>> supplier = () -> new AbstractLineProcessor<List<T>>() {
-            private final ImmutableList.Builder<T> builder = ImmutableList.builder();
+        return new MultilinePlaintextUpdateProcessor<>(() -> new ListLineProcessor<>(parseFunc));
+    }
 
-            @Override
-            public void process(String line) {
-                T item = Preconditions.checkNotNull(parseFunc.apply(line));
-                builder.add(item);
-            }
+    public static <T> MultilinePlaintextUpdateProcessor<Set<T>> set(final Function<String, T> parseFunc) {
+        return new MultilinePlaintextUpdateProcessor<>(() -> new SetLineProcessor<>(parseFunc));
+    }
 
-            @Override
-            public List<T> getResult() {
-                return builder.build();
-            }
-        };
+    public static <K, V> MultilinePlaintextUpdateProcessor<Map<K, V>> map(final Function<String, Map.Entry<K, V>> parseFunc) {
+        return new MultilinePlaintextUpdateProcessor<>(() -> new MapLineProcessor<>(parseFunc));
+    }
 
-        return new MultilinePlaintextUpdateProcessor<>(supplier);
+    public static MultilinePlaintextUpdateProcessor<LongSet> longSet() {
+        return new MultilinePlaintextUpdateProcessor<>(ImmutableArrayLongSetLineProcessor.SUPPLIER);
     }
 
-    public static <T> MultilinePlaintextUpdateProcessor<Set<T>> set(final Function<String, T> parseFunc) {
-        final Supplier<AbstractLineProcessor<Set<T>>> supplier = () -> new AbstractLineProcessor<Set<T>>() {
-            private final ImmutableSet.Builder<T> builder = ImmutableSet.builder();
+    public static MultilinePlaintextUpdateProcessor<IntSet> intSet() {
+        return new MultilinePlaintextUpdateProcessor<>(ImmutableArrayIntSetLineProcessor.SUPPLIER);
+    }
 
-            @Override
-            public void process(String line) {
-                T item = Preconditions.checkNotNull(parseFunc.apply(line));
-                builder.add(item);
-            }
+    public static <V> MultilinePlaintextUpdateProcessor<LongMap<V>> longMap(final Function<String, Map.Entry<Long, V>> parseFunc) {
+        return new MultilinePlaintextUpdateProcessor<>(() -> new LongMapLineProcessor<>(parseFunc));
+    }
 
-            @Override
-            public Set<T> getResult() {
-                return builder.build();
-            }
-        };
+    public static <V> MultilinePlaintextUpdateProcessor<IntMap<V>> intMap(final Function<String, Map.Entry<Integer, V>> parseFunc) {
+        return new MultilinePlaintextUpdateProcessor<>(() -> new IntMapLineProcessor<>(parseFunc));
+    }
 
-        return new MultilinePlaintextUpdateProcessor<>(supplier);
+    /**
+     * Reads one canonical form UUID per line into an ImmutableUuidSet. Use it with
+     * {@link com.urbanairship.sarlacc.client.UpdateService#uuidSetServiceBuilder()} to look ids up as text through
+     * the service's collection.
+     */
+    public static MultilinePlaintextUpdateProcessor<UuidSet> uuidSet() {
+        return new MultilinePlaintextUpdateProcessor<>(ImmutableUuidSetLineProcessor.SUPPLIER);
     }
 
-    public static <K, V> MultilinePlaintextUpdateProcessor<Map<K, V>> map(final Function<String, Map.Entry<K, V>> parseFunc) {
-        final Supplier<AbstractLineProcessor<Map<K, V>>> supplier = () -> new AbstractLineProcessor<Map<K, V>>() {
-            private final ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+    /**
+     * Reads lines of the form {@code <uuid><delimiter><value>} into an {@link ImmutableUuidMap}. Use it with
+     * {@link com.urbanairship.sarlacc.client.UpdateService#uuidMapServiceBuilder()} to look ids up as text through
+     * the service's collection. Blank lines are skipped.
+     *
+     * @param delimiter Literal (not a regex) separating the UUID from the value.
+     * @param parseFunc Parses the remainder of the line after the delimiter.
+     */
+    public static <V> MultilinePlaintextUpdateProcessor<UuidMap<V>> uuidMap(final String delimiter, final Function<String, V> parseFunc) {
+        Preconditions.checkArgument(!delimiter.isEmpty(), "delimiter must not be empty");
+        return new MultilinePlaintextUpdateProcessor<>(() -> new UuidMapLineProcessor<>(delimiter, parseFunc));
+    }
 
-            @Override
-            public void process(String line) {
-                Map.Entry<K, V> entry = Preconditions.checkNotNull(parseFunc.apply(line));
-                builder.put(entry);
+    private static boolean regionMatches(CharSequence line, int offset, String expected) {
+        if (line.length() < offset + expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(offset + i) != expected.charAt(i)) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    // The List, Set and Map processors buffer raw items and build once in getResult(), so merging chunks only
+    // concatenates arrays instead of building an intermediate collection per chunk and hashing every item twice.
+    private static class ListLineProcessor<T> extends ChunkedLineProcessor<List<T>> {
+        private final ArrayList<T> items = new ArrayList<>();
+        private final Function<String, T> parseFunc;
+
+        private ListLineProcessor(Function<String, T> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            T item = Preconditions.checkNotNull(parseFunc.apply(line));
+            items.add(item);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<List<T>> next) {
+            items.addAll(((ListLineProcessor<T>) next).items);
+        }
+
+        @Override
+        public List<T> getResult() {
+            return ImmutableList.copyOf(items);
+        }
+    }
 
-            @Override
-            public Map<K, V> getResult() {
-                return builder.build();
+    private static class SetLineProcessor<T> extends ChunkedLineProcessor<Set<T>> {
+        private final ArrayList<T> items = new ArrayList<>();
+        private final Function<String, T> parseFunc;
+
+        private SetLineProcessor(Function<String, T> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            T item = Preconditions.checkNotNull(parseFunc.apply(line));
+            items.add(item);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<Set<T>> next) {
+            items.addAll(((SetLineProcessor<T>) next).items);
+        }
+
+        @Override
+        public Set<T> getResult() {
+            return ImmutableSet.copyOf(items);
+        }
+    }
+
+    private static class MapLineProcessor<K, V> extends ChunkedLineProcessor<Map<K, V>> {
+        private final ArrayList<Map.Entry<K, V>> entries = new ArrayList<>();
+        private final Function<String, Map.Entry<K, V>> parseFunc;
+
+        private MapLineProcessor(Function<String, Map.Entry<K, V>> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            Map.Entry<K, V> entry = Preconditions.checkNotNull(parseFunc.apply(line));
+            Preconditions.checkNotNull(entry.getKey());
+            Preconditions.checkNotNull(entry.getValue());
+            entries.add(entry);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<Map<K, V>> next) {
+            entries.addAll(((MapLineProcessor<K, V>) next).entries);
+        }
+
+        @Override
+        public Map<K, V> getResult() {
+            // still rejects duplicate keys, as the builder did
+            return ImmutableMap.copyOf(entries);
+        }
+    }
+
+    private static class LongMapLineProcessor<V> extends ChunkedLineProcessor<LongMap<V>> {
+        private final ImmutableArrayLongMap.Builder<V> builder = ImmutableArrayLongMap.newBuilder();
+        private final Function<String, Map.Entry<Long, V>> parseFunc;
+
+        private LongMapLineProcessor(Function<String, Map.Entry<Long, V>> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            Map.Entry<Long, V> entry = Preconditions.checkNotNull(parseFunc.apply(line));
+            builder.put(entry);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<LongMap<V>> next) {
+            builder.putAll(((LongMapLineProcessor<V>) next).builder);
+        }
+
+        @Override
+        public LongMap<V> getResult() {
+            return builder.build();
+        }
+    }
+
+    private static class IntMapLineProcessor<V> extends ChunkedLineProcessor<IntMap<V>> {
+        private final ImmutableArrayIntMap.Builder<V> builder = ImmutableArrayIntMap.newBuilder();
+        private final Function<String, Map.Entry<Integer, V>> parseFunc;
+
+        private IntMapLineProcessor(Function<String, Map.Entry<Integer, V>> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            Map.Entry<Integer, V> entry = Preconditions.checkNotNull(parseFunc.apply(line));
+            builder.put(entry);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<IntMap<V>> next) {
+            builder.putAll(((IntMapLineProcessor<V>) next).builder);
+        }
+
+        @Override
+        public IntMap<V> getResult() {
+            return builder.build();
+        }
+    }
+
+    private static class UuidMapLineProcessor<V> extends ChunkedLineProcessor<UuidMap<V>> {
+        private final ImmutableUuidMap.Builder<V> builder = ImmutableUuidMap.newBuilder();
+        private final String delimiter;
+        private final Function<String, V> parseFunc;
+
+        private UuidMapLineProcessor(String delimiter, Function<String, V> parseFunc) {
+            this.delimiter = delimiter;
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(String line) {
+            process((CharSequence) line);
+        }
+
+        @Override
+        public void process(CharSequence line) {
+            if (line.length() == 0) {
+                return;
+            }
+            if (!regionMatches(line, Uuids.LENGTH, delimiter)) {
+                throw new IllegalArgumentException(String.format("Expected '<uuid>%s<value>', got '%s'", delimiter, line));
             }
-        };
+            final String rest = line.subSequence(Uuids.LENGTH + delimiter.length(), line.length()).toString();
+            V value = Preconditions.checkNotNull(parseFunc.apply(rest));
+            builder.put(line.subSequence(0, Uuids.LENGTH), value);
+        }
+
+        @Override
+        public void merge(ChunkedLineProcessor<UuidMap<V>> next) {
+            builder.putAll(((UuidMapLineProcessor<V>) next).builder);
+        }
 
-        return new MultilinePlaintextUpdateProcessor<>(supplier);
+        @Override
+        public UuidMap<V> getResult() {
+            return builder.build();
+        }
     }
 }
@@ -0,0 +1,231 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Parallel counterparts of {@link Utf8Lines#readLines}. The input is cut into chunks of roughly chunkSize bytes
+ * which end on line breaks, each chunk is parsed by its own {@link ChunkedLineProcessor} on a ForkJoinPool, and
+ * the processors are merged in input order as they finish.
+ * <p>
+ * Streams are read on the calling thread, which keeps at most two chunks per pool thread in memory. Buffers, such
+ * as mapped files, are sliced without copying.
+ * <p>
+ * Every chunk gets a fresh processor from the supplier, so suppliers presized for the whole payload (the
+ * supplier(expectedLines) factories) should be avoided, or sized for a single chunk.
+ */
+public final class ParallelLines {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private ParallelLines() {
+    }
+
+    public static <T> T readLines(InputStream input, Supplier<? extends ChunkedLineProcessor<T>> processorSupplier,
+                                  ForkJoinPool pool, int chunkSize) throws IOException {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        final Merger<T> merger = new Merger<>(pool);
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int filled = 0;
+            int read;
+            while ((read = input.read(buffer, filled, buffer.length - filled)) >= 0) {
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+
+                final int cut = lastLineEnd(buffer, filled);
+                if (cut < 0) {
+                    // a line longer than the chunk
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+
+                final int carried = filled - cut;
+                final byte[] next = new byte[Math.max(chunkSize, carried * 2)];
+                System.arraycopy(buffer, cut, next, 0, carried);
+                merger.submit(new ChunkTask<>(ByteBuffer.wrap(buffer, 0, cut), processorSupplier.get()));
+                buffer = next;
+                filled = carried;
+            }
+            if (filled > 0) {
+                merger.submit(new ChunkTask<>(ByteBuffer.wrap(buffer, 0, filled), processorSupplier.get()));
+            }
+
+            return merger.finish(processorSupplier);
+        } finally {
+            merger.cancel();
+        }
+    }
+
+    /**
+     * Reads the lines between the buffer's position and limit, without moving its position.
+     */
+    public static <T> T readLines(ByteBuffer input, Supplier<? extends ChunkedLineProcessor<T>> processorSupplier,
+                                  ForkJoinPool pool, int chunkSize) throws IOException {
+        return readLines(Collections.singletonList(input), processorSupplier, pool, chunkSize);
+    }
+
+    /**
+     * Reads the lines of consecutive buffers, without moving their positions. Every buffer but the last must end
+     * with a line break, as the windows served by
+     * {@link com.urbanairship.sarlacc.client.source.MappedLinesConfigSource} do.
+     */
+    public static <T> T readLines(List<ByteBuffer> input, Supplier<? extends ChunkedLineProcessor<T>> processorSupplier,
+                                  ForkJoinPool pool, int chunkSize) throws IOException {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        final Merger<T> merger = new Merger<>(pool);
+        try {
+            for (ByteBuffer window : input) {
+                final int limit = window.limit();
+                int start = window.position();
+                while (start < limit) {
+                    final int cut = nextLineEnd(window, (int) Math.min((long) start + chunkSize, limit), limit);
+                    final ByteBuffer chunk = window.duplicate();
+                    chunk.position(start);
+                    chunk.limit(cut);
+                    merger.submit(new ChunkTask<>(chunk, processorSupplier.get()));
+                    start = cut;
+                }
+            }
+
+            return merger.finish(processorSupplier);
+        } finally {
+            merger.cancel();
+        }
+    }
+
+    /**
+     * Wraps a supplier of AbstractLineProcessors which is expected to supply ChunkedLineProcessors, failing now
+     * rather than on the first parallel parse if it doesn't.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<ChunkedLineProcessor<T>> chunked(Supplier<? extends AbstractLineProcessor<T>> processorSupplier) {
+        final AbstractLineProcessor<T> sample = processorSupplier.get();
+        Preconditions.checkArgument(sample instanceof ChunkedLineProcessor,
+                "Parallel parsing needs a ChunkedLineProcessor, but got %s", sample.getClass().getName());
+        return () -> (ChunkedLineProcessor<T>) processorSupplier.get();
+    }
+
+    /**
+     * @return the index after the last line break in buffer[0, filled), or -1 if there is none. A '\r' in the
+     * final position doesn't count, as it may be the first half of a "\r\n".
+     */
+    private static int lastLineEnd(byte[] buffer, int filled) {
+        for (int i = filled - 1; i >= 0; i--) {
+            if (buffer[i] == '\n' || (buffer[i] == '\r' && i < filled - 1)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the first line break ending at or beyond from, or limit if there is none
+     */
+    private static int nextLineEnd(ByteBuffer buffer, int from, int limit) {
+        for (int i = from - 1; i < limit; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\n') {
+                return i + 1;
+            }
+            if (b == '\r') {
+                return i + 1 < limit && buffer.get(i + 1) == '\n' ? i + 2 : i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private static class ChunkTask<T> extends RecursiveAction {
+        private final ChunkedLineProcessor<T> processor;
+        private ByteBuffer chunk;
+        // kept here rather than thrown, since ForkJoinTask.join() may rethrow a copy without the original message
+        private Throwable failure;
+
+        private ChunkTask(ByteBuffer chunk, ChunkedLineProcessor<T> processor) {
+            this.chunk = chunk;
+            this.processor = processor;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Utf8Lines.split(chunk, processor);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                chunk = null;
+            }
+        }
+    }
+
+    private static class Merger<T> {
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+        private final Deque<ChunkTask<T>> inFlight = new ArrayDeque<>();
+        private ChunkedLineProcessor<T> merged;
+        private boolean submitted = false;
+
+        private Merger(ForkJoinPool pool) {
+            this.pool = pool;
+            this.maxInFlight = pool.getParallelism() * 2;
+        }
+
+        private void submit(ChunkTask<T> task) throws IOException {
+            if (submitted) {
+                task.processor.markContinuation();
+            }
+            submitted = true;
+            pool.execute(task);
+            inFlight.add(task);
+            while (inFlight.size() > maxInFlight) {
+                mergeNext();
+            }
+        }
+
+        private void mergeNext() throws IOException {
+            final ChunkTask<T> task = inFlight.poll();
+            task.join();
+            if (task.failure != null) {
+                Throwables.throwIfInstanceOf(task.failure, IOException.class);
+                Throwables.throwIfUnchecked(task.failure);
+                throw new IOException(task.failure);
+            }
+
+            if (merged == null) {
+                merged = task.processor;
+            } else {
+                merged.merge(task.processor);
+            }
+        }
+
+        private T finish(Supplier<? extends ChunkedLineProcessor<T>> processorSupplier) throws IOException {
+            while (!inFlight.isEmpty()) {
+                mergeNext();
+            }
+            if (merged == null) {
+                merged = processorSupplier.get();
+            }
+            return merged.getResult();
+        }
+
+        private void cancel() {
+            for (ChunkTask<T> task : inFlight) {
+                task.cancel(false);
+            }
+            inFlight.clear();
+        }
+    }
+}
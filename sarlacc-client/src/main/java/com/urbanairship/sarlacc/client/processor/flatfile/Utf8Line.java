@@ -0,0 +1,78 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable view of one line of UTF-8 held in a byte array. Lines which are pure ASCII are read byte for byte
+ * without decoding; anything else is decoded to a String the first time its characters are needed. toString() and
+ * subSequence() copy, so only the parts of a line which are kept get allocated.
+ */
+final class Utf8Line implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    // null until known, then either the ascii flag is set or decoded holds the line
+    private Boolean ascii;
+    private String decoded;
+
+    void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.ascii = null;
+        this.decoded = null;
+    }
+
+    private boolean isAscii() {
+        if (ascii == null) {
+            boolean allAscii = true;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                if (bytes[i] < 0) {
+                    allAscii = false;
+                    break;
+                }
+            }
+            ascii = allAscii;
+            if (!allAscii && decoded == null) {
+                decoded = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        return ascii;
+    }
+
+    @Override
+    public int length() {
+        return isAscii() ? length : decoded.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (isAscii()) {
+            if (index < 0 || index >= length) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return (char) bytes[offset + index];
+        }
+        return decoded.charAt(index);
+    }
+
+    @Override
+    public String subSequence(int start, int end) {
+        if (isAscii()) {
+            if (start < 0 || end > length || start > end) {
+                throw new StringIndexOutOfBoundsException(String.format("start %d, end %d, length %d", start, end, length));
+            }
+            return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        return decoded.substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            decoded = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+        return decoded;
+    }
+}
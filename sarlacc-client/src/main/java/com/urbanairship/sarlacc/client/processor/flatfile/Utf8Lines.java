@@ -0,0 +1,182 @@
+package com.urbanairship.sarlacc.client.processor.flatfile;
+
+import com.google.common.io.LineProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Byte level counterparts of {@link com.google.common.io.CharStreams#readLines(Readable, LineProcessor)} for UTF-8
+ * input. Line breaks are found by scanning the raw bytes in a reused buffer, without a reader or a line builder.
+ * An {@link AbstractLineProcessor} is handed each line as a CharSequence view of those bytes, so it decodes only
+ * what it keeps; any other LineProcessor receives a String per line.
+ * <p>
+ * Lines end at "\n", "\r\n" or "\r", and the terminators are not included.
+ */
+public final class Utf8Lines {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Utf8Lines() {
+    }
+
+    public static <T> T readLines(InputStream input, LineProcessor<T> processor) throws IOException {
+        split(input::read, processor);
+        return processor.getResult();
+    }
+
+    /**
+     * Reads the lines between the buffer's position and limit, without moving its position.
+     */
+    public static <T> T readLines(ByteBuffer input, LineProcessor<T> processor) throws IOException {
+        split(input, processor);
+        return processor.getResult();
+    }
+
+    /**
+     * Reads the lines of consecutive buffers as a single input, such as the windows of a file too large to map at
+     * once. Lines may span buffers. Buffer positions are not moved.
+     */
+    public static <T> T readLines(List<ByteBuffer> input, LineProcessor<T> processor) throws IOException {
+        if (input.size() == 1) {
+            return readLines(input.get(0), processor);
+        }
+        split(new BufferListReader(input), processor);
+        return processor.getResult();
+    }
+
+    static void split(ByteBuffer input, LineProcessor<?> processor) throws IOException {
+        if (input.hasArray()) {
+            final Splitter splitter = new Splitter(processor);
+            final int start = input.arrayOffset() + input.position();
+            final int limit = input.arrayOffset() + input.limit();
+            final int lineStart = splitter.split(input.array(), start, start, limit);
+            if (!splitter.stopped) {
+                splitter.finish(input.array(), lineStart, limit);
+            }
+            return;
+        }
+
+        // direct and mapped buffers have no array, so copy them through in chunks
+        final ByteBuffer view = input.duplicate();
+        split((b, off, len) -> {
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, view.remaining());
+            view.get(b, off, n);
+            return n;
+        }, processor);
+    }
+
+    private static void split(ByteReader reader, LineProcessor<?> processor) throws IOException {
+        final Splitter splitter = new Splitter(processor);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int lineStart = 0;
+        int limit = 0;
+
+        while (!splitter.stopped) {
+            if (limit == buffer.length) {
+                if (lineStart > 0) {
+                    System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                    limit -= lineStart;
+                    lineStart = 0;
+                } else {
+                    // a line longer than the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+
+            final int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                splitter.finish(buffer, lineStart, limit);
+                break;
+            }
+            lineStart = splitter.split(buffer, lineStart, limit, limit + read);
+            limit += read;
+        }
+    }
+
+    private interface ByteReader {
+        int read(byte[] b, int off, int len) throws IOException;
+    }
+
+    private static class BufferListReader implements ByteReader {
+        private final Iterator<ByteBuffer> buffers;
+        private ByteBuffer current;
+
+        private BufferListReader(List<ByteBuffer> buffers) {
+            this.buffers = buffers.iterator();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            while (current == null || !current.hasRemaining()) {
+                if (!buffers.hasNext()) {
+                    return -1;
+                }
+                current = buffers.next().duplicate();
+            }
+            final int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+    }
+
+    private static class Splitter {
+        private final LineProcessor<?> processor;
+        private final AbstractLineProcessor<?> lineProcessor;
+        private final Utf8Line line = new Utf8Line();
+
+        // the last chunk ended with '\r', so a '\n' starting the next belongs to the same break
+        private boolean skipLf = false;
+        private boolean stopped = false;
+
+        private Splitter(LineProcessor<?> processor) {
+            this.processor = processor;
+            this.lineProcessor = processor instanceof AbstractLineProcessor ? (AbstractLineProcessor<?>) processor : null;
+        }
+
+        /**
+         * Emits every complete line in buffer[lineStart, limit), scanning for breaks from scanFrom.
+         *
+         * @return the start of the incomplete line left at the end
+         */
+        private int split(byte[] buffer, int lineStart, int scanFrom, int limit) throws IOException {
+            for (int i = scanFrom; i < limit && !stopped; i++) {
+                final byte b = buffer[i];
+                if (skipLf) {
+                    skipLf = false;
+                    if (b == '\n') {
+                        lineStart = i + 1;
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    emit(buffer, lineStart, i);
+                    skipLf = b == '\r';
+                    lineStart = i + 1;
+                }
+            }
+            return lineStart;
+        }
+
+        private void finish(byte[] buffer, int lineStart, int limit) throws IOException {
+            if (lineStart < limit) {
+                emit(buffer, lineStart, limit);
+            }
+        }
+
+        private void emit(byte[] buffer, int start, int end) throws IOException {
+            line.reset(buffer, start, end - start);
+            if (lineProcessor != null) {
+                lineProcessor.process(line);
+            } else {
+                stopped = !processor.processLine(line.toString());
+            }
+        }
+    }
+}
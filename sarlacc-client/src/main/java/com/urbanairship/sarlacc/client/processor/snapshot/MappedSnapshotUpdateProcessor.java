@@ -0,0 +1,42 @@
+package com.urbanairship.sarlacc.client.processor.snapshot;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+import com.urbanairship.sarlacc.client.structures.snapshot.MappedStringMap;
+import com.urbanairship.sarlacc.client.structures.snapshot.MappedStringSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opens binary snapshots (see {@link com.urbanairship.sarlacc.client.structures.snapshot.SnapshotWriter}) in place,
+ * usually fed by a {@link com.urbanairship.sarlacc.client.source.MappedFileConfigSource}. Processing only checks the
+ * header, so startup and reloads cost the same regardless of the size of the data.
+ */
+public class MappedSnapshotUpdateProcessor<C> implements UpdateProcessor<ByteBuffer, C> {
+    private final Opener<C> opener;
+
+    private MappedSnapshotUpdateProcessor(Opener<C> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public C process(ByteBuffer input) throws IOException {
+        Preconditions.checkNotNull(input);
+        return opener.open(input);
+    }
+
+    public static MappedSnapshotUpdateProcessor<Set<String>> stringSet() {
+        return new MappedSnapshotUpdateProcessor<>(MappedStringSet::open);
+    }
+
+    public static MappedSnapshotUpdateProcessor<Map<String, String>> stringMap() {
+        return new MappedSnapshotUpdateProcessor<>(MappedStringMap::open);
+    }
+
+    private interface Opener<C> {
+        C open(ByteBuffer buffer) throws IOException;
+    }
+}
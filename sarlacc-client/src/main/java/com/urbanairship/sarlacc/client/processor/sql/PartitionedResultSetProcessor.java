@@ -0,0 +1,14 @@
+package com.urbanairship.sarlacc.client.processor.sql;
+
+/**
+ * A result set processor which can take part in partitioned loading: each partition's rows are fed to a processor
+ * of its own, and the processors are then merged in partition order before getDataStructure() is called on the
+ * first of them.
+ */
+public interface PartitionedResultSetProcessor<C> extends ResultSetProcessor<C> {
+    /**
+     * Adds everything next has processed, which came from the partition following those this processor has seen.
+     * next is always an instance from the same supplier, and is discarded afterwards.
+     */
+    void merge(PartitionedResultSetProcessor<C> next);
+}
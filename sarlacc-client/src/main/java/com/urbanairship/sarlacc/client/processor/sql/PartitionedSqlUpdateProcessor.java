@@ -0,0 +1,87 @@
+package com.urbanairship.sarlacc.client.processor.sql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Reads the result sets of a partitioned source concurrently, one task per result set on a ForkJoinPool, and merges
+ * the per partition processors in list order. Built by {@link SqlUpdateProcessor#partitioned}.
+ * <p>
+ * JDBC reads block, so the pool should be sized for the number of partitions, rather than shared with CPU bound
+ * work.
+ */
+public class PartitionedSqlUpdateProcessor<C> implements UpdateProcessor<List<ResultSet>, C> {
+    private final Supplier<? extends ResultSetProcessor<C>> supplier;
+    private final ForkJoinPool pool;
+
+    PartitionedSqlUpdateProcessor(Supplier<? extends ResultSetProcessor<C>> supplier, ForkJoinPool pool) {
+        final ResultSetProcessor<C> sample = supplier.get();
+        Preconditions.checkArgument(sample instanceof PartitionedResultSetProcessor,
+                "Partitioned loading needs a PartitionedResultSetProcessor, but got %s", sample.getClass().getName());
+        this.supplier = supplier;
+        this.pool = Preconditions.checkNotNull(pool);
+    }
+
+    @Override
+    public C process(List<ResultSet> input) throws IOException {
+        final List<ForkJoinTask<PartitionedResultSetProcessor<C>>> tasks = new ArrayList<>(input.size());
+        for (ResultSet resultSet : input) {
+            tasks.add(pool.submit(() -> read(resultSet)));
+        }
+
+        // wait for every partition even once one has failed, since the result sets are closed after this returns
+        PartitionedResultSetProcessor<C> merged = null;
+        Throwable failure = null;
+        for (ForkJoinTask<PartitionedResultSetProcessor<C>> task : tasks) {
+            try {
+                final PartitionedResultSetProcessor<C> processor = Uninterruptibles.getUninterruptibly(task);
+                if (failure != null) {
+                    continue;
+                }
+                if (merged == null) {
+                    merged = processor;
+                } else {
+                    merged.merge(processor);
+                }
+            } catch (ExecutionException | RuntimeException e) {
+                final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (failure != null) {
+            Throwables.throwIfInstanceOf(failure, IOException.class);
+            Throwables.throwIfUnchecked(failure);
+            throw new IOException(failure);
+        }
+        return merged == null ? supplier.get().getDataStructure() : merged.getDataStructure();
+    }
+
+    private PartitionedResultSetProcessor<C> read(ResultSet resultSet) throws IOException {
+        final PartitionedResultSetProcessor<C> processor = (PartitionedResultSetProcessor<C>) supplier.get();
+        try {
+            while (resultSet.next()) {
+                processor.process(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        return processor;
+    }
+}
@@ -4,21 +4,34 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.urbanairship.sarlacc.client.processor.UpdateProcessor;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.IntMap;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
 
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 public class SqlUpdateProcessor<C> implements UpdateProcessor<ResultSet, C> {
-    private final Supplier<ResultSetProcessor<C>> supplier;
+    private final Supplier<? extends ResultSetProcessor<C>> supplier;
 
-    public SqlUpdateProcessor(Supplier<ResultSetProcessor<C>> supplier) {
+    public SqlUpdateProcessor(Supplier<? extends ResultSetProcessor<C>> supplier) {
         this.supplier = supplier;
     }
 
@@ -35,60 +48,220 @@ public class SqlUpdateProcessor<C> implements UpdateProcessor<ResultSet, C> {
         }
     }
 
+    /**
+     * A processor reading the result sets of a partitioned source, such as one built by
+     * {@link com.urbanairship.sarlacc.client.source.JdbcConfigSource.Builder#buildPartitioned()}, concurrently on
+     * the given pool. Each partition is read into a processor of its own, and these are merged in partition order,
+     * so the result processors must be {@link PartitionedResultSetProcessor}s. Those of the factories on this class
+     * are.
+     */
+    public PartitionedSqlUpdateProcessor<C> partitioned(ForkJoinPool pool) {
+        return new PartitionedSqlUpdateProcessor<>(supplier, pool);
+    }
+
     public static <T> SqlUpdateProcessor<List<T>> list(final Function<ResultSet, T> parseFunc) {
-        final Supplier<ResultSetProcessor<List<T>>> supplier = () -> new ResultSetProcessor<List<T>>() {
-            private final ImmutableList.Builder<T> builder = ImmutableList.builder();
+        return new SqlUpdateProcessor<>(() -> new ListResultSetProcessor<>(parseFunc));
+    }
 
-            @Override
-            public void process(ResultSet resultSet) {
-                T item = Preconditions.checkNotNull(parseFunc.apply(resultSet));
-                builder.add(item);
-            }
+    public static <T> SqlUpdateProcessor<Set<T>> set(final Function<ResultSet, T> parseFunc) {
+        return new SqlUpdateProcessor<>(() -> new SetResultSetProcessor<>(parseFunc));
+    }
 
-            @Override
-            public List<T> getDataStructure() {
-                return builder.build();
-            }
-        };
+    public static <K,V> SqlUpdateProcessor<Map<K,V>> map(final Function<ResultSet, Map.Entry<K,V>> parseFunc) {
+        return new SqlUpdateProcessor<>(() -> new MapResultSetProcessor<>(parseFunc));
+    }
 
-        return new SqlUpdateProcessor<>(supplier);
+    public static SqlUpdateProcessor<LongSet> longSet(final ToLongFunction<ResultSet> parseFunc) {
+        return new SqlUpdateProcessor<>(() -> new LongSetResultSetProcessor(parseFunc));
     }
 
-    public static <T> SqlUpdateProcessor<Set<T>> set(final Function<ResultSet, T> parseFunc) {
-        final Supplier<ResultSetProcessor<Set<T>>> supplier = () -> new ResultSetProcessor<Set<T>>() {
-            private final ImmutableSet.Builder<T> builder = ImmutableSet.builder();
+    public static SqlUpdateProcessor<IntSet> intSet(final ToIntFunction<ResultSet> parseFunc) {
+        return new SqlUpdateProcessor<>(() -> new IntSetResultSetProcessor(parseFunc));
+    }
 
-            @Override
-            public void process(ResultSet resultSet) {
-                T item = Preconditions.checkNotNull(parseFunc.apply(resultSet));
-                builder.add(item);
-            }
+    public static <V> SqlUpdateProcessor<LongMap<V>> longMap(final ToLongFunction<ResultSet> keyFunc, final Function<ResultSet, V> valueFunc) {
+        return new SqlUpdateProcessor<>(() -> new LongMapResultSetProcessor<>(keyFunc, valueFunc));
+    }
 
-            @Override
-            public Set<T> getDataStructure() {
-                return builder.build();
-            }
-        };
+    public static <V> SqlUpdateProcessor<IntMap<V>> intMap(final ToIntFunction<ResultSet> keyFunc, final Function<ResultSet, V> valueFunc) {
+        return new SqlUpdateProcessor<>(() -> new IntMapResultSetProcessor<>(keyFunc, valueFunc));
+    }
+
+    // The List, Set and Map processors buffer raw rows and build once in getDataStructure(), so merging partitions
+    // only concatenates arrays, as the primitive processors' builders do.
+    private static class ListResultSetProcessor<T> implements PartitionedResultSetProcessor<List<T>> {
+        private final Function<ResultSet, T> parseFunc;
+        private final ArrayList<T> items = new ArrayList<>();
 
-        return new SqlUpdateProcessor<>(supplier);
+        private ListResultSetProcessor(Function<ResultSet, T> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(ResultSet resultSet) {
+            T item = Preconditions.checkNotNull(parseFunc.apply(resultSet));
+            items.add(item);
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<List<T>> next) {
+            items.addAll(((ListResultSetProcessor<T>) next).items);
+        }
+
+        @Override
+        public List<T> getDataStructure() {
+            return ImmutableList.copyOf(items);
+        }
     }
 
-    public static <K,V> SqlUpdateProcessor<Map<K,V>> map(final Function<ResultSet, Map.Entry<K,V>> parseFunc) {
-        final Supplier<ResultSetProcessor<Map<K, V>>> supplier = () -> new ResultSetProcessor<Map<K, V>>() {
-            private final ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+    private static class SetResultSetProcessor<T> implements PartitionedResultSetProcessor<Set<T>> {
+        private final Function<ResultSet, T> parseFunc;
+        private final ArrayList<T> items = new ArrayList<>();
 
-            @Override
-            public void process(ResultSet resultSet) {
-                Map.Entry<K, V> entry = Preconditions.checkNotNull(parseFunc.apply(resultSet));
-                builder.put(entry);
-            }
+        private SetResultSetProcessor(Function<ResultSet, T> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
 
-            @Override
-            public Map<K, V> getDataStructure() {
-                return builder.build();
-            }
-        };
+        @Override
+        public void process(ResultSet resultSet) {
+            T item = Preconditions.checkNotNull(parseFunc.apply(resultSet));
+            items.add(item);
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<Set<T>> next) {
+            items.addAll(((SetResultSetProcessor<T>) next).items);
+        }
+
+        @Override
+        public Set<T> getDataStructure() {
+            return ImmutableSet.copyOf(items);
+        }
+    }
+
+    private static class MapResultSetProcessor<K, V> implements PartitionedResultSetProcessor<Map<K, V>> {
+        private final Function<ResultSet, Map.Entry<K, V>> parseFunc;
+        private final ArrayList<Map.Entry<K, V>> entries = new ArrayList<>();
+
+        private MapResultSetProcessor(Function<ResultSet, Map.Entry<K, V>> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
 
-        return new SqlUpdateProcessor<>(supplier);
+        @Override
+        public void process(ResultSet resultSet) {
+            Map.Entry<K, V> entry = Preconditions.checkNotNull(parseFunc.apply(resultSet));
+            entries.add(Maps.immutableEntry(Preconditions.checkNotNull(entry.getKey()), Preconditions.checkNotNull(entry.getValue())));
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<Map<K, V>> next) {
+            entries.addAll(((MapResultSetProcessor<K, V>) next).entries);
+        }
+
+        @Override
+        public Map<K, V> getDataStructure() {
+            // still rejects duplicate keys, as the builder did
+            return ImmutableMap.copyOf(entries);
+        }
+    }
+
+    private static class LongSetResultSetProcessor implements PartitionedResultSetProcessor<LongSet> {
+        private final ToLongFunction<ResultSet> parseFunc;
+        private final ImmutableArrayLongSet.Builder builder = ImmutableArrayLongSet.newBuilder();
+
+        private LongSetResultSetProcessor(ToLongFunction<ResultSet> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(ResultSet resultSet) {
+            builder.add(parseFunc.applyAsLong(resultSet));
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<LongSet> next) {
+            builder.addAll(((LongSetResultSetProcessor) next).builder);
+        }
+
+        @Override
+        public LongSet getDataStructure() {
+            return builder.build();
+        }
+    }
+
+    private static class IntSetResultSetProcessor implements PartitionedResultSetProcessor<IntSet> {
+        private final ToIntFunction<ResultSet> parseFunc;
+        private final ImmutableArrayIntSet.Builder builder = ImmutableArrayIntSet.newBuilder();
+
+        private IntSetResultSetProcessor(ToIntFunction<ResultSet> parseFunc) {
+            this.parseFunc = parseFunc;
+        }
+
+        @Override
+        public void process(ResultSet resultSet) {
+            builder.add(parseFunc.applyAsInt(resultSet));
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<IntSet> next) {
+            builder.addAll(((IntSetResultSetProcessor) next).builder);
+        }
+
+        @Override
+        public IntSet getDataStructure() {
+            return builder.build();
+        }
+    }
+
+    private static class LongMapResultSetProcessor<V> implements PartitionedResultSetProcessor<LongMap<V>> {
+        private final ToLongFunction<ResultSet> keyFunc;
+        private final Function<ResultSet, V> valueFunc;
+        private final ImmutableArrayLongMap.Builder<V> builder = ImmutableArrayLongMap.newBuilder();
+
+        private LongMapResultSetProcessor(ToLongFunction<ResultSet> keyFunc, Function<ResultSet, V> valueFunc) {
+            this.keyFunc = keyFunc;
+            this.valueFunc = valueFunc;
+        }
+
+        @Override
+        public void process(ResultSet resultSet) {
+            builder.put(keyFunc.applyAsLong(resultSet), Preconditions.checkNotNull(valueFunc.apply(resultSet)));
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<LongMap<V>> next) {
+            builder.putAll(((LongMapResultSetProcessor<V>) next).builder);
+        }
+
+        @Override
+        public LongMap<V> getDataStructure() {
+            return builder.build();
+        }
+    }
+
+    private static class IntMapResultSetProcessor<V> implements PartitionedResultSetProcessor<IntMap<V>> {
+        private final ToIntFunction<ResultSet> keyFunc;
+        private final Function<ResultSet, V> valueFunc;
+        private final ImmutableArrayIntMap.Builder<V> builder = ImmutableArrayIntMap.newBuilder();
+
+        private IntMapResultSetProcessor(ToIntFunction<ResultSet> keyFunc, Function<ResultSet, V> valueFunc) {
+            this.keyFunc = keyFunc;
+            this.valueFunc = valueFunc;
+        }
+
+        @Override
+        public void process(ResultSet resultSet) {
+            builder.put(keyFunc.applyAsInt(resultSet), Preconditions.checkNotNull(valueFunc.apply(resultSet)));
+        }
+
+        @Override
+        public void merge(PartitionedResultSetProcessor<IntMap<V>> next) {
+            builder.putAll(((IntMapResultSetProcessor<V>) next).builder);
+        }
+
+        @Override
+        public IntMap<V> getDataStructure() {
+            return builder.build();
+        }
     }
 }
@@ -0,0 +1,207 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.io.ByteStreams;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.model.Update;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Follows a local append only log of {@code +element} / {@code -element} lines, such as one written by a producer
+ * which never publishes full snapshots, for use with
+ * {@link com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor#appendLogSet} or
+ * {@link com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor#appendLogMap}.
+ * <p>
+ * fetch() serves the whole log as a snapshot. fetchIfNewer() serves only the complete lines appended since the
+ * update it last handed out, as a patch, provided the service is asking from that update's version. Otherwise,
+ * for instance because that update failed to process, it falls back to a snapshot. A trailing line still being
+ * written is left for the next check.
+ * <p>
+ * The log is assumed to be replaced rather than rewritten when it is rotated or compacted, and the replacement must
+ * hold the full current state. A different file at the path, a file shorter than the consumed offset, or changed
+ * bytes just before that offset all make the next check serve a snapshot of the new file.
+ * <p>
+ * Versions are the consumed byte offset plus a base which moves past the previous version whenever a snapshot is
+ * served, so they keep increasing across rotations.
+ */
+public class AppendLogConfigSource implements ConfigSource<Delta<InputStream>> {
+    private static final Logger log = LogManager.getLogger(AppendLogConfigSource.class);
+
+    private static final int FINGERPRINT_LENGTH = 64;
+    private static final int SCAN_BUFFER_SIZE = 8192;
+    private static final int OPEN_ATTEMPTS = 3;
+
+    private final Path path;
+
+    // where the last update handed out stopped reading, null before the first one
+    private Position last;
+
+    public AppendLogConfigSource(String filePath) {
+        this.path = Paths.get(filePath).toAbsolutePath();
+    }
+
+    @Override
+    public synchronized Update<Delta<InputStream>> fetch() throws IOException {
+        return snapshot(openLog(), last == null ? 0 : last.version() + 1);
+    }
+
+    @Override
+    public synchronized Optional<Update<Delta<InputStream>>> fetchIfNewer(long ifNewerThan) throws IOException {
+        final long snapshotBase = Math.max(ifNewerThan, last == null ? -1 : last.version()) + 1;
+        final OpenLog openLog = openLog();
+
+        if (last == null || last.version() != ifNewerThan) {
+            return Optional.of(snapshot(openLog, snapshotBase));
+        }
+
+        final Position from = last;
+        try {
+            final long size = openLog.channel.size();
+            if (!Objects.equals(openLog.fileKey, from.fileKey) || size < from.offset
+                    || !Arrays.equals(fingerprint(openLog.channel, from.offset), from.fingerprint)) {
+                log.info(String.format("Log '%s' was rotated or rewritten, reading it in full", path));
+                return Optional.of(snapshot(openLog, snapshotBase));
+            }
+
+            final long end = lastLineEnd(openLog.channel, from.offset, size);
+            if (end == from.offset) {
+                openLog.channel.close();
+                return Optional.empty();
+            }
+
+            last = new Position(from.base, end, openLog.fileKey, fingerprint(openLog.channel, end));
+            final InputStream appended = stream(openLog.channel, from.offset, end);
+            return Optional.of(new Update<>(last.version(), Delta.patch(ifNewerThan, appended)));
+        } catch (IOException | RuntimeException e) {
+            openLog.channel.close();
+            throw e;
+        }
+    }
+
+    private Update<Delta<InputStream>> snapshot(OpenLog openLog, long base) throws IOException {
+        try {
+            final long end = lastLineEnd(openLog.channel, 0, openLog.channel.size());
+            last = new Position(base, end, openLog.fileKey, fingerprint(openLog.channel, end));
+            return new Update<>(last.version(), Delta.snapshot(stream(openLog.channel, 0, end)));
+        } catch (IOException | RuntimeException e) {
+            openLog.channel.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Opens the log along with the identity of the file actually opened, retrying if it is swapped out in between.
+     */
+    private OpenLog openLog() throws IOException {
+        for (int attempt = 0; attempt < OPEN_ATTEMPTS; attempt++) {
+            final Object before = readAttributes().fileKey();
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            final Object after;
+            try {
+                after = readAttributes().fileKey();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            if (Objects.equals(before, after)) {
+                return new OpenLog(channel, after);
+            }
+            channel.close();
+        }
+        throw new IOException(String.format("Log '%s' kept being replaced while opening it", path));
+    }
+
+    private BasicFileAttributes readAttributes() throws IOException {
+        if (!Files.isReadable(path)) {
+            throw new IOException(String.format(
+                    "Couldn't access '%s' Exists: %b Readable: %b", path, Files.exists(path), Files.isReadable(path)));
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private static InputStream stream(FileChannel channel, long from, long to) throws IOException {
+        channel.position(from);
+        return ByteStreams.limit(Channels.newInputStream(channel), to - from);
+    }
+
+    /**
+     * @return the offset just past the last line break in [from, size), or from if there is none
+     */
+    private static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long blockEnd = size;
+        while (blockEnd > from) {
+            final long blockStart = Math.max(from, blockEnd - SCAN_BUFFER_SIZE);
+            buffer.clear().limit((int) (blockEnd - blockStart));
+            readFully(channel, buffer, blockStart);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                final byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return from;
+    }
+
+    private static byte[] fingerprint(FileChannel channel, long end) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(FINGERPRINT_LENGTH, end));
+        readFully(channel, buffer, end - buffer.capacity());
+        return buffer.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Log was truncated while reading it");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static class OpenLog {
+        private final FileChannel channel;
+        private final Object fileKey;
+
+        private OpenLog(FileChannel channel, Object fileKey) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+        }
+    }
+
+    private static class Position {
+        private final long base;
+        private final long offset;
+        private final Object fileKey;
+        private final byte[] fingerprint;
+
+        private Position(long base, long offset, Object fileKey, byte[] fingerprint) {
+            this.base = base;
+            this.offset = offset;
+            this.fileKey = fileKey;
+            this.fingerprint = fingerprint;
+        }
+
+        private long version() {
+            return base + offset;
+        }
+    }
+}
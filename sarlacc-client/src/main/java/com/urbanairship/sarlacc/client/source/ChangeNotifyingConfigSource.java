@@ -0,0 +1,18 @@
+package com.urbanairship.sarlacc.client.source;
+
+import java.io.IOException;
+
+/**
+ * A source which can tell when it has changed, rather than only answering when asked. An update service using one
+ * starts watching once it has started up, refreshes as soon as it is notified, and stops watching on shutdown.
+ * Scheduled checks still run, as a safety net for missed notifications, so the fetch interval can be set long.
+ */
+public interface ChangeNotifyingConfigSource<T> extends ConfigSource<T> {
+    /**
+     * Begin calling onChange whenever the source may have changed. Notifications may be spurious or repeated, and
+     * may arrive on any thread.
+     */
+    void startWatching(Runnable onChange) throws IOException;
+
+    void stopWatching();
+}
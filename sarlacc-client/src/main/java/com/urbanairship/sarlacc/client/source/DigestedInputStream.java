@@ -0,0 +1,28 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * A payload stream whose content digest is known before it is read, from object metadata or a cheap pass over a
+ * local file. {@link com.urbanairship.sarlacc.client.processor.DigestingUpdateProcessor} compares it against the
+ * previous payload's before handing the stream to its delegate, so an identical payload is never parsed.
+ * <p>
+ * Digests are only compared with digests from the same source, so any strong hash of the bytes will do, as long
+ * as the source always uses the same one.
+ */
+public class DigestedInputStream extends FilterInputStream {
+    private final HashCode digest;
+
+    public DigestedInputStream(InputStream in, HashCode digest) {
+        super(Preconditions.checkNotNull(in));
+        this.digest = Preconditions.checkNotNull(digest);
+    }
+
+    public HashCode getDigest() {
+        return digest;
+    }
+}
@@ -0,0 +1,230 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.io.ByteStreams;
+import com.urbanairship.sarlacc.client.model.Update;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Write-through disk cache in front of another source. Every payload fetched from the delegate is copied to a
+ * temporary file as it is read, and replaces the cache file (along with its version) only once the update
+ * service has successfully processed it.
+ * <p>
+ * The first call to fetch(), which the update service makes on startup, is answered from the cache file when
+ * there is one, without contacting the delegate. Later checks call fetchIfNewer() with the cached version, so
+ * the delegate revalidates the cached payload on the first scheduled run. A cached payload which fails to
+ * process is discarded, and subsequent fetch() calls always go to the delegate.
+ */
+public class DiskCachingConfigSource implements ConfigSource<InputStream> {
+    private static final Logger log = LogManager.getLogger(DiskCachingConfigSource.class);
+
+    private static final int MAGIC = 0x53524C43;
+
+    private final ConfigSource<InputStream> delegate;
+    private final File cacheFile;
+
+    private volatile boolean cacheConsulted = false;
+
+    /**
+     * @param cacheFilePath Where to keep the last good payload. Its directory is created if needed, and temporary
+     *                      files are written alongside it, so it should be on local disk.
+     */
+    public DiskCachingConfigSource(ConfigSource<InputStream> delegate, String cacheFilePath) {
+        this.delegate = delegate;
+        this.cacheFile = new File(cacheFilePath);
+    }
+
+    @Override
+    public Update<InputStream> fetch() throws IOException {
+        if (!cacheConsulted) {
+            cacheConsulted = true;
+            final Optional<Update<InputStream>> cached = readCache();
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+
+        return writeThrough(delegate.fetch());
+    }
+
+    @Override
+    public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+        cacheConsulted = true;
+        final Optional<Update<InputStream>> update = delegate.fetchIfNewer(ifNewerThan);
+        if (update.isPresent()) {
+            return Optional.of(writeThrough(update.get()));
+        }
+        return update;
+    }
+
+    private Optional<Update<InputStream>> readCache() {
+        if (!cacheFile.isFile()) {
+            return Optional.empty();
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Bad magic number");
+            }
+            final long version = in.readLong();
+            log.info(String.format("Serving version %d from cache file '%s'", version, cacheFile));
+            return Optional.of(new CachedUpdate(version, in));
+        } catch (IOException e) {
+            log.warn(String.format("Ignoring unreadable cache file '%s'", cacheFile), e);
+            closeQuietly(in);
+            return Optional.empty();
+        }
+    }
+
+    private Update<InputStream> writeThrough(Update<InputStream> update) {
+        final File directory = cacheFile.getAbsoluteFile().getParentFile();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException(String.format("Couldn't create cache directory '%s'", directory));
+            }
+            final File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            final DataOutputStream out;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                out.writeInt(MAGIC);
+                out.writeLong(update.version);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile.toPath());
+                throw e;
+            }
+            return new WriteThroughUpdate(update, out, tempFile);
+        } catch (IOException e) {
+            log.warn(String.format("Couldn't open cache file for '%s', continuing without caching", cacheFile), e);
+            return update;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("Failed to close cache file", e);
+            }
+        }
+    }
+
+    private class CachedUpdate extends Update<InputStream> {
+        private CachedUpdate(long version, InputStream newVal) {
+            super(version, newVal);
+        }
+
+        @Override
+        public void close() throws Exception {
+            super.close();
+            if (!isProcessed()) {
+                log.warn(String.format("Deleting cache file '%s' which could not be processed", cacheFile));
+                Files.deleteIfExists(cacheFile.toPath());
+            }
+        }
+    }
+
+    private class WriteThroughUpdate extends Update<InputStream> {
+        private final Update<InputStream> delegateUpdate;
+        private final OutputStream cacheOut;
+        private final File tempFile;
+
+        private WriteThroughUpdate(Update<InputStream> delegateUpdate, OutputStream cacheOut, File tempFile) {
+            super(delegateUpdate.version, new TeeInputStream(delegateUpdate.newVal, cacheOut));
+            this.delegateUpdate = delegateUpdate;
+            this.cacheOut = cacheOut;
+            this.tempFile = tempFile;
+        }
+
+        @Override
+        public void close() throws Exception {
+            try {
+                if (isProcessed()) {
+                    // processors may stop short of EOF, so copy whatever they left unread
+                    ByteStreams.exhaust(newVal);
+                    cacheOut.close();
+                    Files.move(tempFile.toPath(), cacheFile.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    log.info(String.format("Cached version %d in '%s'", version, cacheFile));
+                }
+            } catch (IOException e) {
+                // caching is best effort, and the payload itself was good
+                log.warn(String.format("Failed to write cache file '%s'", cacheFile), e);
+            } finally {
+                try {
+                    cacheOut.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close temporary cache file", e);
+                }
+                Files.deleteIfExists(tempFile.toPath());
+                delegateUpdate.close();
+            }
+        }
+    }
+
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        private TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                copy.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read rather than skip, so that the copy stays complete
+            final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            final int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+    }
+}
@@ -1,21 +1,42 @@
 package com.urbanairship.sarlacc.client.source;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import com.urbanairship.sarlacc.client.model.Update;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import java.util.zip.GZIPInputStream;
 
 public class FileConfigSource implements ConfigSource<InputStream> {
     private final String filePath;
     private final boolean gzipped;
+    private final boolean digested;
 
     public FileConfigSource(String filePath, boolean gzipped) {
+        this(filePath, gzipped, false);
+    }
+
+    private FileConfigSource(String filePath, boolean gzipped, boolean digested) {
         this.filePath = filePath;
         this.gzipped = gzipped;
+        this.digested = digested;
+    }
+
+    /**
+     * A source which hashes the file before opening it, and serves it as a {@link DigestedInputStream}. Wrapped in
+     * a {@link com.urbanairship.sarlacc.client.processor.DigestingUpdateProcessor}, a file touched or rewritten with
+     * the same contents is then read once more to hash it, but not parsed again.
+     */
+    public static FileConfigSource digested(String filePath, boolean gzipped) {
+        return new FileConfigSource(filePath, gzipped, true);
     }
 
     @Override
@@ -35,21 +56,48 @@ public class FileConfigSource implements ConfigSource<InputStream> {
         return new Update<>(file.lastModified(), getInputStream(file));
     }
 
+    /**
+     * A source serving the uncompressed file as read only memory mappings instead of a stream, for processors such
+     * as {@link com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor} which scan the bytes
+     * in place rather than copying them through a reader. Files over 2GB are mapped as several windows, see
+     * {@link MappedLinesConfigSource}. The file must be replaced by atomic rename, never rewritten in place.
+     */
+    public static MappedLinesConfigSource mapped(String filePath) {
+        return new MappedLinesConfigSource(filePath);
+    }
+
     private File getFile() throws IOException {
-        File file = new File(filePath);
-        if (file.canRead()) {
-            return file;
-        } else {
-            throw new IOException(String.format(
-                    "Couldn't access '%s' Exists: %b Readable: %b", filePath, file.exists(), file.canRead()));
-        }
+        return LocalFiles.getReadableFile(filePath);
     }
 
     private InputStream getInputStream(File file) throws IOException {
+        if (digested) {
+            return getDigestedInputStream(file);
+        }
         InputStream inputStream = new FileInputStream(file);
         if (gzipped) {
             inputStream = new GZIPInputStream(inputStream);
         }
         return inputStream;
     }
+
+    private InputStream getDigestedInputStream(File file) throws IOException {
+        // hashes and reads through the same channel, so both see the same file even if it is replaced meanwhile
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // the file's own bytes, compressed or not, identify its contents
+            final HashingInputStream hashing = new HashingInputStream(Hashing.murmur3_128(), Channels.newInputStream(channel));
+            ByteStreams.exhaust(hashing);
+            channel.position(0);
+
+            InputStream inputStream = Channels.newInputStream(channel);
+            if (gzipped) {
+                inputStream = new GZIPInputStream(inputStream);
+            }
+            return new DigestedInputStream(inputStream, hashing.hash());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
 }
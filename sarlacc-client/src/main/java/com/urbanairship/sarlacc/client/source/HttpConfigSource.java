@@ -1,23 +1,99 @@
 package com.urbanairship.sarlacc.client.source;
 
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.urbanairship.sarlacc.client.model.Update;
+import org.apache.commons.httpclient.util.DateParseException;
 import org.apache.commons.httpclient.util.DateUtil;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+/**
+ * Polls a URL with conditional GETs.
+ * <p>
+ * Versions are taken from, in order of preference, the Last-Modified time, a strong ETag, or a digest of the body.
+ * Timestamps keep versions ordered, so they are used whenever the origin sends one. The other two are hashed into
+ * negative numbers, so they never collide with timestamps. After a response carrying an ETag, weak or strong,
+ * checks from that response's version send it as If-None-Match, which doesn't depend on clocks or one second
+ * timestamp resolution and is what CDNs validate most reliably. Otherwise, checks from a timestamp send
+ * If-Modified-Since as before. Responses without either validator are copied to a temporary file while they are
+ * digested, so the version is known before the body is processed without holding it in memory, and a body
+ * identical to the version being checked from counts as not modified.
+ * <p>
+ * Connections are kept alive and reused through {@link HttpURLConnection}'s own pool, which only takes back
+ * connections whose responses were read to the end, so 304 and error bodies are drained before returning. Requests
+ * advertise gzip and deflate, and have connect and read timeouts (10 seconds and a minute by default, see
+ * {@link #newBuilder()}), so a stalled origin fails the check instead of blocking the service's thread.
+ * <p>
+ * Large payloads can be downloaded over several connections at once, see {@link Builder#setParallelDownload}. The
+ * check then asks for the first part only, and if the origin answers with a partial response carrying a strong ETag
+ * or Last-Modified, the rest is requested as byte ranges guarded by If-Range and reassembled in order by
+ * {@link ParallelRangeInputStream}. An origin which ignores ranges, or has no validator to pin them to, is simply
+ * read in one piece.
+ */
 public class HttpConfigSource implements ConfigSource<InputStream> {
+    private static final HashFunction VERSION_HASH = Hashing.murmur3_128();
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 60_000;
+    // error bodies larger than this cost more to drain than a new connection
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
     private final URL sourceUrl;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final boolean acceptCompression;
+    private final int parallelism;
+    private final int partSize;
+    private final ExecutorService rangeExecutor;
+
+    // the ETag of the last response, and the version it was served as, whether taken from the tag or not
+    private volatile Validator lastValidator;
 
     public HttpConfigSource(String sourceUrlStr) {
+        this(parseUrl(sourceUrlStr), DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS, true, 0, 0, null);
+    }
+
+    private HttpConfigSource(URL sourceUrl, int connectTimeoutMillis, int readTimeoutMillis, boolean acceptCompression,
+                             int parallelism, int partSize, ExecutorService rangeExecutor) {
+        this.sourceUrl = sourceUrl;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.acceptCompression = acceptCompression;
+        this.parallelism = parallelism;
+        this.partSize = partSize;
+        this.rangeExecutor = rangeExecutor;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static URL parseUrl(String sourceUrlStr) {
         try {
-            this.sourceUrl = new URL(sourceUrlStr);
+            return new URL(sourceUrlStr);
         } catch (Exception e) {
             throw new RuntimeException(String.format("Error while parsing '%s' as a url.", sourceUrlStr), e);
         }
@@ -25,7 +101,7 @@ public class HttpConfigSource implements ConfigSource<InputStream> {
 
     @Override
     public Update<InputStream> fetch() throws IOException {
-        Optional<Update<InputStream>> fetched = fetchIfNewer(0);
+        Optional<Update<InputStream>> fetched = request(0, false, parallelism > 0);
         if (fetched.isPresent()) {
             return fetched.get();
         } else {
@@ -35,40 +111,323 @@ public class HttpConfigSource implements ConfigSource<InputStream> {
 
     @Override
     public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+        return request(ifNewerThan, true, parallelism > 0);
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
         final HttpURLConnection connection = (HttpURLConnection) sourceUrl.openConnection();
-        connection.setIfModifiedSince(ifNewerThan);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (acceptCompression) {
+            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        }
+        return connection;
+    }
+
+    /**
+     * @param ranged Whether to ask for only the first part, and fetch the rest in parallel if the origin obliges.
+     */
+    private Optional<Update<InputStream>> request(long ifNewerThan, boolean conditional, boolean ranged) throws IOException {
+        final HttpURLConnection connection = openConnection();
+        if (ranged) {
+            connection.setRequestProperty("Range", String.format("bytes=0-%d", partSize - 1));
+        }
+        if (conditional) {
+            final Validator validator = lastValidator;
+            if (validator != null && validator.version == ifNewerThan) {
+                connection.setRequestProperty("If-None-Match", validator.etag);
+            }
+            if (ifNewerThan > 0) {
+                connection.setIfModifiedSince(ifNewerThan);
+            }
+        }
         connection.connect();
 
-        int status = connection.getResponseCode();
+        final int status;
+        try {
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
         if (status == HttpURLConnection.HTTP_OK) {
-            return Optional.of(buildUpdate(connection));
+            return buildUpdate(connection, openBody(connection), conditional ? ifNewerThan : null);
+        } else if (ranged && status == HttpURLConnection.HTTP_PARTIAL) {
+            return buildRangedUpdate(connection, ifNewerThan, conditional);
+        } else if (ranged && status == HTTP_RANGE_NOT_SATISFIABLE) {
+            // an empty payload has no first part to ask for
+            drain(connection, true);
+            return request(ifNewerThan, conditional, false);
         } else if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            drain(connection, false);
             return Optional.empty();
         } else {
+            drain(connection, true);
             throw new RuntimeException(String.format("Unexpected response code: %d when fetching from %s", status, sourceUrl));
         }
     }
 
-    private Update<InputStream> buildUpdate(HttpURLConnection connection) throws IOException {
-        long mtime;
+    /**
+     * Reads what is left of a response we don't need, so the connection can go back to the keep-alive pool, or
+     * disconnects if there is too much of it.
+     */
+    private static void drain(HttpURLConnection connection, boolean error) {
+        try (InputStream in = error ? connection.getErrorStream() : connection.getInputStream()) {
+            if (in == null) {
+                return;
+            }
+            ByteStreams.exhaust(ByteStreams.limit(in, MAX_DRAIN_BYTES));
+            if (in.read() >= 0) {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    private static InputStream openBody(HttpURLConnection connection) throws IOException {
         try {
-            String modified = connection.getHeaderField("Last-Modified");
-            Date mdate = DateUtil.parseDate(modified);
-            mtime = mdate.getTime();
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting mtime for update.", e);
+            return connection.getInputStream();
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Handles a partial response to the first part. If the payload is larger, the rest is fetched in parallel
+     * behind the body already open, pinned to this response's validator with If-Range.
+     */
+    private Optional<Update<InputStream>> buildRangedUpdate(HttpURLConnection connection, long ifNewerThan,
+                                                            boolean conditional) throws IOException {
+        final String etag = connection.getHeaderField("ETag");
+        final String ifRange = etag != null && !etag.startsWith("W/") ? etag : connection.getHeaderField("Last-Modified");
+        final long length = parseTotalLength(connection.getHeaderField("Content-Range"));
+        if (ifRange == null || length < 0) {
+            // parts couldn't be guaranteed to come from the same version
+            drain(connection, false);
+            return request(ifNewerThan, conditional, false);
+        }
+
+        InputStream body = openBody(connection);
+        if (length > partSize) {
+            body = new ParallelRangeInputStream(
+                    (from, to) -> openRange(from, to, ifRange), length, partSize, parallelism, rangeExecutor, body);
+        }
+        return buildUpdate(connection, body, conditional ? ifNewerThan : null);
+    }
+
+    /**
+     * @return The complete length from a Content-Range header such as "bytes 0-99/1234", or -1 if it is unknown.
+     */
+    private static long parseTotalLength(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        final Long length = Longs.tryParse(StringUtils.substringAfterLast(contentRange, "/").trim());
+        return length == null ? -1 : length;
+    }
+
+    private InputStream openRange(long from, long to, String ifRange) throws IOException {
+        final HttpURLConnection connection = openConnection();
+        connection.setRequestProperty("Range", String.format("bytes=%d-%d", from, to - 1));
+        connection.setRequestProperty("If-Range", ifRange);
+
+        final int status;
+        try {
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+        if (status == HttpURLConnection.HTTP_OK) {
+            // a full response to If-Range means the payload has been replaced, so there is nothing to resume
+            drain(connection, false);
+            throw new ParallelRangeInputStream.RangeChangedException(String.format(
+                    "Got a full response for bytes %d-%d of %s, it changed during the download",
+                    from, to - 1, sourceUrl));
+        } else if (status != HttpURLConnection.HTTP_PARTIAL) {
+            drain(connection, status >= HttpURLConnection.HTTP_BAD_REQUEST);
+            throw new IOException(String.format("Got response code %d for bytes %d-%d of %s", status, from, to - 1, sourceUrl));
+        }
+        return openBody(connection);
+    }
+
+    /**
+     * @param body        The undecoded body, which is closed on failure.
+     * @param ifNewerThan The version checked from, or null for an unconditional fetch.
+     */
+    private Optional<Update<InputStream>> buildUpdate(HttpURLConnection connection, InputStream body, Long ifNewerThan)
+            throws IOException {
+        final String etag = connection.getHeaderField("ETag");
+        final String modified = connection.getHeaderField("Last-Modified");
+
+        final long version;
+        InputStream stream = decode(connection, body);
+        if (modified != null) {
+            try {
+                version = DateUtil.parseDate(modified).getTime();
+            } catch (DateParseException e) {
+                stream.close();
+                throw new RuntimeException("Error getting mtime for update.", e);
+            }
+        } else if (etag != null && !etag.startsWith("W/")) {
+            version = toVersion(VERSION_HASH.hashString(etag, StandardCharsets.UTF_8));
+        } else {
+            final DigestedInputStream spooled = spool(stream);
+            version = toVersion(spooled.getDigest());
+            stream = spooled;
+        }
+
+        // any tag, weak or strong, is sent back as If-None-Match, whatever the version was taken from
+        lastValidator = etag == null ? null : new Validator(version, etag);
+
+        if (ifNewerThan != null && version < 0 && version == ifNewerThan) {
+            // the origin ignored our validator, but the content is the same
+            stream.close();
+            return Optional.empty();
         }
+        return Optional.of(new Update<>(version, stream));
+    }
 
-        return new Update<InputStream>(mtime, getStream(connection));
+    private static long toVersion(HashCode hash) {
+        return hash.asLong() | Long.MIN_VALUE;
     }
 
-    private InputStream getStream(HttpURLConnection connection) throws IOException {
-        InputStream stream = connection.getInputStream();
-        final String contentEncoding = connection.getContentEncoding();
-        if (StringUtils.isNotBlank(contentEncoding) && contentEncoding.toLowerCase().contains("gzip")) {
-            stream = new GZIPInputStream(stream);
+    /**
+     * Copies a body to a temporary file while digesting it. The returned stream reads the copy, and deletes it when
+     * closed. The body is closed either way.
+     */
+    private static DigestedInputStream spool(InputStream stream) throws IOException {
+        final HashingInputStream hashing = new HashingInputStream(VERSION_HASH, stream);
+        Path temp = null;
+        try (InputStream in = hashing) {
+            temp = Files.createTempFile("sarlacc-http-", ".body");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                ByteStreams.copy(in, out);
+            }
+            return new DigestedInputStream(Files.newInputStream(temp, StandardOpenOption.DELETE_ON_CLOSE), hashing.hash());
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+            throw e;
+        }
+    }
+
+    private InputStream decode(HttpURLConnection connection, InputStream stream) throws IOException {
+        final String contentEncoding = StringUtils.trimToEmpty(connection.getContentEncoding()).toLowerCase();
+        try {
+            if (contentEncoding.contains("gzip")) {
+                return new GZIPInputStream(stream);
+            } else if (contentEncoding.equals("deflate")) {
+                return new InflaterInputStream(stream);
+            } else if (contentEncoding.isEmpty() || contentEncoding.equals("identity")) {
+                return stream;
+            }
+            throw new IOException(String.format("Unsupported Content-Encoding '%s' from %s", contentEncoding, sourceUrl));
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sourceUrl.toString();
+    }
+
+    private static class Validator {
+        private final long version;
+        private final String etag;
+
+        private Validator(long version, String etag) {
+            this.version = version;
+            this.etag = etag;
         }
-        return stream;
     }
 
+    public static class Builder {
+        private String url;
+        private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        private boolean acceptCompression = true;
+        private int parallelism = 0;
+        private int partSize = 0;
+        private ExecutorService rangeExecutor;
+
+        private Builder() {
+        }
+
+        public Builder setUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * @param timeout Time allowed to establish a connection, 10 seconds by default. Zero means no limit.
+         */
+        public Builder setConnectTimeout(long timeout, TimeUnit timeUnit) {
+            this.connectTimeoutMillis = toTimeoutMillis(timeout, timeUnit);
+            return this;
+        }
+
+        /**
+         * @param timeout Time allowed to wait for any single read, not the whole body, one minute by default. Zero
+         *                means no limit.
+         */
+        public Builder setReadTimeout(long timeout, TimeUnit timeUnit) {
+            this.readTimeoutMillis = toTimeoutMillis(timeout, timeUnit);
+            return this;
+        }
+
+        /**
+         * @param acceptCompression Whether to send Accept-Encoding for gzip and deflate, true by default. Compressed
+         *                          responses are decoded either way.
+         */
+        public Builder setAcceptCompression(boolean acceptCompression) {
+            this.acceptCompression = acceptCompression;
+            return this;
+        }
+
+        /**
+         * Download payloads larger than partSize as parts of that size, over up to parallelism connections at once.
+         * Buffering takes up to (parallelism + 1) * partSize bytes per download, so parts of a few megabytes suit
+         * most payloads worth splitting.
+         */
+        public Builder setParallelDownload(int parallelism, int partSize) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+            Preconditions.checkArgument(partSize > 0, "partSize must be positive");
+            this.parallelism = parallelism;
+            this.partSize = partSize;
+            return this;
+        }
+
+        /**
+         * Executor for parallel downloads, which needs a thread per part in flight. By default the source creates a
+         * cached pool of daemon threads.
+         */
+        public Builder setRangeExecutorService(ExecutorService rangeExecutor) {
+            this.rangeExecutor = Preconditions.checkNotNull(rangeExecutor);
+            return this;
+        }
+
+        public HttpConfigSource build() {
+            Preconditions.checkNotNull(url);
+            ExecutorService executor = rangeExecutor;
+            if (parallelism > 0 && executor == null) {
+                executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("sarlacc-range-%d")
+                        .build());
+            }
+            return new HttpConfigSource(parseUrl(url), connectTimeoutMillis, readTimeoutMillis, acceptCompression,
+                    parallelism, partSize, executor);
+        }
+
+        private static int toTimeoutMillis(long timeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(timeout >= 0, "timeout must not be negative");
+            return Ints.saturatedCast(timeUnit.toMillis(timeout));
+        }
+    }
 }
@@ -0,0 +1,471 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.model.Update;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves the result of a query, for {@link com.urbanairship.sarlacc.client.processor.sql.SqlUpdateProcessor}.
+ * <p>
+ * Each check first runs a cheap version query, such as {@code SELECT max(updated_at) FROM t} or a read of a version
+ * table, returning a single number or timestamp. Timestamps become epoch milliseconds, rounded up so that a change
+ * later in the same millisecond as a whole-millisecond one still counts as newer; two changes within the same fraction
+ * of a millisecond aren't told apart, so finer timestamps aren't a reliable version. The data query only runs when
+ * that version is newer than the service's, so an unchanged table costs one small query per check. Rows are streamed
+ * to the processor in batches of the fetch size rather than buffered; since some drivers, PostgreSQL's among them,
+ * only stream inside a transaction, auto-commit is turned off on the connection while the result set is open.
+ * <p>
+ * {@link Builder#buildIncremental()} builds a source of {@link Delta} payloads for
+ * {@link com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor#sqlSet} and
+ * {@link com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor#sqlMap} instead. fetch() runs the full
+ * query as a snapshot, and fetchIfNewer() runs the incremental query with the current version bound to its single
+ * parameter, which should select the rows changed since, for instance {@code WHERE updated_at > ?}. Deletions must
+ * be soft, so that they show up in that query. Rows committed late with a version below one already read are
+ * missed until the next snapshot, so versions should be assigned at commit, or the incremental query should
+ * overlap by a safety margin (reapplying rows is harmless).
+ * <p>
+ * {@link Builder#buildPartitioned()} builds a source which splits a numeric key's range into equal parts and opens
+ * one streaming query per part, each on its own connection, for
+ * {@link com.urbanairship.sarlacc.client.processor.sql.SqlUpdateProcessor#partitioned} to read concurrently.
+ */
+public class JdbcConfigSource implements ConfigSource<ResultSet> {
+    private final DataSource dataSource;
+    private final String versionQuery;
+    private final String query;
+    private final String incrementalQuery;
+    private final int partitions;
+    private final String partitionBoundsQuery;
+    private final String partitionQuery;
+    private final int fetchSize;
+
+    // whether the version query returns a timestamp, so the incremental query's parameter should be bound as one
+    private volatile boolean timestampVersion = false;
+    // the exact timestamp behind the last version read, since the version itself may have lost precision
+    private volatile Timestamp lastTimestamp = null;
+
+    private JdbcConfigSource(DataSource dataSource, String versionQuery, String query, String incrementalQuery,
+                             int partitions, String partitionBoundsQuery, String partitionQuery, int fetchSize) {
+        this.dataSource = dataSource;
+        this.versionQuery = versionQuery;
+        this.query = query;
+        this.incrementalQuery = incrementalQuery;
+        this.partitions = partitions;
+        this.partitionBoundsQuery = partitionBoundsQuery;
+        this.partitionQuery = partitionQuery;
+        this.fetchSize = fetchSize;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public Update<ResultSet> fetch() throws IOException {
+        return fetchFull(Long.MIN_VALUE).get();
+    }
+
+    @Override
+    public Optional<Update<ResultSet>> fetchIfNewer(long ifNewerThan) throws IOException {
+        return fetchFull(ifNewerThan);
+    }
+
+    private Optional<Update<ResultSet>> fetchFull(long ifNewerThan) throws IOException {
+        final QueryResult result = run(ifNewerThan, false);
+        if (result == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Update<ResultSet>(result.version, result.resultSet) {
+            @Override
+            public void close() throws Exception {
+                result.close();
+            }
+        });
+    }
+
+    private Optional<Update<Delta<ResultSet>>> fetchDelta(long ifNewerThan, boolean patch) throws IOException {
+        final QueryResult result = run(ifNewerThan, patch);
+        if (result == null) {
+            return Optional.empty();
+        }
+        final Delta<ResultSet> delta = patch ? Delta.patch(ifNewerThan, result.resultSet) : Delta.snapshot(result.resultSet);
+        return Optional.of(new Update<Delta<ResultSet>>(result.version, delta) {
+            @Override
+            public void close() throws Exception {
+                result.close();
+            }
+        });
+    }
+
+    private Optional<Update<List<ResultSet>>> fetchPartitioned(long ifNewerThan) throws IOException {
+        final List<QueryResult> results = new ArrayList<>();
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            final long version = queryVersion(connection);
+            if (version <= ifNewerThan) {
+                connection.close();
+                return Optional.empty();
+            }
+
+            final List<long[]> ranges = partitionRanges(connection);
+            if (ranges.isEmpty()) {
+                connection.close();
+                return Optional.of(new Update<>(version, Collections.emptyList()));
+            }
+            for (long[] range : ranges) {
+                final Connection partitionConnection = connection != null ? connection : dataSource.getConnection();
+                connection = null;
+                results.add(execute(version, partitionConnection, partitionQuery, statement -> {
+                    statement.setLong(1, range[0]);
+                    statement.setLong(2, range[1]);
+                }));
+            }
+        } catch (SQLException e) {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+                closeAll(results);
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw new IOException(e);
+        }
+
+        final List<ResultSet> resultSets = new ArrayList<>(results.size());
+        for (QueryResult result : results) {
+            resultSets.add(result.resultSet);
+        }
+        return Optional.of(new Update<List<ResultSet>>(results.get(0).version, Collections.unmodifiableList(resultSets)) {
+            @Override
+            public void close() throws Exception {
+                closeAll(results);
+            }
+        });
+    }
+
+    /**
+     * Splits [min, max] of the partition key, inclusive at both ends, into up to partitions ranges of equal width.
+     */
+    private List<long[]> partitionRanges(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(partitionBoundsQuery);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException(String.format("Partition bounds query '%s' returned no rows", partitionBoundsQuery));
+            }
+            final long min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                // empty table
+                return Collections.emptyList();
+            }
+            final long max = resultSet.getLong(2);
+
+            final BigInteger start = BigInteger.valueOf(min);
+            final BigInteger width = BigInteger.valueOf(max).subtract(start).add(BigInteger.ONE);
+            final BigInteger count = BigInteger.valueOf(partitions);
+            final List<long[]> ranges = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                final long low = start.add(width.multiply(BigInteger.valueOf(i)).divide(count)).longValueExact();
+                final long high = start.add(width.multiply(BigInteger.valueOf(i + 1)).divide(count))
+                        .subtract(BigInteger.ONE).longValueExact();
+                if (low <= high) {
+                    ranges.add(new long[]{low, high});
+                }
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * @return the data, or null if the version isn't newer than ifNewerThan
+     */
+    private QueryResult run(long ifNewerThan, boolean incremental) throws IOException {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            final Timestamp previousTimestamp = lastTimestamp;
+            final long version = queryVersion(connection);
+            if (version <= ifNewerThan) {
+                connection.close();
+                return null;
+            }
+
+            final Connection owned = connection;
+            connection = null;
+            if (!incremental) {
+                return execute(version, owned, query, statement -> {
+                });
+            }
+            return execute(version, owned, incrementalQuery, statement -> {
+                if (timestampVersion) {
+                    if (previousTimestamp != null && toVersion(previousTimestamp) == ifNewerThan) {
+                        statement.setTimestamp(1, previousTimestamp);
+                    } else {
+                        // a version from elsewhere may have been rounded up past unread rows, so overlap by the
+                        // millisecond it could have gained
+                        statement.setTimestamp(1, new Timestamp(ifNewerThan - 1));
+                    }
+                } else {
+                    statement.setLong(1, ifNewerThan);
+                }
+            });
+        } catch (SQLException e) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Runs a streaming query, taking ownership of the connection: it is released by closing the result, or before
+     * returning if the query fails.
+     */
+    private QueryResult execute(long version, Connection connection, String sql, ParameterBinder binder)
+            throws SQLException {
+        boolean autoCommit = true;
+        try {
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            final PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            binder.bind(statement);
+            return new QueryResult(version, connection, autoCommit, statement, statement.executeQuery());
+        } catch (SQLException e) {
+            try {
+                release(connection, autoCommit);
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    private static void closeAll(List<QueryResult> results) throws SQLException {
+        SQLException failure = null;
+        for (QueryResult result : results) {
+            try {
+                result.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private long queryVersion(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(versionQuery);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException(String.format("Version query '%s' returned no rows", versionQuery));
+            }
+
+            switch (resultSet.getMetaData().getColumnType(1)) {
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    timestampVersion = true;
+                    final Timestamp timestamp = resultSet.getTimestamp(1);
+                    lastTimestamp = timestamp;
+                    return timestamp == null ? 0 : toVersion(timestamp);
+                default:
+                    timestampVersion = false;
+                    // null when the table is empty
+                    return resultSet.getLong(1);
+            }
+        }
+    }
+
+    // epoch milliseconds, rounded up
+    private static long toVersion(Timestamp timestamp) {
+        return timestamp.getTime() + (timestamp.getNanos() % 1_000_000 != 0 ? 1 : 0);
+    }
+
+    private interface ParameterBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private static class QueryResult {
+        private final long version;
+        private final Connection connection;
+        private final boolean restoreAutoCommit;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+
+        private QueryResult(long version, Connection connection, boolean restoreAutoCommit,
+                            PreparedStatement statement, ResultSet resultSet) {
+            this.version = version;
+            this.connection = connection;
+            this.restoreAutoCommit = restoreAutoCommit;
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        private void close() throws SQLException {
+            try {
+                resultSet.close();
+                statement.close();
+            } finally {
+                release(connection, restoreAutoCommit);
+            }
+        }
+    }
+
+    private static void release(Connection connection, boolean restoreAutoCommit) throws SQLException {
+        try {
+            if (!connection.getAutoCommit()) {
+                // nothing was written, but end the transaction before the connection goes back to a pool
+                connection.rollback();
+                connection.setAutoCommit(restoreAutoCommit);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    public static class Builder {
+        private DataSource dataSource;
+        private String versionQuery;
+        private String query;
+        private String incrementalQuery;
+        private int partitions;
+        private String partitionBoundsQuery;
+        private String partitionQuery;
+        private int fetchSize = 1000;
+
+        private Builder() {
+        }
+
+        public Builder setDataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+            return this;
+        }
+
+        /**
+         * @param versionQuery Returns one row with a single numeric or timestamp column, which must increase
+         *                     whenever the data changes. A null (for an empty table) is version 0.
+         */
+        public Builder setVersionQuery(String versionQuery) {
+            this.versionQuery = versionQuery;
+            return this;
+        }
+
+        /**
+         * @param query Selects the full data set.
+         */
+        public Builder setQuery(String query) {
+            this.query = query;
+            return this;
+        }
+
+        /**
+         * @param incrementalQuery Selects the rows changed since the version bound to its single parameter. Only used
+         *                         by {@link #buildIncremental()}.
+         */
+        public Builder setIncrementalQuery(String incrementalQuery) {
+            this.incrementalQuery = incrementalQuery;
+            return this;
+        }
+
+        /**
+         * Only used by {@link #buildPartitioned()}.
+         *
+         * @param partitions           Number of key ranges to query concurrently, each on a connection of its own.
+         * @param partitionBoundsQuery Returns one row with the minimum and maximum of a numeric partition key, nulls
+         *                             for an empty table.
+         * @param partitionQuery       Selects the rows whose key lies between its two parameters, inclusive at both
+         *                             ends, e.g. {@code WHERE id BETWEEN ? AND ?}.
+         */
+        public Builder setPartitioning(int partitions, String partitionBoundsQuery, String partitionQuery) {
+            Preconditions.checkArgument(partitions > 0, "partitions must be positive");
+            this.partitions = partitions;
+            this.partitionBoundsQuery = Preconditions.checkNotNull(partitionBoundsQuery);
+            this.partitionQuery = Preconditions.checkNotNull(partitionQuery);
+            return this;
+        }
+
+        /**
+         * @param fetchSize Rows fetched from the database per round trip, 1000 by default.
+         */
+        public Builder setFetchSize(int fetchSize) {
+            Preconditions.checkArgument(fetchSize > 0, "fetchSize must be positive");
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public JdbcConfigSource build() {
+            Preconditions.checkNotNull(dataSource);
+            Preconditions.checkNotNull(versionQuery);
+            Preconditions.checkNotNull(query);
+            return new JdbcConfigSource(dataSource, versionQuery, query, incrementalQuery,
+                    partitions, partitionBoundsQuery, partitionQuery, fetchSize);
+        }
+
+        public ConfigSource<Delta<ResultSet>> buildIncremental() {
+            Preconditions.checkNotNull(incrementalQuery);
+            final JdbcConfigSource source = build();
+            return new ConfigSource<Delta<ResultSet>>() {
+                @Override
+                public Update<Delta<ResultSet>> fetch() throws IOException {
+                    return source.fetchDelta(Long.MIN_VALUE, false).get();
+                }
+
+                @Override
+                public Optional<Update<Delta<ResultSet>>> fetchIfNewer(long ifNewerThan) throws IOException {
+                    return source.fetchDelta(ifNewerThan, true);
+                }
+            };
+        }
+
+        /**
+         * A source of one result set per key range, for
+         * {@link com.urbanairship.sarlacc.client.processor.sql.SqlUpdateProcessor#partitioned}. The query set with
+         * {@link #setQuery} is not used, but fetch() and fetchIfNewer() behave as for {@link #build()}.
+         */
+        public ConfigSource<List<ResultSet>> buildPartitioned() {
+            Preconditions.checkState(partitions > 0, "setPartitioning() is required");
+            Preconditions.checkNotNull(dataSource);
+            Preconditions.checkNotNull(versionQuery);
+            final JdbcConfigSource source = new JdbcConfigSource(dataSource, versionQuery, query, incrementalQuery,
+                    partitions, partitionBoundsQuery, partitionQuery, fetchSize);
+            return new ConfigSource<List<ResultSet>>() {
+                @Override
+                public Update<List<ResultSet>> fetch() throws IOException {
+                    return source.fetchPartitioned(Long.MIN_VALUE).get();
+                }
+
+                @Override
+                public Optional<Update<List<ResultSet>>> fetchIfNewer(long ifNewerThan) throws IOException {
+                    return source.fetchPartitioned(ifNewerThan);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.urbanairship.sarlacc.client.source;
+
+import java.io.File;
+import java.io.IOException;
+
+final class LocalFiles {
+    private LocalFiles() {
+    }
+
+    static File getReadableFile(String filePath) throws IOException {
+        File file = new File(filePath);
+        if (file.canRead()) {
+            return file;
+        } else {
+            throw new IOException(String.format(
+                    "Couldn't access '%s' Exists: %b Readable: %b", filePath, file.exists(), file.canRead()));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.urbanairship.sarlacc.client.model.Update;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Serves a file as a read only memory mapping rather than a stream, for processors which can work directly
+ * against the mapped bytes. Versioned by modification time like {@link FileConfigSource}. A single buffer can't
+ * exceed 2GB; line based files of any size can be mapped in windows with {@link MappedLinesConfigSource}.
+ * <p>
+ * The mapping outlives this source and is released when the buffer (and anything built over it) is garbage
+ * collected. The file must only ever be replaced by atomically renaming a new file over it, as
+ * {@link com.urbanairship.sarlacc.client.structures.snapshot.SnapshotWriter#writeSet(Iterable, java.nio.file.Path)}
+ * does: the old file then stays readable by callers still holding the old structure. Truncating or rewriting the
+ * file in place changes the bytes under every live mapping, which crashes the JVM with SIGBUS on the next read
+ * past the new end, or silently serves corrupt data. The same goes for a file being parsed by
+ * {@link com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor}.
+ */
+public class MappedFileConfigSource implements ConfigSource<ByteBuffer> {
+    private final String filePath;
+
+    public MappedFileConfigSource(String filePath) {
+        this.filePath = filePath;
+    }
+
+    @Override
+    public Optional<Update<ByteBuffer>> fetchIfNewer(long ifNewerThan) throws IOException {
+        final File file = getFile();
+        long modified = file.lastModified();
+        if (ifNewerThan < modified) {
+            return Optional.of(new Update<>(modified, map(file)));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Update<ByteBuffer> fetch() throws IOException {
+        final File file = getFile();
+        return new Update<>(file.lastModified(), map(file));
+    }
+
+    private File getFile() throws IOException {
+        return LocalFiles.getReadableFile(filePath);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format(
+                        "'%s' is too large to map as a single buffer, line based files can use MappedLinesConfigSource", file));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.model.Update;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves a line based file as read only memory mappings, for
+ * {@link com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor}. A single mapping can't
+ * exceed 2GB, so larger files are served as consecutive windows of up to that size, each of which ends on a line
+ * break. Every line must therefore fit in one window. Versioned by modification time like {@link FileConfigSource}.
+ * <p>
+ * As with {@link MappedFileConfigSource}, the file must only ever be replaced by atomically renaming a new file
+ * over it, never rewritten in place.
+ */
+public class MappedLinesConfigSource implements ConfigSource<List<ByteBuffer>> {
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final String filePath;
+    private final int maxWindowSize;
+
+    public MappedLinesConfigSource(String filePath) {
+        this(filePath, MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * @param maxWindowSize The largest window to map at once, only worth lowering for tests.
+     */
+    public MappedLinesConfigSource(String filePath, int maxWindowSize) {
+        Preconditions.checkArgument(maxWindowSize > 0, "maxWindowSize must be positive");
+        this.filePath = filePath;
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    @Override
+    public Optional<Update<List<ByteBuffer>>> fetchIfNewer(long ifNewerThan) throws IOException {
+        final File file = getFile();
+        long modified = file.lastModified();
+        if (ifNewerThan < modified) {
+            return Optional.of(new Update<>(modified, map(file)));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Update<List<ByteBuffer>> fetch() throws IOException {
+        final File file = getFile();
+        return new Update<>(file.lastModified(), map(file));
+    }
+
+    private File getFile() throws IOException {
+        return LocalFiles.getReadableFile(filePath);
+    }
+
+    private List<ByteBuffer> map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final List<ByteBuffer> windows = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                final int length = (int) Math.min(maxWindowSize, size - start);
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                int end = length;
+                if (start + length < size) {
+                    end = lastLineEnd(mapped, length);
+                    if (end < 0) {
+                        throw new IOException(String.format(
+                                "Line at offset %d of '%s' doesn't fit in a %d byte window", start, file, maxWindowSize));
+                    }
+                }
+                mapped.limit(end);
+                windows.add(mapped.slice());
+                start += end;
+            }
+            return windows;
+        }
+    }
+
+    /**
+     * @return the index after the last line break in the first length bytes, or -1 if there is none. A '\r' in the
+     * final position doesn't count, as it may be the first half of a "\r\n".
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            final byte b = buffer.get(i);
+            if (b == '\n' || (b == '\r' && i < length - 1)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
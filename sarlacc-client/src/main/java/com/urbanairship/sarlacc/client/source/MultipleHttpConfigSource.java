@@ -1,46 +1,320 @@
 package com.urbanairship.sarlacc.client.source;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.urbanairship.sarlacc.client.model.Update;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Fetches from the first of several mirrors to answer. By default mirrors are tried one at a time in list order,
+ * moving on when one fails. Two options, set with {@link #newBuilder()}, bound the time a degraded mirror can add
+ * to each check:
+ * <ul>
+ * <li>Hedging: if a mirror hasn't answered within the hedge delay, the next one is asked as well, without
+ * cancelling the first, and the first good response wins. A failure moves on to the next mirror at once. Responses
+ * which lose the race are closed as they arrive.</li>
+ * <li>Adaptive ordering: mirrors are tried in order of an exponentially weighted moving average of their recent
+ * latency, plus a penalty weighted by their recent error rate. A mirror which hasn't been heard from for five
+ * minutes loses its history and is tried first again, so one which has recovered gets another chance.</li>
+ * </ul>
+ * Mirrors may lag one another, so a response with an older Last-Modified than the current version is rejected as
+ * stale, as if the mirror had failed, and the next mirror is asked. Versions hashed from ETags or bodies can't be
+ * ordered like this, so checks from such a version are never hedged, and mirrors which don't send Last-Modified
+ * should be kept in sync by whatever publishes to them.
+ */
 public class MultipleHttpConfigSource implements ConfigSource<InputStream> {
 
     private static final Logger log = LogManager.getLogger(MultipleHttpConfigSource.class);
-    private final List<HttpConfigSource> httpConfigSources;
+
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final double FAILURE_PENALTY_MILLIS = 10_000;
+    private static final long STATS_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final List<Mirror> mirrors;
+    private final long hedgeDelayNanos;
+    private final boolean adaptiveOrdering;
+    private final ExecutorService executor;
 
     public MultipleHttpConfigSource(List<String> sourceUrls) {
-        httpConfigSources = Lists.newArrayList();
+        this(toSources(sourceUrls), 0, false, null);
+    }
+
+    private MultipleHttpConfigSource(List<HttpConfigSource> sources, long hedgeDelayNanos, boolean adaptiveOrdering,
+                                     ExecutorService executor) {
+        this.mirrors = Lists.newArrayList();
+        for (HttpConfigSource source : sources) {
+            mirrors.add(new Mirror(source));
+        }
+        this.hedgeDelayNanos = hedgeDelayNanos;
+        this.adaptiveOrdering = adaptiveOrdering;
+        this.executor = executor;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static List<HttpConfigSource> toSources(List<String> sourceUrls) {
+        final List<HttpConfigSource> sources = Lists.newArrayList();
         for (String sourceUrl : sourceUrls) {
-            httpConfigSources.add(new HttpConfigSource(sourceUrl));
+            sources.add(new HttpConfigSource(sourceUrl));
         }
+        return sources;
     }
 
     @Override
     public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
-        for (HttpConfigSource httpConfigSource : httpConfigSources) {
-            try {
-                return httpConfigSource.fetchIfNewer(ifNewerThan);
-            } catch (Exception e) {
-                log.error(e);
-            }
-        }
-        throw new IOException("All HTTP sources failed.");
+        // a hashed version can't tell a lagging mirror's answer from a newer one, so don't race mirrors against it
+        return fetch(source -> rejectStale(source, source.fetchIfNewer(ifNewerThan), ifNewerThan), ifNewerThan >= 0);
     }
 
     @Override
     public Update<InputStream> fetch() throws IOException {
-        Optional<Update<InputStream>> fetched = fetchIfNewer(0);
+        Optional<Update<InputStream>> fetched = fetch(source -> Optional.of(source.fetch()), true);
         if (fetched.isPresent()) {
             return fetched.get();
         } else {
             throw new RuntimeException("Unconditional get failed.");
         }
     }
+
+    private static Optional<Update<InputStream>> rejectStale(HttpConfigSource source, Optional<Update<InputStream>> update,
+                                                             long ifNewerThan) throws IOException {
+        if (update.isPresent() && ifNewerThan > 0 && update.get().version >= 0 && update.get().version < ifNewerThan) {
+            update.get().newVal.close();
+            throw new IOException(String.format("%s served version %d, older than the current version %d",
+                    source, update.get().version, ifNewerThan));
+        }
+        return update;
+    }
+
+    private Optional<Update<InputStream>> fetch(MirrorRequest request, boolean hedge) throws IOException {
+        final List<Mirror> ordered = new ArrayList<>(mirrors);
+        if (adaptiveOrdering) {
+            final long now = System.nanoTime();
+            // stable, so mirrors without history keep their list order
+            ordered.sort(Comparator.comparingDouble(mirror -> mirror.score(now)));
+        }
+
+        if (hedgeDelayNanos > 0 && hedge) {
+            return fetchHedged(ordered, request);
+        }
+
+        for (Mirror mirror : ordered) {
+            try {
+                return mirror.call(request);
+            } catch (Exception e) {
+                log.error(String.format("Fetch from %s failed", mirror.source), e);
+            }
+        }
+        throw new IOException("All HTTP sources failed.");
+    }
+
+    private Optional<Update<InputStream>> fetchHedged(List<Mirror> ordered, MirrorRequest request) throws IOException {
+        final CompletionService<Optional<Update<InputStream>>> completions = new ExecutorCompletionService<>(executor);
+        int next = 0;
+        int outstanding = 0;
+        try {
+            submit(completions, ordered.get(next++), request);
+            outstanding++;
+
+            while (outstanding > 0) {
+                final Future<Optional<Update<InputStream>>> done = next < ordered.size()
+                        ? completions.poll(hedgeDelayNanos, TimeUnit.NANOSECONDS)
+                        : completions.take();
+                if (done == null) {
+                    log.info(String.format("No response from %s yet, also asking %s",
+                            ordered.get(next - 1).source, ordered.get(next).source));
+                    submit(completions, ordered.get(next++), request);
+                    outstanding++;
+                    continue;
+                }
+
+                outstanding--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    // logged by the request itself
+                    if (next < ordered.size()) {
+                        submit(completions, ordered.get(next++), request);
+                        outstanding++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for mirrors");
+        } finally {
+            discardRemaining(completions, outstanding);
+        }
+        throw new IOException("All HTTP sources failed.");
+    }
+
+    private void submit(CompletionService<Optional<Update<InputStream>>> completions, Mirror mirror, MirrorRequest request) {
+        completions.submit(() -> {
+            try {
+                return mirror.call(request);
+            } catch (Exception e) {
+                log.error(String.format("Fetch from %s failed", mirror.source), e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Closes the responses of requests which lost the race as they come in, releasing their connections.
+     */
+    private void discardRemaining(CompletionService<Optional<Update<InputStream>>> completions, int outstanding) {
+        if (outstanding == 0) {
+            return;
+        }
+        executor.execute(() -> {
+            for (int i = 0; i < outstanding; i++) {
+                try {
+                    final Optional<Update<InputStream>> update = completions.take().get();
+                    if (update.isPresent()) {
+                        update.get().close();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    // logged by the request itself
+                } catch (Exception e) {
+                    log.warn("Failed to close a response which lost the race", e);
+                }
+            }
+        });
+    }
+
+    private interface MirrorRequest {
+        Optional<Update<InputStream>> call(HttpConfigSource source) throws IOException;
+    }
+
+    private static class Mirror {
+        private final HttpConfigSource source;
+
+        private double latencyMillis;
+        private double errorRate;
+        private long lastSampleNanos;
+        private boolean sampled = false;
+
+        private Mirror(HttpConfigSource source) {
+            this.source = source;
+        }
+
+        private Optional<Update<InputStream>> call(MirrorRequest request) throws IOException {
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                final Optional<Update<InputStream>> update = request.call(source);
+                failed = false;
+                return update;
+            } finally {
+                record(start, failed);
+            }
+        }
+
+        private synchronized void record(long start, boolean failed) {
+            final long now = System.nanoTime();
+            final double elapsedMillis = (now - start) / 1e6;
+            final double error = failed ? 1 : 0;
+            if (sampled && now - lastSampleNanos < STATS_TTL_NANOS) {
+                latencyMillis += EWMA_WEIGHT * (elapsedMillis - latencyMillis);
+                errorRate += EWMA_WEIGHT * (error - errorRate);
+            } else {
+                latencyMillis = elapsedMillis;
+                errorRate = error;
+                sampled = true;
+            }
+            lastSampleNanos = now;
+        }
+
+        private synchronized double score(long now) {
+            if (!sampled || now - lastSampleNanos >= STATS_TTL_NANOS) {
+                return 0;
+            }
+            return latencyMillis + errorRate * FAILURE_PENALTY_MILLIS;
+        }
+    }
+
+    public static class Builder {
+        private final List<HttpConfigSource> sources = Lists.newArrayList();
+        private long hedgeDelayNanos = 0;
+        private boolean adaptiveOrdering = false;
+        private ExecutorService executor;
+
+        private Builder() {
+        }
+
+        public Builder addUrl(String url) {
+            sources.add(new HttpConfigSource(url));
+            return this;
+        }
+
+        /**
+         * Adds a mirror configured with its own timeouts and so on, see {@link HttpConfigSource#newBuilder()}.
+         */
+        public Builder addSource(HttpConfigSource source) {
+            sources.add(Preconditions.checkNotNull(source));
+            return this;
+        }
+
+        /**
+         * Ask the next mirror as well whenever the latest one asked hasn't answered within this delay. A little over
+         * the typical latency of a healthy mirror works well, so that only outliers are hedged.
+         */
+        public Builder setHedgeDelay(long delay, TimeUnit timeUnit) {
+            Preconditions.checkArgument(delay > 0, "delay must be positive");
+            this.hedgeDelayNanos = timeUnit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Try mirrors in order of recent latency and errors rather than list order.
+         */
+        public Builder setAdaptiveOrdering(boolean adaptiveOrdering) {
+            this.adaptiveOrdering = adaptiveOrdering;
+            return this;
+        }
+
+        /**
+         * Executor for hedged requests, which needs a thread per mirror that may be in flight at once. By default
+         * the source creates a cached pool of daemon threads.
+         */
+        public Builder setExecutorService(ExecutorService executor) {
+            this.executor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        public MultipleHttpConfigSource build() {
+            Preconditions.checkArgument(!sources.isEmpty(), "At least one mirror is required");
+            ExecutorService hedgeExecutor = executor;
+            if (hedgeDelayNanos > 0 && hedgeExecutor == null) {
+                hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("sarlacc-mirror-%d")
+                        .build());
+            }
+            return new MultipleHttpConfigSource(ImmutableList.copyOf(sources), hedgeDelayNanos, adaptiveOrdering, hedgeExecutor);
+        }
+    }
 }
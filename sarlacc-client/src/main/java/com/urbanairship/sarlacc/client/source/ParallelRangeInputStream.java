@@ -0,0 +1,222 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a payload of known length as consecutive parts, several at a time, and reads them back in order, so a
+ * large payload isn't limited to the throughput of a single connection. Used by the ranged download modes of
+ * {@link HttpConfigSource} and the GCS source.
+ * <p>
+ * At most parallelism parts are downloaded ahead of the one being read, so memory use is bounded by
+ * (parallelism + 1) * partSize. A part whose stream fails or ends early is resumed from the last byte received, up
+ * to {@link #MAX_RESUMES} times, rather than restarting it or the whole payload. Readers must make sure every range
+ * comes from the same version of the payload, e.g. with If-Range or a pinned object generation, and throw
+ * {@link RangeChangedException} when it can't, which fails the download at once instead of resuming.
+ */
+public class ParallelRangeInputStream extends InputStream {
+    private static final Logger log = LogManager.getLogger(ParallelRangeInputStream.class);
+
+    public static final int MAX_RESUMES = 3;
+
+    /**
+     * Opens one range of the payload.
+     */
+    public interface RangeReader {
+        /**
+         * @return a stream of the bytes from offset from, inclusive, to offset to, exclusive. It may end early or
+         * fail partway, in which case the rest of the range is requested again, unless it fails with a
+         * {@link RangeChangedException}.
+         */
+        InputStream open(long from, long to) throws IOException;
+    }
+
+    /**
+     * The payload was replaced during the download, so no range of the version being read can be had any more.
+     */
+    public static class RangeChangedException extends IOException {
+        public RangeChangedException(String message) {
+            super(message);
+        }
+
+        public RangeChangedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final RangeReader reader;
+    private final long length;
+    private final int partSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+
+    private InputStream head;
+    private long nextPart = 0;
+    private byte[] current = new byte[0];
+    private int position = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param head If not null, a stream already open at the start of the payload, which is used for the first part
+     *             instead of opening it again. Whatever it holds past the first part is not read.
+     */
+    public ParallelRangeInputStream(RangeReader reader, long length, int partSize, int parallelism,
+                                    ExecutorService executor, InputStream head) {
+        Preconditions.checkArgument(length >= 0, "length must not be negative");
+        Preconditions.checkArgument(partSize > 0, "partSize must be positive");
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        this.reader = Preconditions.checkNotNull(reader);
+        this.length = length;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        this.executor = Preconditions.checkNotNull(executor);
+        this.head = head;
+
+        while (inFlight.size() < parallelism && submitNext()) {
+            // fill the window
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Preconditions.checkPositionIndexes(off, off + len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int read = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // running downloads notice the flag after their current read
+        for (Future<byte[]> future : inFlight) {
+            future.cancel(false);
+        }
+        inFlight.clear();
+        if (head != null) {
+            head.close();
+            head = null;
+        }
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == current.length) {
+            final Future<byte[]> next = inFlight.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a part");
+            } catch (ExecutionException e) {
+                Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IOException(e.getCause());
+            }
+            position = 0;
+            submitNext();
+        }
+        return true;
+    }
+
+    private boolean submitNext() {
+        final long from = nextPart * partSize;
+        if (from >= length) {
+            return false;
+        }
+        final long to = Math.min(length, from + partSize);
+        final InputStream partHead = nextPart == 0 ? head : null;
+        if (nextPart == 0) {
+            head = null;
+        }
+        nextPart++;
+        inFlight.add(executor.submit(() -> download(from, to, partHead)));
+        return true;
+    }
+
+    private byte[] download(long from, long to, InputStream partHead) throws IOException {
+        final byte[] part = new byte[(int) (to - from)];
+        int received = 0;
+        int resumes = 0;
+        InputStream in = partHead;
+        try {
+            while (received < part.length) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                try {
+                    if (in == null) {
+                        in = reader.open(from + received, to);
+                    }
+                    final int read = in.read(part, received, part.length - received);
+                    if (read < 0) {
+                        throw new EOFException(String.format("Range ended %d bytes short", part.length - received));
+                    }
+                    received += read;
+                } catch (IOException e) {
+                    if (e instanceof RangeChangedException || ++resumes > MAX_RESUMES || closed) {
+                        throw e;
+                    }
+                    log.warn(String.format("Download of bytes %d-%d failed at byte %d, resuming",
+                            from, to - 1, from + received), e);
+                    closeQuietly(in);
+                    in = null;
+                }
+            }
+            return part;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.debug("Failed to close range stream", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.urbanairship.sarlacc.client.source;
+
+import com.urbanairship.sarlacc.client.model.Update;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local file source which watches the file's directory with a {@link WatchService}, notifying the update service
+ * as soon as a new file is renamed into place, instead of relying on polling its modification time.
+ * <p>
+ * Writers must write to a temporary file and rename it over the target. Only the creation events such a rename
+ * produces are watched: modifications are not, since the first write of an in place rewrite would otherwise have
+ * the half written file read straight away. Files rewritten in place are still picked up by scheduled checks, by
+ * modification time as with {@link FileConfigSource}.
+ * <p>
+ * Versions are still based on modification time, but a fetch following a change notification, or a change of the
+ * underlying file (inode) seen by a scheduled check, always produces a newer version even if the modification time
+ * is the same or older. That covers files moved into place with preserved timestamps. A change only counts as seen
+ * once a payload read after it has been processed, so a payload which fails to process is fetched again.
+ */
+public class WatchingFileConfigSource implements ChangeNotifyingConfigSource<InputStream> {
+    private static final Logger log = LogManager.getLogger(WatchingFileConfigSource.class);
+
+    private final Path path;
+    private final boolean gzipped;
+
+    // change notifications received, and how many of them had happened when the last processed payload was read
+    private final AtomicLong changes = new AtomicLong();
+    private volatile long handledChanges = 0;
+    private volatile Object lastFileKey;
+    private WatchService watchService;
+
+    public WatchingFileConfigSource(String filePath, boolean gzipped) {
+        this.path = Paths.get(filePath).toAbsolutePath();
+        this.gzipped = gzipped;
+    }
+
+    @Override
+    public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+        final boolean notified = changes.get() != handledChanges;
+        final BasicFileAttributes attributes = readAttributes();
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final boolean replaced = !Objects.equals(attributes.fileKey(), lastFileKey);
+
+        if (ifNewerThan < modified) {
+            return Optional.of(open(modified, attributes));
+        } else if (notified || replaced) {
+            return Optional.of(open(ifNewerThan + 1, attributes));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Update<InputStream> fetch() throws IOException {
+        final BasicFileAttributes attributes = readAttributes();
+        return open(attributes.lastModifiedTime().toMillis(), attributes);
+    }
+
+    private BasicFileAttributes readAttributes() throws IOException {
+        if (!Files.isReadable(path)) {
+            throw new IOException(String.format(
+                    "Couldn't access '%s' Exists: %b Readable: %b", path, Files.exists(path), Files.isReadable(path)));
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private Update<InputStream> open(long version, BasicFileAttributes attributes) throws IOException {
+        // counted before reading, so a change landing while we read triggers another fetch
+        final long seenChanges = changes.get();
+
+        InputStream inputStream = Files.newInputStream(path);
+        if (gzipped) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        return new WatchedUpdate(version, inputStream, seenChanges, attributes.fileKey());
+    }
+
+    @Override
+    public synchronized void startWatching(Runnable onChange) throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException(String.format("Already watching '%s'", path));
+        }
+
+        final WatchService watcher = path.getFileSystem().newWatchService();
+        try {
+            // a rename into place is reported as a creation
+            path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+        watchService = watcher;
+
+        final Thread thread = new Thread(() -> watch(watcher, onChange), "sarlacc-watch-" + path.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn(String.format("Failed to close watch service for '%s'", path), e);
+            }
+            watchService = null;
+        }
+    }
+
+    private void watch(WatchService watcher, Runnable onChange) {
+        final Path fileName = path.getFileName();
+        try {
+            while (true) {
+                final WatchKey key = watcher.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // on overflow events were lost, so assume the worst
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        relevant = true;
+                    }
+                }
+
+                if (relevant) {
+                    changes.incrementAndGet();
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        log.error(String.format("Change listener for '%s' threw", path), e);
+                    }
+                }
+
+                if (!key.reset()) {
+                    log.error(String.format("Directory of '%s' is no longer accessible, falling back to polling", path));
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopWatching() was called
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class WatchedUpdate extends Update<InputStream> {
+        private final long seenChanges;
+        private final Object fileKey;
+
+        private WatchedUpdate(long version, InputStream newVal, long seenChanges, Object fileKey) {
+            super(version, newVal);
+            this.seenChanges = seenChanges;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public void close() throws Exception {
+            super.close();
+            if (isProcessed()) {
+                handledChanges = seenChanges;
+                lastFileKey = fileKey;
+            }
+        }
+    }
+}
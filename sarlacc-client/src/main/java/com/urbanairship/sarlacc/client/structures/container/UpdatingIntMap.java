@@ -0,0 +1,115 @@
+package com.urbanairship.sarlacc.client.structures.container;
+
+import com.urbanairship.sarlacc.client.structures.primitive.IntMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class UpdatingIntMap<V> extends UpdatingCollection<IntMap<V>> implements IntMap<V> {
+
+    private final AtomicReference<IntMap<V>> delegate;
+
+    public UpdatingIntMap(AtomicReference<IntMap<V>> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int size() {
+        checkState();
+        return delegate.get().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkState();
+        return this.size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        checkState();
+        return delegate.get().containsKey(key);
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        checkState();
+        return delegate.get().containsKey(o);
+    }
+
+    @Override
+    public boolean containsValue(Object o) {
+        checkState();
+        return delegate.get().containsValue(o);
+    }
+
+    @Override
+    public V get(int key) {
+        checkState();
+        return delegate.get().get(key);
+    }
+
+    @Override
+    public V get(Object o) {
+        checkState();
+        return delegate.get().get(o);
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        checkState();
+        return delegate.get().keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        checkState();
+        return delegate.get().values();
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        checkState();
+        return delegate.get().entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        checkState();
+        return delegate.get().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        checkState();
+        return delegate.get().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        checkState();
+        return delegate.get().toString();
+    }
+
+    @Override
+    public V put(Integer k, V v) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends Integer, ? extends V> map) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
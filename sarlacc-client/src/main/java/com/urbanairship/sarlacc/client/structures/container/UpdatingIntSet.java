@@ -0,0 +1,113 @@
+package com.urbanairship.sarlacc.client.structures.container;
+
+import com.google.common.collect.Iterators;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class UpdatingIntSet extends UpdatingCollection<IntSet> implements IntSet {
+
+    private final AtomicReference<IntSet> delegate;
+
+    public UpdatingIntSet(AtomicReference<IntSet> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int size() {
+        checkState();
+        return delegate.get().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkState();
+        return this.size() == 0;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        checkState();
+        return delegate.get().contains(value);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        checkState();
+        return delegate.get().contains(o);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        checkState();
+        return Iterators.unmodifiableIterator(delegate.get().iterator());
+    }
+
+    @Override
+    public Object[] toArray() {
+        checkState();
+        return delegate.get().toArray();
+    }
+
+    @Override
+    public <T1> T1[] toArray(T1[] t1s) {
+        checkState();
+        return delegate.get().toArray(t1s);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> objects) {
+        checkState();
+        return delegate.get().containsAll(objects);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        checkState();
+        return delegate.get().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        checkState();
+        return delegate.get().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        checkState();
+        return delegate.get().toString();
+    }
+
+    @Override
+    public boolean add(Integer t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> ts) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
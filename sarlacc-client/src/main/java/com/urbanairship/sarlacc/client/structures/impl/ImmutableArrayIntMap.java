@@ -0,0 +1,183 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.structures.primitive.IntMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map keyed by ints, backed by a sorted int[] of keys and a parallel array of values, using binary search
+ * for lookups. Costs 8 bytes per entry plus the values themselves, against 60 or more for a guava ImmutableMap
+ * with boxed Integer keys.
+ */
+public class ImmutableArrayIntMap<V> extends AbstractMap<Integer, V> implements IntMap<V> {
+    private static final ImmutableArrayIntMap<Object> EMPTY = new ImmutableArrayIntMap<>(new int[0], new Object[0]);
+
+    private final int[] keys;
+    private final Object[] values;
+
+    private ImmutableArrayIntMap(int[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> ImmutableArrayIntMap<V> of() {
+        return (ImmutableArrayIntMap<V>) EMPTY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        final int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && containsKey(((Integer) key).intValue());
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new Iterator<Entry<Integer, V>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<Integer, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int index = next++;
+                        return new SimpleImmutableEntry<>(keys[index], (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>(16);
+    }
+
+    public static <V> Builder<V> newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder<>(expectedSize);
+    }
+
+    public static class Builder<V> {
+        private int[] keys;
+        private Object[] values;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            keys = new int[Math.max(expectedSize, 1)];
+            values = new Object[keys.length];
+        }
+
+        public Builder<V> put(int key, V value) {
+            Preconditions.checkNotNull(value);
+            if (count == keys.length) {
+                final int newLength = count + (count >> 1) + 1;
+                keys = Arrays.copyOf(keys, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            keys[count] = key;
+            values[count] = value;
+            count++;
+
+            return this;
+        }
+
+        public Builder<V> put(Map.Entry<Integer, ? extends V> entry) {
+            return put(entry.getKey(), entry.getValue());
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder<V> putAll(Builder<? extends V> other) {
+            final int needed = count + other.count;
+            if (needed > keys.length) {
+                final int newLength = Math.max(needed, count + (count >> 1) + 1);
+                keys = Arrays.copyOf(keys, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            System.arraycopy(other.keys, 0, keys, count, other.count);
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the same key was added more than once
+         */
+        public ImmutableArrayIntMap<V> build() {
+            final int[] sortedKeys = Arrays.copyOf(keys, count);
+            final Object[] sortedValues = Arrays.copyOf(values, count);
+            PrimitiveArrays.sortUniqueKeys(sortedKeys, sortedValues, count);
+            return new ImmutableArrayIntMap<>(sortedKeys, sortedValues);
+        }
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void putAll(Map<? extends Integer, ? extends V> m) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+}
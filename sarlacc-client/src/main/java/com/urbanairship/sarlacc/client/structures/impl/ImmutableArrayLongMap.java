@@ -0,0 +1,183 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map keyed by longs, backed by a sorted long[] of keys and a parallel array of values, using binary search
+ * for lookups. Costs 12 bytes per entry plus the values themselves, against 60 or more for a guava ImmutableMap
+ * with boxed Long keys.
+ */
+public class ImmutableArrayLongMap<V> extends AbstractMap<Long, V> implements LongMap<V> {
+    private static final ImmutableArrayLongMap<Object> EMPTY = new ImmutableArrayLongMap<>(new long[0], new Object[0]);
+
+    private final long[] keys;
+    private final Object[] values;
+
+    private ImmutableArrayLongMap(long[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> ImmutableArrayLongMap<V> of() {
+        return (ImmutableArrayLongMap<V>) EMPTY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Long ? get(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && containsKey(((Long) key).longValue());
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return new AbstractSet<Entry<Long, V>>() {
+            @Override
+            public Iterator<Entry<Long, V>> iterator() {
+                return new Iterator<Entry<Long, V>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<Long, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int index = next++;
+                        return new SimpleImmutableEntry<>(keys[index], (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>(16);
+    }
+
+    public static <V> Builder<V> newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder<>(expectedSize);
+    }
+
+    public static class Builder<V> {
+        private long[] keys;
+        private Object[] values;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            keys = new long[Math.max(expectedSize, 1)];
+            values = new Object[keys.length];
+        }
+
+        public Builder<V> put(long key, V value) {
+            Preconditions.checkNotNull(value);
+            if (count == keys.length) {
+                final int newLength = count + (count >> 1) + 1;
+                keys = Arrays.copyOf(keys, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            keys[count] = key;
+            values[count] = value;
+            count++;
+
+            return this;
+        }
+
+        public Builder<V> put(Map.Entry<Long, ? extends V> entry) {
+            return put(entry.getKey(), entry.getValue());
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder<V> putAll(Builder<? extends V> other) {
+            final int needed = count + other.count;
+            if (needed > keys.length) {
+                final int newLength = Math.max(needed, count + (count >> 1) + 1);
+                keys = Arrays.copyOf(keys, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            System.arraycopy(other.keys, 0, keys, count, other.count);
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the same key was added more than once
+         */
+        public ImmutableArrayLongMap<V> build() {
+            final long[] sortedKeys = Arrays.copyOf(keys, count);
+            final Object[] sortedValues = Arrays.copyOf(values, count);
+            PrimitiveArrays.sortUniqueKeys(sortedKeys, sortedValues, count);
+            return new ImmutableArrayLongMap<>(sortedKeys, sortedValues);
+        }
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void putAll(Map<? extends Long, ? extends V> m) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+}
@@ -0,0 +1,162 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of longs backed by a sorted long[], using binary search for contains() queries. Costs 8 bytes per
+ * element, against 40 or more for a guava ImmutableSet of boxed Longs.
+ */
+public class ImmutableArrayLongSet extends AbstractSet<Long> implements LongSet {
+    private static final ImmutableArrayLongSet EMPTY = new ImmutableArrayLongSet(new long[0]);
+
+    private final long[] backing;
+
+    private ImmutableArrayLongSet(long[] backing) {
+        this.backing = backing;
+    }
+
+    public static ImmutableArrayLongSet of() {
+        return EMPTY;
+    }
+
+    public static ImmutableArrayLongSet copyOf(long... values) {
+        final Builder builder = newBuilder(values.length);
+        for (long value : values) {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean contains(long value) {
+        return Arrays.binarySearch(backing, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public int size() {
+        return backing.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backing.length == 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<Long>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < backing.length;
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return backing[next++];
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int sum = 0;
+        for (long value : backing) {
+            sum += Long.hashCode(value);
+        }
+        return sum;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder(16);
+    }
+
+    public static Builder newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder(expectedSize);
+    }
+
+    public static class Builder {
+        private long[] elements;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            elements = new long[Math.max(expectedSize, 1)];
+        }
+
+        public Builder add(long element) {
+            if (count == elements.length) {
+                elements = Arrays.copyOf(elements, count + (count >> 1) + 1);
+            }
+            elements[count++] = element;
+
+            return this;
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder addAll(Builder other) {
+            final int needed = count + other.count;
+            if (needed > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(needed, count + (count >> 1) + 1));
+            }
+            System.arraycopy(other.elements, 0, elements, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        public ImmutableArrayLongSet build() {
+            final long[] sorted = Arrays.copyOf(elements, count);
+            final int unique = PrimitiveArrays.sortDistinct(sorted, count);
+            return new ImmutableArrayLongSet(unique == count ? sorted : Arrays.copyOf(sorted, unique));
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean add(Long value) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+}
@@ -12,14 +12,21 @@ import java.util.*;
  *
  * Benchmarking has shown this to be about 3x slower than a guava ImmutableSet, but its
  * memory footprint is much smaller. Lookup times were ~0.5ns with 310k items.
+ *
+ * The hash codes of the sorted strings are kept in a parallel int[], and the search runs
+ * over that dense array alone. Only strings whose hash matches the key are dereferenced,
+ * so a lookup costs one cache miss per probe into the hash array rather than one into the
+ * hash array of each probed String, at the price of 4 bytes per element.
  */
 public class ImmutableArrayStringSet implements Set<String> {
     private final String[] backing;
+    private final int[] hashes;
     private final int size;
 
     /*
      * Benchmarking showed 33% speed improvements when comparing first by hash code
-     * then normal lex compare, largely because String instances cache their hash.
+     * then normal lex compare, largely because String instances cache their hash. The
+     * ordering also keeps the hashes array sorted, which contains() relies on.
      */
     private static final Comparator<String> HASH_COMPARATOR = (o1, o2) -> {
         int h1 = o1.hashCode();
@@ -35,31 +42,42 @@ public class ImmutableArrayStringSet implements Set<String> {
     private ImmutableArrayStringSet(String[] backing, int size) {
         this.backing = backing;
         this.size = size;
+        this.hashes = new int[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = backing[i].hashCode();
+        }
     }
 
-    /*
-     * Copied with minimal changes from Arrays.binarySearch()
-     */
     @Override
     public boolean contains(Object key) {
-        if (!(key instanceof String)) {
+        if (!(key instanceof String) || size == 0) {
             return false;
         }
 
         final String keyStr = (String) key;
-        int low = 0;
-        int high = size - 1;
-
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            int cmp = HASH_COMPARATOR.compare(backing[mid], keyStr);
-
-            if (cmp < 0)
-                low = mid + 1;
-            else if (cmp > 0)
-                high = mid - 1;
-            else
+        final int hash = keyStr.hashCode();
+
+        /*
+         * Lower bound search over the hash array. The loop runs a fixed log2(size) times with no
+         * early exit, and the single comparison per step is written as a conditional move so the
+         * JIT can emit it without a branch to mispredict.
+         */
+        int base = 0;
+        int len = size;
+        while (len > 1) {
+            final int half = len >>> 1;
+            base = hashes[base + half - 1] < hash ? base + half : base;
+            len -= half;
+        }
+        if (hashes[base] < hash) {
+            base++;
+        }
+
+        // Strings sharing a hash are adjacent, so only this run needs an equality check.
+        for (int i = base; i < size && hashes[i] == hash; i++) {
+            if (backing[i].equals(keyStr)) {
                 return true;
+            }
         }
         return false;
     }
@@ -96,26 +114,83 @@ public class ImmutableArrayStringSet implements Set<String> {
     }
 
     public static Builder newBuilder() {
-        return new Builder();
+        return new Builder(16);
+    }
+
+    /**
+     * @param expectedSize Number of elements expected to be added, used to size the builder's buffer up front so
+     *                     a large load doesn't repeatedly grow and copy it. Duplicates count toward the size.
+     */
+    public static Builder newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder(expectedSize);
     }
 
+    /**
+     * Appends elements to a flat buffer and sorts it once on build(), deduplicating in place. Peak memory while
+     * building is the buffer plus scratch space for the sort, rather than a tree node per element.
+     */
     public static class Builder {
-        final TreeSet<String> treeSet;
+        private String[] elements;
+        private int count = 0;
 
-        private Builder() {
-            treeSet = new TreeSet<>(HASH_COMPARATOR);
+        // Set once the buffer has been handed to a built set, after which it must be copied before being modified.
+        private boolean shared = false;
+
+        private Builder(int expectedSize) {
+            elements = new String[Math.max(expectedSize, 1)];
         }
 
         public Builder add(String element) {
             Preconditions.checkNotNull(element);
-            treeSet.add(element);
+            if (count == elements.length || shared) {
+                elements = Arrays.copyOf(elements, Math.max(count + (count >> 1) + 1, elements.length));
+                shared = false;
+            }
+            elements[count++] = element;
+
+            return this;
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder addAll(Builder other) {
+            final int needed = count + other.count;
+            if (needed > elements.length || shared) {
+                elements = Arrays.copyOf(elements, Math.max(needed, count + (count >> 1) + 1));
+                shared = false;
+            }
+            System.arraycopy(other.elements, 0, elements, count, other.count);
+            count = needed;
 
             return this;
         }
 
         public ImmutableArrayStringSet build() {
-            String[] buffer = treeSet.toArray(new String[treeSet.size()]);
-            return new ImmutableArrayStringSet(buffer, buffer.length);
+            if (shared) {
+                elements = Arrays.copyOf(elements, elements.length);
+                shared = false;
+            }
+
+            // sorts on the common pool for large buffers, and in place on this thread below a few thousand elements
+            Arrays.parallelSort(elements, 0, count, HASH_COMPARATOR);
+
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || HASH_COMPARATOR.compare(elements[unique - 1], elements[i]) != 0) {
+                    elements[unique++] = elements[i];
+                }
+            }
+            Arrays.fill(elements, unique, count, null);
+            count = unique;
+
+            if (count == elements.length) {
+                shared = true;
+                return new ImmutableArrayStringSet(elements, count);
+            } else {
+                return new ImmutableArrayStringSet(Arrays.copyOf(elements, count), count);
+            }
         }
     }
 
@@ -0,0 +1,227 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set implementation backed by an open addressing hash table, using linear probing for contains() queries.
+ *
+ * This trades some of ImmutableArrayStringSet's memory savings for constant time lookups. The table is a
+ * power of two sized String[] kept at most 3/4 full, with the hash of each slot's string stored in a parallel
+ * int[] so that probes past non-matching slots never dereference the String. Expect roughly 8-16 bytes per
+ * element on top of the strings themselves, against 8 for ImmutableArrayStringSet and 30+ for a guava
+ * ImmutableSet.
+ */
+public class ImmutableHashStringSet extends AbstractSet<String> {
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final String[] table;
+    private final int[] hashes;
+    private final int mask;
+    private final int size;
+
+    private ImmutableHashStringSet(String[] table, int[] hashes, int size) {
+        this.table = table;
+        this.hashes = hashes;
+        this.mask = table.length - 1;
+        this.size = size;
+    }
+
+    /*
+     * String hash codes of similar keys tend to differ only in their low bits, which would cluster badly
+     * under linear probing. Same mixing guava uses for its own hash tables.
+     */
+    private static int smear(int hashCode) {
+        return 0x1b873593 * Integer.rotateLeft(hashCode * 0xcc9e2d51, 15);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        final int minimum = (int) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD_FACTOR);
+        return Math.max(2, Integer.highestOneBit(minimum - 1) << 1);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+
+        final String keyStr = (String) key;
+        final int hash = keyStr.hashCode();
+
+        for (int i = smear(hash) & mask; ; i = (i + 1) & mask) {
+            final String candidate = table[i];
+            if (candidate == null) {
+                return false;
+            } else if (hashes[i] == hash && candidate.equals(keyStr)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                int i = from;
+                while (i < table.length && table[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < table.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String current = table[next];
+                next = advance(next + 1);
+                return current;
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        final Object[] out = new Object[size];
+        int i = 0;
+        for (String s : table) {
+            if (s != null) {
+                out[i++] = s;
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public int hashCode() {
+        // Set.hashCode() is the sum of the element hashes, which are already on hand.
+        int sum = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                sum += hashes[i];
+            }
+        }
+        return sum;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder(16);
+    }
+
+    public static Builder newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder(expectedSize);
+    }
+
+    public static class Builder {
+        private String[] elements;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            elements = new String[Math.max(expectedSize, 1)];
+        }
+
+        public Builder add(String element) {
+            Preconditions.checkNotNull(element);
+            if (count == elements.length) {
+                elements = Arrays.copyOf(elements, count + (count >> 1) + 1);
+            }
+            elements[count++] = element;
+
+            return this;
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder addAll(Builder other) {
+            final int needed = count + other.count;
+            if (needed > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(needed, count + (count >> 1) + 1));
+            }
+            System.arraycopy(other.elements, 0, elements, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        public ImmutableHashStringSet build() {
+            final int tableSize = tableSizeFor(count);
+            final int mask = tableSize - 1;
+            final String[] table = new String[tableSize];
+            final int[] hashes = new int[tableSize];
+
+            int size = 0;
+            for (int e = 0; e < count; e++) {
+                final String element = elements[e];
+                final int hash = element.hashCode();
+
+                int i = smear(hash) & mask;
+                while (table[i] != null && !(hashes[i] == hash && table[i].equals(element))) {
+                    i = (i + 1) & mask;
+                }
+                if (table[i] == null) {
+                    table[i] = element;
+                    hashes[i] = hash;
+                    size++;
+                }
+            }
+
+            return new ImmutableHashStringSet(table, hashes, size);
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean add(String s) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+}
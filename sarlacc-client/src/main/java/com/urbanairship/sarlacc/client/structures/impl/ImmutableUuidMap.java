@@ -0,0 +1,224 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A map keyed by UUIDs, stored as two parallel sorted long[]s of key bits and a parallel array of values, using
+ * binary search for lookups. Costs 20 bytes per entry plus the values themselves.
+ * <p>
+ * As with {@link ImmutableUuidSet}, keys can be looked up as text with {@link #get(CharSequence)}, while
+ * {@link #get(Object)} and {@link #containsKey(Object)} only match UUIDs.
+ */
+public class ImmutableUuidMap<V> extends AbstractMap<UUID, V> implements UuidMap<V> {
+    private static final ImmutableUuidMap<Object> EMPTY = new ImmutableUuidMap<>(new long[0], new long[0], new Object[0]);
+
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final Object[] values;
+
+    private ImmutableUuidMap(long[] mostSignificantBits, long[] leastSignificantBits, Object[] values) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> ImmutableUuidMap<V> of() {
+        return (ImmutableUuidMap<V>) EMPTY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(long mostSignificantBits, long leastSignificantBits) {
+        final int index = indexOf(mostSignificantBits, leastSignificantBits);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public V get(UUID key) {
+        return key == null ? null : get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    @Override
+    public V get(CharSequence key) {
+        if (!Uuids.isUuid(key)) {
+            return null;
+        }
+        return get(Uuids.uncheckedMostSignificantBits(key), Uuids.uncheckedLeastSignificantBits(key));
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof UUID ? get((UUID) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsKey(CharSequence key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return mostSignificantBits.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mostSignificantBits.length == 0;
+    }
+
+    private int indexOf(long high, long low) {
+        return PrimitiveArrays.binarySearch(mostSignificantBits, leastSignificantBits, high, low);
+    }
+
+    @Override
+    public Set<Entry<UUID, V>> entrySet() {
+        return new AbstractSet<Entry<UUID, V>>() {
+            @Override
+            public Iterator<Entry<UUID, V>> iterator() {
+                return new Iterator<Entry<UUID, V>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < mostSignificantBits.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<UUID, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int index = next++;
+                        final UUID key = new UUID(mostSignificantBits[index], leastSignificantBits[index]);
+                        return new SimpleImmutableEntry<>(key, (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mostSignificantBits.length;
+            }
+        };
+    }
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>(16);
+    }
+
+    public static <V> Builder<V> newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder<>(expectedSize);
+    }
+
+    public static class Builder<V> {
+        private long[] mostSignificantBits;
+        private long[] leastSignificantBits;
+        private Object[] values;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            mostSignificantBits = new long[Math.max(expectedSize, 1)];
+            leastSignificantBits = new long[mostSignificantBits.length];
+            values = new Object[mostSignificantBits.length];
+        }
+
+        public Builder<V> put(long mostSignificantBits, long leastSignificantBits, V value) {
+            Preconditions.checkNotNull(value);
+            if (count == values.length) {
+                final int newLength = count + (count >> 1) + 1;
+                this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, newLength);
+                this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            this.mostSignificantBits[count] = mostSignificantBits;
+            this.leastSignificantBits[count] = leastSignificantBits;
+            values[count] = value;
+            count++;
+
+            return this;
+        }
+
+        public Builder<V> put(UUID key, V value) {
+            return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the key is not a UUID in canonical form
+         */
+        public Builder<V> put(CharSequence key, V value) {
+            Uuids.checkUuid(key);
+            return put(Uuids.uncheckedMostSignificantBits(key), Uuids.uncheckedLeastSignificantBits(key), value);
+        }
+
+        public Builder<V> put(Map.Entry<UUID, ? extends V> entry) {
+            return put(entry.getKey(), entry.getValue());
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder<V> putAll(Builder<? extends V> other) {
+            final int needed = count + other.count;
+            if (needed > values.length) {
+                final int newLength = Math.max(needed, count + (count >> 1) + 1);
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, newLength);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            System.arraycopy(other.mostSignificantBits, 0, mostSignificantBits, count, other.count);
+            System.arraycopy(other.leastSignificantBits, 0, leastSignificantBits, count, other.count);
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the same key was added more than once
+         */
+        public ImmutableUuidMap<V> build() {
+            final long[] high = Arrays.copyOf(mostSignificantBits, count);
+            final long[] low = Arrays.copyOf(leastSignificantBits, count);
+            final Object[] sortedValues = Arrays.copyOf(values, count);
+            PrimitiveArrays.sortUniqueKeys(high, low, sortedValues, count);
+            return new ImmutableUuidMap<>(high, low, sortedValues);
+        }
+    }
+
+    @Override
+    public V put(UUID key, V value) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void putAll(Map<? extends UUID, ? extends V> m) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+}
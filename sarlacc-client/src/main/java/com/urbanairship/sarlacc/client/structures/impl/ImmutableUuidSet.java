@@ -0,0 +1,199 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidSet;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * A set of UUIDs stored as two parallel sorted long[]s holding the most and least significant bits, using binary
+ * search for contains() queries. Costs 16 bytes per element, against 90 or more for the same ids held as Strings.
+ * <p>
+ * Ids can also be looked up as text with {@link #contains(CharSequence)}, which parses them without allocating a
+ * {@link UUID}. {@link #contains(Object)} only matches UUIDs, like any other {@code Set<UUID>}, so that
+ * {@code equals()} and {@code containsAll()} stay symmetric with other sets.
+ */
+public class ImmutableUuidSet extends AbstractSet<UUID> implements UuidSet {
+    private static final ImmutableUuidSet EMPTY = new ImmutableUuidSet(new long[0], new long[0]);
+
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+
+    private ImmutableUuidSet(long[] mostSignificantBits, long[] leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    public static ImmutableUuidSet of() {
+        return EMPTY;
+    }
+
+    @Override
+    public boolean contains(long mostSignificantBits, long leastSignificantBits) {
+        return PrimitiveArrays.binarySearch(this.mostSignificantBits, this.leastSignificantBits,
+                mostSignificantBits, leastSignificantBits) >= 0;
+    }
+
+    public boolean contains(UUID uuid) {
+        return uuid != null && contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @Override
+    public boolean contains(CharSequence uuid) {
+        return Uuids.isUuid(uuid)
+                && contains(Uuids.uncheckedMostSignificantBits(uuid), Uuids.uncheckedLeastSignificantBits(uuid));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof UUID && contains((UUID) o);
+    }
+
+    @Override
+    public int size() {
+        return mostSignificantBits.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mostSignificantBits.length == 0;
+    }
+
+    @Override
+    public Iterator<UUID> iterator() {
+        return new Iterator<UUID>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < mostSignificantBits.length;
+            }
+
+            @Override
+            public UUID next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int index = next++;
+                return new UUID(mostSignificantBits[index], leastSignificantBits[index]);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int sum = 0;
+        for (int i = 0; i < mostSignificantBits.length; i++) {
+            // same as UUID.hashCode()
+            sum += Long.hashCode(mostSignificantBits[i] ^ leastSignificantBits[i]);
+        }
+        return sum;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder(16);
+    }
+
+    public static Builder newBuilder(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        return new Builder(expectedSize);
+    }
+
+    public static class Builder {
+        private long[] mostSignificantBits;
+        private long[] leastSignificantBits;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            mostSignificantBits = new long[Math.max(expectedSize, 1)];
+            leastSignificantBits = new long[mostSignificantBits.length];
+        }
+
+        public Builder add(long mostSignificantBits, long leastSignificantBits) {
+            if (count == this.mostSignificantBits.length) {
+                final int newLength = count + (count >> 1) + 1;
+                this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, newLength);
+                this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, newLength);
+            }
+            this.mostSignificantBits[count] = mostSignificantBits;
+            this.leastSignificantBits[count] = leastSignificantBits;
+            count++;
+
+            return this;
+        }
+
+        public Builder add(UUID uuid) {
+            return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+
+        /**
+         * @throws IllegalArgumentException if the sequence is not a UUID in canonical form
+         */
+        public Builder add(CharSequence uuid) {
+            Uuids.checkUuid(uuid);
+            return add(Uuids.uncheckedMostSignificantBits(uuid), Uuids.uncheckedLeastSignificantBits(uuid));
+        }
+
+        /**
+         * Adds everything added to other, which is left unchanged. Used to combine builders filled in parallel.
+         */
+        public Builder addAll(Builder other) {
+            final int needed = count + other.count;
+            if (needed > mostSignificantBits.length) {
+                final int newLength = Math.max(needed, count + (count >> 1) + 1);
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, newLength);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, newLength);
+            }
+            System.arraycopy(other.mostSignificantBits, 0, mostSignificantBits, count, other.count);
+            System.arraycopy(other.leastSignificantBits, 0, leastSignificantBits, count, other.count);
+            count = needed;
+
+            return this;
+        }
+
+        public ImmutableUuidSet build() {
+            final long[] high = Arrays.copyOf(mostSignificantBits, count);
+            final long[] low = Arrays.copyOf(leastSignificantBits, count);
+            final int unique = PrimitiveArrays.sortDistinct(high, low, count);
+            if (unique == count) {
+                return new ImmutableUuidSet(high, low);
+            }
+            return new ImmutableUuidSet(Arrays.copyOf(high, unique), Arrays.copyOf(low, unique));
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean add(UUID value) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends UUID> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+}
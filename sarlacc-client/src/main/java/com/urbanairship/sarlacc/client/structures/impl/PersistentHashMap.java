@@ -0,0 +1,184 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map counterpart of {@link PersistentHashSet}: an immutable hash map whose {@link #withChanges} copies only
+ * the segments holding changed keys, sharing the rest, and leaves this map untouched for its readers.
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(SegmentedTable.empty(true));
+
+    private final SegmentedTable table;
+
+    private PersistentHashMap(SegmentedTable table) {
+        this.table = table;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> of() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the same key was added more than once
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentHashMap) {
+            return (PersistentHashMap<K, V>) map;
+        }
+        final Builder<K, V> builder = newBuilder(map.size());
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            builder.put(entry);
+        }
+        return builder.build();
+    }
+
+    public static <K, V> Builder<K, V> newBuilder() {
+        return new Builder<>(16);
+    }
+
+    /**
+     * @param expectedSize Number of entries the builder is expected to receive, used to presize it.
+     */
+    public static <K, V> Builder<K, V> newBuilder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Returns a map with the removals and then the upserts applied, sharing unchanged segments with this one, or
+     * this map itself if nothing changes. A key both removed and upserted ends up with the upserted value.
+     */
+    public PersistentHashMap<K, V> withChanges(Collection<?> removals, Map<? extends K, ? extends V> upserts) {
+        final Map<Object, Object> changes = new LinkedHashMap<>();
+        for (Object removal : removals) {
+            changes.put(Preconditions.checkNotNull(removal), SegmentedTable.REMOVED);
+        }
+        for (Map.Entry<? extends K, ? extends V> upsert : upserts.entrySet()) {
+            changes.put(Preconditions.checkNotNull(upsert.getKey()), Preconditions.checkNotNull(upsert.getValue()));
+        }
+
+        final SegmentedTable changed = table.withChanges(changes);
+        return changed == table ? this : new PersistentHashMap<>(changed);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) table.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                final SegmentedTable.Cursor cursor = table.cursor();
+                return new Iterator<Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return cursor.hasNext();
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<K, V> next() {
+                        if (!cursor.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        cursor.advance();
+                        return new SimpleImmutableEntry<>((K) cursor.key(), (V) cursor.value());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    public static class Builder<K, V> {
+        private Object[] keys;
+        private Object[] values;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            keys = new Object[Math.max(expectedSize, 1)];
+            values = new Object[keys.length];
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            Preconditions.checkNotNull(key);
+            Preconditions.checkNotNull(value);
+            if (count == keys.length) {
+                final int newLength = count + (count >> 1) + 1;
+                keys = Arrays.copyOf(keys, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            keys[count] = key;
+            values[count] = value;
+            count++;
+
+            return this;
+        }
+
+        public Builder<K, V> put(Map.Entry<? extends K, ? extends V> entry) {
+            return put(entry.getKey(), entry.getValue());
+        }
+
+        /**
+         * @throws IllegalArgumentException if the same key was added more than once
+         */
+        public PersistentHashMap<K, V> build() {
+            return new PersistentHashMap<>(SegmentedTable.build(keys, values, count));
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+}
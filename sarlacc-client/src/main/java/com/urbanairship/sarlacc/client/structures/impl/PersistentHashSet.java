@@ -0,0 +1,164 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash set which can cheaply produce changed copies of itself. Elements are split into segments of
+ * around 64 by hash, and {@link #withChanges} copies only the segments holding changed elements, sharing all the
+ * others with this set. Applying a small patch to a set of millions therefore allocates kilobytes rather than
+ * rebuilding the whole set, and this set is left untouched for anyone still reading it.
+ * <p>
+ * Lookups hash the element and binary search one segment. Expect roughly 16 bytes per element on top of the
+ * elements themselves.
+ */
+public class PersistentHashSet<E> extends AbstractSet<E> {
+    private static final PersistentHashSet<Object> EMPTY = new PersistentHashSet<>(SegmentedTable.empty(false));
+
+    private final SegmentedTable table;
+
+    private PersistentHashSet(SegmentedTable table) {
+        this.table = table;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> of() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentHashSet) {
+            return (PersistentHashSet<E>) elements;
+        }
+        final Builder<E> builder = newBuilder(elements.size());
+        for (E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    public static <E> Builder<E> newBuilder() {
+        return new Builder<>(16);
+    }
+
+    /**
+     * @param expectedSize Number of elements the builder is expected to receive, used to presize it.
+     */
+    public static <E> Builder<E> newBuilder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Returns a set with the removals and then the additions applied, sharing unchanged segments with this one,
+     * or this set itself if nothing changes. An element both removed and added ends up present.
+     */
+    public PersistentHashSet<E> withChanges(Collection<?> removals, Collection<? extends E> additions) {
+        final Map<Object, Object> changes = new LinkedHashMap<>();
+        for (Object removal : removals) {
+            changes.put(Preconditions.checkNotNull(removal), SegmentedTable.REMOVED);
+        }
+        for (E addition : additions) {
+            changes.put(Preconditions.checkNotNull(addition), SegmentedTable.PRESENT);
+        }
+
+        final SegmentedTable changed = table.withChanges(changes);
+        return changed == table ? this : new PersistentHashSet<>(changed);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return table.containsKey(o);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final SegmentedTable.Cursor cursor = table.cursor();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                cursor.advance();
+                return (E) cursor.key();
+            }
+        };
+    }
+
+    public static class Builder<E> {
+        private Object[] elements;
+        private int count = 0;
+
+        private Builder(int expectedSize) {
+            elements = new Object[Math.max(expectedSize, 1)];
+        }
+
+        public Builder<E> add(E element) {
+            Preconditions.checkNotNull(element);
+            if (count == elements.length) {
+                elements = Arrays.copyOf(elements, count + (count >> 1) + 1);
+            }
+            elements[count++] = element;
+
+            return this;
+        }
+
+        public PersistentHashSet<E> build() {
+            return new PersistentHashSet<>(SegmentedTable.build(elements, null, count));
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+}
@@ -0,0 +1,272 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sorting helpers shared by the primitive array backed structures' builders.
+ */
+final class PrimitiveArrays {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private PrimitiveArrays() {
+    }
+
+    /**
+     * Sorts the first n elements and moves the distinct ones to the front.
+     *
+     * @return the number of distinct elements
+     */
+    static int sortDistinct(long[] a, int n) {
+        Arrays.sort(a, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || a[unique - 1] != a[i]) {
+                a[unique++] = a[i];
+            }
+        }
+        return unique;
+    }
+
+    static int sortDistinct(int[] a, int n) {
+        Arrays.sort(a, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || a[unique - 1] != a[i]) {
+                a[unique++] = a[i];
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Sorts the first n keys, applying the same permutation to values, and rejects duplicate keys the way
+     * guava's ImmutableMap.Builder does.
+     */
+    static void sortUniqueKeys(long[] keys, Object[] values, int n) {
+        quicksort(keys, values, 0, n - 1);
+        for (int i = 1; i < n; i++) {
+            if (keys[i - 1] == keys[i]) {
+                throw new IllegalArgumentException("Multiple entries with same key: " + keys[i]);
+            }
+        }
+    }
+
+    static void sortUniqueKeys(int[] keys, Object[] values, int n) {
+        quicksort(keys, values, 0, n - 1);
+        for (int i = 1; i < n; i++) {
+            if (keys[i - 1] == keys[i]) {
+                throw new IllegalArgumentException("Multiple entries with same key: " + keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Sorts the first n (high, low) pairs, ordering by high then low, and moves the distinct pairs to the front.
+     *
+     * @return the number of distinct pairs
+     */
+    static int sortDistinct(long[] high, long[] low, int n) {
+        quicksort(high, low, null, 0, n - 1);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || high[unique - 1] != high[i] || low[unique - 1] != low[i]) {
+                high[unique] = high[i];
+                low[unique] = low[i];
+                unique++;
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Sorts the first n (high, low) keys, applying the same permutation to values, rejecting duplicate keys.
+     */
+    static void sortUniqueKeys(long[] high, long[] low, Object[] values, int n) {
+        quicksort(high, low, values, 0, n - 1);
+        for (int i = 1; i < n; i++) {
+            if (high[i - 1] == high[i] && low[i - 1] == low[i]) {
+                throw new IllegalArgumentException(String.format("Multiple entries with same key: %016x%016x", high[i], low[i]));
+            }
+        }
+    }
+
+    /**
+     * Binary search over (high, low) pairs sorted by {@link #sortDistinct(long[], long[], int)}.
+     *
+     * @return the index of the pair, or a negative value if absent
+     */
+    static int binarySearch(long[] high, long[] low, long keyHigh, long keyLow) {
+        int from = 0;
+        int to = high.length - 1;
+        while (from <= to) {
+            final int mid = (from + to) >>> 1;
+            final int cmp = compare(high[mid], low[mid], keyHigh, keyLow);
+            if (cmp < 0) {
+                from = mid + 1;
+            } else if (cmp > 0) {
+                to = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(from + 1);
+    }
+
+    static int compare(long highA, long lowA, long highB, long lowB) {
+        final int cmp = Long.compare(highA, highB);
+        return cmp != 0 ? cmp : Long.compare(lowA, lowB);
+    }
+
+    /*
+     * Median of three quicksort with an insertion sort cutoff. Recurses on the smaller partition and loops on
+     * the larger one so stack depth stays logarithmic.
+     */
+    private static void quicksort(long[] keys, Object[] values, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid] < keys[low]) swap(keys, values, mid, low);
+            if (keys[high] < keys[low]) swap(keys, values, high, low);
+            if (keys[high] < keys[mid]) swap(keys, values, high, mid);
+            final long pivot = keys[mid];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+
+            if (j - low < high - i) {
+                quicksort(keys, values, low, j);
+                low = i;
+            } else {
+                quicksort(keys, values, i, high);
+                high = j;
+            }
+        }
+
+        for (int i = low + 1; i <= high; i++) {
+            final long key = keys[i];
+            final Object value = values[i];
+            int j = i - 1;
+            while (j >= low && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void quicksort(int[] keys, Object[] values, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid] < keys[low]) swap(keys, values, mid, low);
+            if (keys[high] < keys[low]) swap(keys, values, high, low);
+            if (keys[high] < keys[mid]) swap(keys, values, high, mid);
+            final int pivot = keys[mid];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+
+            if (j - low < high - i) {
+                quicksort(keys, values, low, j);
+                low = i;
+            } else {
+                quicksort(keys, values, i, high);
+                high = j;
+            }
+        }
+
+        for (int i = low + 1; i <= high; i++) {
+            final int key = keys[i];
+            final Object value = values[i];
+            int j = i - 1;
+            while (j >= low && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void quicksort(long[] high, long[] low, Object[] values, int from, int to) {
+        while (to - from >= INSERTION_SORT_THRESHOLD) {
+            final int mid = (from + to) >>> 1;
+            if (compare(high[mid], low[mid], high[from], low[from]) < 0) swap(high, low, values, mid, from);
+            if (compare(high[to], low[to], high[from], low[from]) < 0) swap(high, low, values, to, from);
+            if (compare(high[to], low[to], high[mid], low[mid]) < 0) swap(high, low, values, to, mid);
+            final long pivotHigh = high[mid];
+            final long pivotLow = low[mid];
+
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (compare(high[i], low[i], pivotHigh, pivotLow) < 0) i++;
+                while (compare(high[j], low[j], pivotHigh, pivotLow) > 0) j--;
+                if (i <= j) {
+                    swap(high, low, values, i++, j--);
+                }
+            }
+
+            if (j - from < to - i) {
+                quicksort(high, low, values, from, j);
+                from = i;
+            } else {
+                quicksort(high, low, values, i, to);
+                to = j;
+            }
+        }
+
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && compare(high[j - 1], low[j - 1], high[j], low[j]) > 0; j--) {
+                swap(high, low, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] high, long[] low, Object[] values, int a, int b) {
+        final long h = high[a];
+        high[a] = high[b];
+        high[b] = h;
+        final long l = low[a];
+        low[a] = low[b];
+        low[b] = l;
+        if (values != null) {
+            final Object value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+        }
+    }
+
+    private static void swap(long[] keys, Object[] values, int a, int b) {
+        final long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        final Object value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    private static void swap(int[] keys, Object[] values, int a, int b) {
+        final int key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        final Object value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
@@ -0,0 +1,336 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Storage shared by PersistentHashSet and PersistentHashMap. Entries are spread over a power of two number of
+ * segments by the top bits of their hash, and each segment is a small immutable array sorted by hash, searched by
+ * binary search. A changed copy of a table allocates only the segments the changes touch plus a new segment index,
+ * sharing every other segment with the original, which stays valid and unchanged.
+ * <p>
+ * Sets leave the values arrays null.
+ */
+final class SegmentedTable {
+    private static final int TARGET_SEGMENT_SIZE = 64;
+    private static final int MAX_SEGMENT_BITS = 24;
+
+    // change values for withChanges(): REMOVED deletes a key, and sets add keys with PRESENT
+    static final Object REMOVED = new Object();
+    static final Object PRESENT = new Object();
+
+    private final Segment[] segments;
+    private final int bits;
+    private final int size;
+    private final boolean hasValues;
+
+    private SegmentedTable(Segment[] segments, int bits, int size, boolean hasValues) {
+        this.segments = segments;
+        this.bits = bits;
+        this.size = size;
+        this.hasValues = hasValues;
+    }
+
+    static SegmentedTable empty(boolean hasValues) {
+        return new SegmentedTable(new Segment[]{Segment.empty(hasValues)}, 0, 0, hasValues);
+    }
+
+    /**
+     * @param values Null for a set. For a map, duplicate keys are rejected, while a set keeps one of them.
+     */
+    static SegmentedTable build(Object[] keys, Object[] values, int count) {
+        final boolean hasValues = values != null;
+        final int bits = bitsFor(count);
+
+        // sort by biased hash, which orders by the unsigned hash and so groups each segment's entries together
+        final long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) biasedHash(keys[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        final Segment[] segments = new Segment[1 << bits];
+        int size = 0;
+        int from = 0;
+        for (int s = 0; s < segments.length; s++) {
+            int to = from;
+            while (to < count && segmentOf((int) (order[to] >> 32), bits) == s) {
+                to++;
+            }
+            segments[s] = Segment.fromSorted(order, from, to, keys, values, hasValues);
+            size += segments[s].hashes.length;
+            from = to;
+        }
+
+        return new SegmentedTable(segments, bits, size, hasValues);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        final int hash = biasedHash(key);
+        return segments[segmentOf(hash, bits)].indexOf(hash, key) >= 0;
+    }
+
+    /**
+     * @return the value for the key, or null if absent
+     */
+    Object get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        final int hash = biasedHash(key);
+        final Segment segment = segments[segmentOf(hash, bits)];
+        final int i = segment.indexOf(hash, key);
+        return i < 0 ? null : segment.values[i];
+    }
+
+    /**
+     * @param changes Keys mapped to their new value, to PRESENT for a set, or to REMOVED, in the order applied.
+     * @return a table with the changes applied, or this one if they change nothing
+     */
+    SegmentedTable withChanges(Map<Object, Object> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+
+        final Map<Integer, Map<Object, Object>> bySegment = new HashMap<>();
+        for (Map.Entry<Object, Object> change : changes.entrySet()) {
+            final int segment = segmentOf(biasedHash(change.getKey()), bits);
+            bySegment.computeIfAbsent(segment, s -> new LinkedHashMap<>()).put(change.getKey(), change.getValue());
+        }
+
+        final Segment[] newSegments = segments.clone();
+        int newSize = size;
+        boolean changed = false;
+        for (Map.Entry<Integer, Map<Object, Object>> edit : bySegment.entrySet()) {
+            final Segment old = segments[edit.getKey()];
+            final Segment updated = old.withChanges(edit.getValue(), hasValues);
+            if (updated != old) {
+                newSegments[edit.getKey()] = updated;
+                newSize += updated.hashes.length - old.hashes.length;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return this;
+        }
+
+        final SegmentedTable table = new SegmentedTable(newSegments, bits, newSize, hasValues);
+        if (bitsFor(newSize) > bits + 1 || bitsFor(newSize) < bits - 1) {
+            // drifted far from the target segment size, so redistribute everything
+            return table.rebuild();
+        }
+        return table;
+    }
+
+    private SegmentedTable rebuild() {
+        final Object[] keys = new Object[size];
+        final Object[] values = hasValues ? new Object[size] : null;
+        int i = 0;
+        for (Segment segment : segments) {
+            System.arraycopy(segment.keys, 0, keys, i, segment.keys.length);
+            if (hasValues) {
+                System.arraycopy(segment.values, 0, values, i, segment.values.length);
+            }
+            i += segment.keys.length;
+        }
+        return build(keys, values, size);
+    }
+
+    /**
+     * Iterates over entry positions; the caller reads key() and value() after each advance().
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    final class Cursor {
+        private int segment = 0;
+        private int index = -1;
+
+        boolean hasNext() {
+            int s = segment;
+            int i = index + 1;
+            while (s < segments.length) {
+                if (i < segments[s].keys.length) {
+                    return true;
+                }
+                s++;
+                i = 0;
+            }
+            return false;
+        }
+
+        void advance() {
+            index++;
+            while (segment < segments.length && index >= segments[segment].keys.length) {
+                segment++;
+                index = 0;
+            }
+            if (segment >= segments.length) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        Object key() {
+            return segments[segment].keys[index];
+        }
+
+        Object value() {
+            return segments[segment].values[index];
+        }
+    }
+
+    /*
+     * Same mixing ImmutableHashStringSet uses, then biased so that signed comparison orders by the unsigned hash,
+     * whose top bits choose the segment.
+     */
+    private static int biasedHash(Object key) {
+        final int hashCode = key.hashCode();
+        return (0x1b873593 * Integer.rotateLeft(hashCode * 0xcc9e2d51, 15)) ^ Integer.MIN_VALUE;
+    }
+
+    private static int segmentOf(int biasedHash, int bits) {
+        return bits == 0 ? 0 : (biasedHash ^ Integer.MIN_VALUE) >>> (32 - bits);
+    }
+
+    private static int bitsFor(int size) {
+        final int segments = Math.max(1, size / TARGET_SEGMENT_SIZE);
+        return Math.min(MAX_SEGMENT_BITS, 31 - Integer.numberOfLeadingZeros(segments));
+    }
+
+    private static final class Segment {
+        private static final Segment EMPTY_SET = new Segment(new int[0], new Object[0], null);
+        private static final Segment EMPTY_MAP = new Segment(new int[0], new Object[0], new Object[0]);
+
+        private final int[] hashes;
+        private final Object[] keys;
+        private final Object[] values;
+
+        private Segment(int[] hashes, Object[] keys, Object[] values) {
+            this.hashes = hashes;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private static Segment empty(boolean hasValues) {
+            return hasValues ? EMPTY_MAP : EMPTY_SET;
+        }
+
+        /**
+         * @param order (biased hash, index) pairs sorted by hash, of which [from, to) belong to this segment
+         */
+        private static Segment fromSorted(long[] order, int from, int to, Object[] keys, Object[] values, boolean hasValues) {
+            if (from == to) {
+                return empty(hasValues);
+            }
+
+            final int[] hashes = new int[to - from];
+            final Object[] segmentKeys = new Object[to - from];
+            final Object[] segmentValues = hasValues ? new Object[to - from] : null;
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                final int hash = (int) (order[i] >> 32);
+                final int index = (int) order[i];
+                final Object key = keys[index];
+
+                // equal keys have equal hashes, so any duplicate is among the entries just added with this hash
+                boolean duplicate = false;
+                for (int j = n - 1; j >= 0 && hashes[j] == hash; j--) {
+                    if (segmentKeys[j].equals(key)) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (duplicate) {
+                    if (hasValues) {
+                        throw new IllegalArgumentException("Multiple entries with same key: " + key);
+                    }
+                    continue;
+                }
+
+                hashes[n] = hash;
+                segmentKeys[n] = key;
+                if (hasValues) {
+                    segmentValues[n] = values[index];
+                }
+                n++;
+            }
+
+            if (n == to - from) {
+                return new Segment(hashes, segmentKeys, segmentValues);
+            }
+            return new Segment(Arrays.copyOf(hashes, n), Arrays.copyOf(segmentKeys, n),
+                    hasValues ? Arrays.copyOf(segmentValues, n) : null);
+        }
+
+        private int indexOf(int hash, Object key) {
+            int low = 0;
+            int high = hashes.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (hashes[mid] < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < hashes.length && hashes[i] == hash; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Segment withChanges(Map<Object, Object> changes, boolean hasValues) {
+            final Map<Object, Object> pending = new LinkedHashMap<>(changes);
+            final Object[] keys = new Object[this.keys.length + changes.size()];
+            final Object[] values = new Object[keys.length];
+            int n = 0;
+            boolean changed = false;
+
+            for (int i = 0; i < this.keys.length; i++) {
+                final Object change = pending.remove(this.keys[i]);
+                if (change == REMOVED) {
+                    changed = true;
+                    continue;
+                }
+                keys[n] = this.keys[i];
+                if (hasValues) {
+                    values[n] = change == null ? this.values[i] : change;
+                    changed |= change != null && change != this.values[i];
+                }
+                n++;
+            }
+            for (Map.Entry<Object, Object> added : pending.entrySet()) {
+                if (added.getValue() != REMOVED) {
+                    keys[n] = added.getKey();
+                    values[n] = added.getValue();
+                    n++;
+                    changed = true;
+                }
+            }
+
+            if (!changed) {
+                return this;
+            }
+
+            final long[] order = new long[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = ((long) biasedHash(keys[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+            return fromSorted(order, 0, n, keys, hasValues ? values : null, hasValues);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.urbanairship.sarlacc.client.structures.impl;
+
+import java.util.Arrays;
+
+/**
+ * Parses the canonical 36 character text form of a UUID (8-4-4-4-12 hex digits, either case) directly into its
+ * two halves, without the intermediate substrings and boxing done by {@link java.util.UUID#fromString(String)}.
+ * Unlike that method, abbreviated forms such as "1-2-3-4-5" are rejected.
+ */
+public final class Uuids {
+    public static final int LENGTH = 36;
+
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Uuids() {
+    }
+
+    /**
+     * @return true if the sequence is a UUID in canonical form
+     */
+    public static boolean isUuid(CharSequence s) {
+        if (s == null || s.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            final char c = s.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (c >= 128 || HEX_VALUES[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sequence is not a UUID in canonical form
+     */
+    public static long mostSignificantBits(CharSequence s) {
+        checkUuid(s);
+        return uncheckedMostSignificantBits(s);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sequence is not a UUID in canonical form
+     */
+    public static long leastSignificantBits(CharSequence s) {
+        checkUuid(s);
+        return uncheckedLeastSignificantBits(s);
+    }
+
+    static void checkUuid(CharSequence s) {
+        if (!isUuid(s)) {
+            throw new IllegalArgumentException(String.format("Invalid UUID: '%s'", s));
+        }
+    }
+
+    static long uncheckedMostSignificantBits(CharSequence s) {
+        return hex(s, 0, 8) << 32 | hex(s, 9, 13) << 16 | hex(s, 14, 18);
+    }
+
+    static long uncheckedLeastSignificantBits(CharSequence s) {
+        return hex(s, 19, 23) << 48 | hex(s, 24, 36);
+    }
+
+    private static long hex(CharSequence s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | HEX_VALUES[s.charAt(i)];
+        }
+        return value;
+    }
+}
@@ -0,0 +1,13 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Map;
+
+/**
+ * A map keyed by ints which can be queried without boxing. The Map&lt;Integer, V&gt; methods remain available for
+ * interoperability, but get(int) and containsKey(int) are the ones to use on a hot path.
+ */
+public interface IntMap<V> extends Map<Integer, V> {
+    V get(int key);
+
+    boolean containsKey(int key);
+}
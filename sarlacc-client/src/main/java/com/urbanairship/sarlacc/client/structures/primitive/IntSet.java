@@ -0,0 +1,11 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Set;
+
+/**
+ * A set of ints which can be queried without boxing. The Set&lt;Integer&gt; methods remain available for
+ * interoperability, but contains(int) is the one to use on a hot path.
+ */
+public interface IntSet extends Set<Integer> {
+    boolean contains(int value);
+}
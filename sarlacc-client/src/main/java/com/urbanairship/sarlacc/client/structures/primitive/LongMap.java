@@ -0,0 +1,13 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Map;
+
+/**
+ * A map keyed by longs which can be queried without boxing. The Map&lt;Long, V&gt; methods remain available for
+ * interoperability, but get(long) and containsKey(long) are the ones to use on a hot path.
+ */
+public interface LongMap<V> extends Map<Long, V> {
+    V get(long key);
+
+    boolean containsKey(long key);
+}
@@ -0,0 +1,11 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Set;
+
+/**
+ * A set of longs which can be queried without boxing. The Set&lt;Long&gt; methods remain available for
+ * interoperability, but contains(long) is the one to use on a hot path.
+ */
+public interface LongSet extends Set<Long> {
+    boolean contains(long value);
+}
@@ -0,0 +1,22 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A map keyed by UUIDs which can be queried by their two halves, or by their canonical text without allocating a
+ * UUID. get(Object) and containsKey(Object) only match UUIDs, as for any other Map&lt;UUID, V&gt;.
+ */
+public interface UuidMap<V> extends Map<UUID, V> {
+    V get(long mostSignificantBits, long leastSignificantBits);
+
+    /**
+     * @return null if the sequence is not a UUID in canonical form
+     */
+    V get(CharSequence key);
+
+    /**
+     * @return false if the sequence is not a UUID in canonical form
+     */
+    boolean containsKey(CharSequence key);
+}
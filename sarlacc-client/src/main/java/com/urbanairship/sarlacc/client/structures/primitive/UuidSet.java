@@ -0,0 +1,17 @@
+package com.urbanairship.sarlacc.client.structures.primitive;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A set of UUIDs which can be queried by their two halves, or by their canonical text without allocating a UUID.
+ * contains(Object) only matches UUIDs, as for any other Set&lt;UUID&gt;.
+ */
+public interface UuidSet extends Set<UUID> {
+    boolean contains(long mostSignificantBits, long leastSignificantBits);
+
+    /**
+     * @return false if the sequence is not a UUID in canonical form
+     */
+    boolean contains(CharSequence uuid);
+}
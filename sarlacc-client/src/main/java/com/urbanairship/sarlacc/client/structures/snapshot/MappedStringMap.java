@@ -0,0 +1,104 @@
+package com.urbanairship.sarlacc.client.structures.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A string to string map served directly from a snapshot written by {@link SnapshotWriter#writeMap}, typically a
+ * memory mapped file. Key lookups decode nothing; only the value returned by get() is decoded onto the heap.
+ */
+public class MappedStringMap extends AbstractMap<String, String> {
+    private final MappedStringTable table;
+
+    private MappedStringMap(MappedStringTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @throws IOException if the buffer doesn't hold a map snapshot
+     */
+    public static MappedStringMap open(ByteBuffer buffer) throws IOException {
+        return new MappedStringMap(MappedStringTable.open(buffer, MappedStringTable.KIND_MAP));
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        final int entry = table.find((String) key);
+        return entry >= 0 ? table.value(entry) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && table.find((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < table.size();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int entry = next++;
+                        return new SimpleImmutableEntry<>(table.key(entry), table.value(entry));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    @Override
+    public String put(String key, String value) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public String remove(Object key) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m) {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This map is immutable.");
+    }
+}
@@ -0,0 +1,102 @@
+package com.urbanairship.sarlacc.client.structures.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of strings served directly from a snapshot written by {@link SnapshotWriter#writeSet}, typically a memory
+ * mapped file. Opening only validates the header, and contains() queries decode nothing, so the set is ready as
+ * soon as the file is mapped and its contents stay off the java heap. Iteration decodes each member.
+ */
+public class MappedStringSet extends AbstractSet<String> {
+    private final MappedStringTable table;
+
+    private MappedStringSet(MappedStringTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @throws IOException if the buffer doesn't hold a set snapshot
+     */
+    public static MappedStringSet open(ByteBuffer buffer) throws IOException {
+        return new MappedStringSet(MappedStringTable.open(buffer, MappedStringTable.KIND_SET));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && table.find((String) o) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < table.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return table.key(next++);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int sum = 0;
+        for (int i = 0; i < table.size(); i++) {
+            sum += table.hashAt(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean add(String value) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("This set is immutable.");
+    }
+}
@@ -0,0 +1,171 @@
+package com.urbanairship.sarlacc.client.structures.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader for the snapshot format written by {@link SnapshotWriter}. All values are big endian:
+ * <pre>
+ *   int     magic ("SRLC")
+ *   int     format version
+ *   int     kind (set or map)
+ *   int     entry count, n
+ *   int[n]  String.hashCode() of each key, ascending
+ *   int[m]  offsets into the string pool, m = n * stringsPerEntry + 1
+ *   byte[]  string pool, UTF-8 with no separators; string i spans offsets[i] until offsets[i + 1]
+ * </pre>
+ * Each entry contributes its key and, for maps, its value to the pool, in hash order. Lookups binary search the
+ * hash array and compare candidate keys byte by byte against the query, so nothing is decoded or allocated
+ * unless a value is returned.
+ */
+final class MappedStringTable {
+    static final int MAGIC = 0x53524C43;
+    static final int FORMAT_VERSION = 1;
+    static final int KIND_SET = 1;
+    static final int KIND_MAP = 2;
+    static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int stringsPerEntry;
+    private final int offsetsStart;
+    private final int poolStart;
+
+    private MappedStringTable(ByteBuffer buffer, int count, int stringsPerEntry) {
+        this.buffer = buffer;
+        this.count = count;
+        this.stringsPerEntry = stringsPerEntry;
+        this.offsetsStart = HEADER_BYTES + 4 * count;
+        this.poolStart = offsetsStart + 4 * (count * stringsPerEntry + 1);
+    }
+
+    static MappedStringTable open(ByteBuffer source, int expectedKind) throws IOException {
+        // own position and byte order, so callers sharing the buffer don't interfere; only absolute reads are used
+        final ByteBuffer buffer = source.slice().order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES) {
+            throw new IOException(String.format("Snapshot too short: %d bytes", buffer.remaining()));
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("Not a snapshot, bad magic number %08x", buffer.getInt(0)));
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported snapshot format version %d", buffer.getInt(4)));
+        }
+        if (buffer.getInt(8) != expectedKind) {
+            throw new IOException(String.format("Expected snapshot kind %d but got %d", expectedKind, buffer.getInt(8)));
+        }
+        final int count = buffer.getInt(12);
+        final int stringsPerEntry = expectedKind == KIND_MAP ? 2 : 1;
+        final long poolStart = HEADER_BYTES + 4L * count + 4L * (count * (long) stringsPerEntry + 1);
+        if (count < 0 || poolStart > buffer.limit()) {
+            throw new IOException(String.format("Snapshot truncated, %d entries in %d bytes", count, buffer.limit()));
+        }
+
+        final MappedStringTable table = new MappedStringTable(buffer, count, stringsPerEntry);
+        if (poolStart + table.offset(count * stringsPerEntry) != buffer.limit()) {
+            throw new IOException(String.format("Snapshot size mismatch, expected %d bytes but got %d",
+                    poolStart + table.offset(count * stringsPerEntry), buffer.limit()));
+        }
+        return table;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int hashAt(int entry) {
+        return buffer.getInt(HEADER_BYTES + 4 * entry);
+    }
+
+    /**
+     * @return the entry index of the key, or -1 if absent
+     */
+    int find(String key) {
+        final int hash = key.hashCode();
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int entry = low; entry < count && hashAt(entry) == hash; entry++) {
+            if (stringEquals(entry * stringsPerEntry, key)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    String key(int entry) {
+        return decode(entry * stringsPerEntry);
+    }
+
+    String value(int entry) {
+        return decode(entry * stringsPerEntry + 1);
+    }
+
+    private int offset(int string) {
+        return buffer.getInt(offsetsStart + 4 * string);
+    }
+
+    private String decode(int string) {
+        final int start = poolStart + offset(string);
+        final byte[] bytes = new byte[poolStart + offset(string + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Decodes the UTF-8 in place, comparing char by char against the key.
+     */
+    private boolean stringEquals(int string, String key) {
+        final int end = poolStart + offset(string + 1);
+        final int length = key.length();
+        int position = poolStart + offset(string);
+        int index = 0;
+        while (position < end) {
+            final int first = buffer.get(position) & 0xff;
+            final int codePoint;
+            if (first < 0x80) {
+                codePoint = first;
+                position += 1;
+            } else if (first < 0xe0) {
+                codePoint = (first & 0x1f) << 6 | continuation(position + 1);
+                position += 2;
+            } else if (first < 0xf0) {
+                codePoint = (first & 0x0f) << 12 | continuation(position + 1) << 6 | continuation(position + 2);
+                position += 3;
+            } else {
+                codePoint = (first & 0x07) << 18 | continuation(position + 1) << 12
+                        | continuation(position + 2) << 6 | continuation(position + 3);
+                position += 4;
+            }
+
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (index >= length || key.charAt(index++) != codePoint) {
+                    return false;
+                }
+            } else {
+                if (index + 1 >= length
+                        || key.charAt(index++) != Character.highSurrogate(codePoint)
+                        || key.charAt(index++) != Character.lowSurrogate(codePoint)) {
+                    return false;
+                }
+            }
+        }
+        return index == length;
+    }
+
+    private int continuation(int position) {
+        return buffer.get(position) & 0x3f;
+    }
+}
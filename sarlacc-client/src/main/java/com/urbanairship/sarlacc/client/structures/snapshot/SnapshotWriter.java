@@ -0,0 +1,128 @@
+package com.urbanairship.sarlacc.client.structures.snapshot;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the binary snapshots read by {@link MappedStringSet} and {@link MappedStringMap}. Meant to run wherever
+ * the data is published, so that clients only ever map the result. The stream is flushed but not closed.
+ * <p>
+ * Clients read from the mapping on every lookup, so a published snapshot must never be modified in place: a mapped
+ * file that is truncated or rewritten crashes readers with SIGBUS, or silently serves mixed data. New snapshots have
+ * to be written to a temporary file and atomically renamed over the old one, which leaves the old file readable
+ * until the last mapping of it is released. The overloads taking a {@link Path} do exactly that.
+ */
+public final class SnapshotWriter {
+    private SnapshotWriter() {
+    }
+
+    public static void writeSet(Iterable<String> members, OutputStream out) throws IOException {
+        final List<String> keys = ImmutableSet.copyOf(members).asList();
+        final List<byte[][]> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            entries.add(new byte[][]{encode(key)});
+        }
+        write(MappedStringTable.KIND_SET, keys, entries, out);
+    }
+
+    public static void writeMap(Map<String, String> map, OutputStream out) throws IOException {
+        final List<String> keys = new ArrayList<>(map.size());
+        final List<byte[][]> entries = new ArrayList<>(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            keys.add(entry.getKey());
+            entries.add(new byte[][]{encode(entry.getKey()), encode(entry.getValue())});
+        }
+        write(MappedStringTable.KIND_MAP, keys, entries, out);
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to target, then atomically renames it into place.
+     */
+    public static void writeSet(Iterable<String> members, Path target) throws IOException {
+        writeAtomically(target, out -> writeSet(members, out));
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to target, then atomically renames it into place.
+     */
+    public static void writeMap(Map<String, String> map, Path target) throws IOException {
+        writeAtomically(target, out -> writeMap(map, out));
+    }
+
+    private interface SnapshotOutput {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, SnapshotOutput output) throws IOException {
+        final Path absolute = target.toAbsolutePath();
+        final Path temp = Files.createTempFile(absolute.getParent(), "." + absolute.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                output.writeTo(Channels.newOutputStream(channel));
+                // make sure the contents are durable before the rename makes them visible
+                channel.force(true);
+            }
+            Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(int kind, List<String> keys, List<byte[][]> entries, OutputStream out) throws IOException {
+        final List<Integer> order = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> keys.get(i).hashCode()));
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MappedStringTable.MAGIC);
+        data.writeInt(MappedStringTable.FORMAT_VERSION);
+        data.writeInt(kind);
+        data.writeInt(keys.size());
+        for (int i : order) {
+            data.writeInt(keys.get(i).hashCode());
+        }
+
+        int offset = 0;
+        data.writeInt(offset);
+        for (int i : order) {
+            for (byte[] string : entries.get(i)) {
+                Preconditions.checkArgument(string.length <= Integer.MAX_VALUE - offset, "Snapshot too large");
+                offset += string.length;
+                data.writeInt(offset);
+            }
+        }
+
+        for (int i : order) {
+            for (byte[] string : entries.get(i)) {
+                data.write(string);
+            }
+        }
+        data.flush();
+    }
+
+    private static byte[] encode(String string) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        // unpaired surrogates can't be represented in UTF-8, and would silently never match
+        Preconditions.checkArgument(new String(bytes, StandardCharsets.UTF_8).equals(string),
+                "String is not valid UTF-16: %s", string);
+        return bytes;
+    }
+}
@@ -0,0 +1,172 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.AppendLogConfigSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAppendLogConfigSource {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testServesAppendedLinesAsPatches() throws Exception {
+        final Path log = new File(folder.getRoot(), "log").toPath();
+        append(log, "+a\n+b\n");
+
+        final AppendLogConfigSource source = new AppendLogConfigSource(log.toString());
+        final long version;
+        try (Update<Delta<InputStream>> update = source.fetch()) {
+            assertFalse(update.newVal.isPatch());
+            assertEquals("+a\n+b\n", read(update));
+            version = update.version;
+        }
+        assertFalse(source.fetchIfNewer(version).isPresent());
+
+        // the unterminated line is left until it is complete
+        append(log, "-a\n+c");
+        final long patchVersion;
+        try (Update<Delta<InputStream>> update = source.fetchIfNewer(version).get()) {
+            assertTrue(update.newVal.isPatch());
+            assertEquals(version, update.newVal.getBaseVersion());
+            assertEquals("-a\n", read(update));
+            assertTrue(update.version > version);
+            patchVersion = update.version;
+        }
+        assertFalse(source.fetchIfNewer(patchVersion).isPresent());
+
+        append(log, "\n");
+        try (Update<Delta<InputStream>> update = source.fetchIfNewer(patchVersion).get()) {
+            assertEquals("+c\n", read(update));
+        }
+    }
+
+    @Test
+    public void testUnknownVersionGetsSnapshot() throws Exception {
+        final Path log = new File(folder.getRoot(), "log").toPath();
+        append(log, "+a\n");
+
+        final AppendLogConfigSource source = new AppendLogConfigSource(log.toString());
+        final long version;
+        try (Update<Delta<InputStream>> update = source.fetch()) {
+            version = update.version;
+        }
+        append(log, "+b\n");
+
+        // as when the previous update failed to process and the service is still on an older version
+        final Optional<Update<Delta<InputStream>>> update = source.fetchIfNewer(version - 1);
+        assertTrue(update.isPresent());
+        assertFalse(update.get().newVal.isPatch());
+        assertEquals("+a\n+b\n", read(update.get()));
+        assertTrue(update.get().version > version);
+        update.get().close();
+    }
+
+    @Test
+    public void testRotationAndRewriteGetSnapshots() throws Exception {
+        final Path log = new File(folder.getRoot(), "log").toPath();
+        append(log, "+a\n+b\n");
+
+        final AppendLogConfigSource source = new AppendLogConfigSource(log.toString());
+        long version;
+        try (Update<Delta<InputStream>> update = source.fetch()) {
+            version = update.version;
+        }
+
+        // compacted into a new, shorter file
+        final Path compacted = new File(folder.getRoot(), "compacted").toPath();
+        append(compacted, "+b\n");
+        Files.move(compacted, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (Update<Delta<InputStream>> update = source.fetchIfNewer(version).get()) {
+            assertFalse(update.newVal.isPatch());
+            assertEquals("+b\n", read(update));
+            assertTrue(update.version > version);
+            version = update.version;
+        }
+
+        // rewritten in place to the same length
+        Files.write(log, "+c\n".getBytes(StandardCharsets.UTF_8));
+        try (Update<Delta<InputStream>> update = source.fetchIfNewer(version).get()) {
+            assertFalse(update.newVal.isPatch());
+            assertEquals("+c\n", read(update));
+            assertTrue(update.version > version);
+        }
+    }
+
+    @Test
+    public void testServiceFollowsLog() throws Exception {
+        final Path log = new File(folder.getRoot(), "log").toPath();
+        append(log, "+a=1\n+b=2\n-a\n");
+
+        final UpdateService<Delta<InputStream>, Map<String, Integer>> service = UpdateService.<Delta<InputStream>, String, Integer>mapServiceBuilder()
+                .setServiceName("append-log")
+                .setConfigSource(new AppendLogConfigSource(log.toString()))
+                .setUpdateProcessor(DeltaUpdateProcessor.appendLogMap("=", k -> k, Integer::parseInt))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final Map<String, Integer> map = service.getUpdatingCollection();
+            assertEquals(ImmutableMap.of("b", 2), map);
+
+            append(log, "+c=3\n+b=4\n");
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableMap.of("b", 4, "c", 3), map);
+
+            final Path compacted = new File(folder.getRoot(), "compacted").toPath();
+            append(compacted, "+c=3\n");
+            Files.move(compacted, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableMap.of("c", 3), map);
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testAppendLogSetReplaysSnapshot() throws Exception {
+        final Set<String> set = DeltaUpdateProcessor.appendLogSet(line -> line).process(
+                Delta.snapshot(new ByteArrayInputStream("+a\n+b\n-a\n+c\n".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(ImmutableSet.of("b", "c"), set);
+    }
+
+    @Test
+    public void testAppendLogMapReplaysSnapshot() throws Exception {
+        final Map<String, Integer> map = DeltaUpdateProcessor.appendLogMap("=", k -> k, Integer::parseInt).process(
+                Delta.snapshot(new ByteArrayInputStream("+a=1\n+b=2\n-a\n+b=3\n+c=4\n".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(ImmutableMap.of("b", 3, "c", 4), map);
+    }
+
+    private static void append(Path path, String content) throws Exception {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String read(Update<Delta<InputStream>> update) throws Exception {
+        return new String(ByteStreams.toByteArray(update.newVal.payload), StandardCharsets.UTF_8);
+    }
+}
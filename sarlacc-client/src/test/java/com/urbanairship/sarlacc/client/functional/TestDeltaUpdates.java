@@ -0,0 +1,147 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.FailureCallback;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.structures.impl.PersistentHashSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeltaUpdates {
+
+    @Test
+    public void testPatchesApplyToCurrentValue() throws Exception {
+        final FakeDeltaSource source = new FakeDeltaSource("a\nb\nc\n");
+        final List<Set<String>> previousValues = new ArrayList<>();
+        final UpdateService<Delta<InputStream>, Set<String>> service = UpdateService.<Delta<InputStream>, String>setServiceBuilder()
+                .setServiceName("delta")
+                .setConfigSource(source)
+                .setUpdateProcessor(DeltaUpdateProcessor.set(line -> line))
+                .setUpdateCallback((oldVal, oldVersion, newVal, newVersion) -> oldVal.ifPresent(previousValues::add))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            assertEquals(ImmutableSet.of("a", "b", "c"), service.getUpdatingCollection());
+
+            source.publishPatch("-a\n+d\n+e\n-e\n");
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableSet.of("b", "c", "d"), service.getUpdatingCollection());
+            assertEquals(2, service.getCurrentVersion());
+
+            // the value replaced by the patch is still intact for anyone holding it
+            assertEquals(1, previousValues.size());
+            assertEquals(ImmutableSet.of("a", "b", "c"), previousValues.get(0));
+            assertTrue(previousValues.get(0) instanceof PersistentHashSet);
+
+            source.publishSnapshot("x\n");
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableSet.of("x"), service.getUpdatingCollection());
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testPatchAgainstWrongVersionFails() throws Exception {
+        final FakeDeltaSource source = new FakeDeltaSource("k=1\n");
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final UpdateService<Delta<InputStream>, Map<String, Integer>> service = UpdateService.<Delta<InputStream>, String, Integer>mapServiceBuilder()
+                .setServiceName("delta-map")
+                .setConfigSource(source)
+                .setUpdateProcessor(DeltaUpdateProcessor.map("=", k -> k, Integer::parseInt))
+                .setFailureCallback((val, t) -> {
+                    failure.set(t);
+                    return FailureCallback.Action.NO_ACTION;
+                })
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            source.publishPatch("+k=2\n+j=3\n");
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableMap.of("k", 2, "j", 3), service.getUpdatingCollection());
+
+            source.baseVersionOverride.set(99);
+            source.publishPatch("-k\n");
+            try {
+                service.refreshNow().get(5, TimeUnit.SECONDS);
+                fail("Expected the refresh to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals(ImmutableMap.of("k", 2, "j", 3), service.getUpdatingCollection());
+            assertEquals(2, service.getCurrentVersion());
+            assertTrue(failure.get().getMessage().contains("against version 99"));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static class FakeDeltaSource implements ConfigSource<Delta<InputStream>> {
+        private final AtomicInteger version = new AtomicInteger(1);
+        private final AtomicReference<String> snapshot;
+        private final AtomicReference<String> patch = new AtomicReference<>(null);
+        private final AtomicInteger baseVersionOverride = new AtomicInteger(-1);
+
+        private FakeDeltaSource(String snapshot) {
+            this.snapshot = new AtomicReference<>(snapshot);
+        }
+
+        private void publishPatch(String lines) {
+            patch.set(lines);
+            version.incrementAndGet();
+        }
+
+        private void publishSnapshot(String lines) {
+            snapshot.set(lines);
+            patch.set(null);
+            version.incrementAndGet();
+        }
+
+        @Override
+        public Update<Delta<InputStream>> fetch() {
+            return new Update<>(version.get(), Delta.snapshot(stream(snapshot.get())));
+        }
+
+        @Override
+        public Optional<Update<Delta<InputStream>>> fetchIfNewer(long ifNewerThan) {
+            if (ifNewerThan >= version.get()) {
+                return Optional.empty();
+            }
+            if (patch.get() == null) {
+                return Optional.of(fetch());
+            }
+            final long base = baseVersionOverride.get() >= 0 ? baseVersionOverride.get() : ifNewerThan;
+            return Optional.of(new Update<>(version.get(), Delta.patch(base, stream(patch.get()))));
+        }
+    }
+
+    private static InputStream stream(String payload) {
+        return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
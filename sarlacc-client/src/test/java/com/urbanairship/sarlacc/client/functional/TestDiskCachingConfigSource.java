@@ -0,0 +1,135 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CharStreams;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.source.DiskCachingConfigSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestDiskCachingConfigSource {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProcessedPayloadIsCached() throws Exception {
+        final File cacheFile = new File(folder.getRoot(), "nested/cache");
+        final ConfigSource<InputStream> origin = staticSource(5, "a\nb\n");
+
+        try (Update<InputStream> update = new DiskCachingConfigSource(origin, cacheFile.getPath()).fetch()) {
+            // read only part of the payload; the rest should still be cached
+            assertEquals('a', update.newVal.read());
+            update.markProcessed();
+        }
+        assertTrue(cacheFile.isFile());
+
+        final ConfigSource<InputStream> downOrigin = failingSource();
+        final DiskCachingConfigSource restarted = new DiskCachingConfigSource(downOrigin, cacheFile.getPath());
+        try (Update<InputStream> update = restarted.fetch()) {
+            assertEquals(5, update.version);
+            assertEquals("a\nb\n", CharStreams.toString(new InputStreamReader(update.newVal, StandardCharsets.UTF_8)));
+            update.markProcessed();
+        }
+        verify(downOrigin, never()).fetch();
+
+        // revalidation goes to the origin
+        assertFalse(restarted.fetchIfNewer(5).isPresent());
+        verify(downOrigin).fetchIfNewer(5);
+    }
+
+    @Test
+    public void testUnprocessedPayloadIsNotCached() throws Exception {
+        final File cacheFile = new File(folder.getRoot(), "cache");
+
+        try (Update<InputStream> update = new DiskCachingConfigSource(staticSource(5, "a\n"), cacheFile.getPath()).fetch()) {
+            CharStreams.toString(new InputStreamReader(update.newVal, StandardCharsets.UTF_8));
+        }
+
+        assertFalse(cacheFile.exists());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testUnprocessableCacheIsDiscarded() throws Exception {
+        final File cacheFile = new File(folder.getRoot(), "cache");
+        try (Update<InputStream> update = new DiskCachingConfigSource(staticSource(5, "a\n"), cacheFile.getPath()).fetch()) {
+            update.markProcessed();
+        }
+
+        final ConfigSource<InputStream> origin = staticSource(6, "b\n");
+        final DiskCachingConfigSource restarted = new DiskCachingConfigSource(origin, cacheFile.getPath());
+        try (Update<InputStream> update = restarted.fetch()) {
+            assertEquals(5, update.version);
+        }
+        assertFalse(cacheFile.exists());
+
+        try (Update<InputStream> update = restarted.fetch()) {
+            assertEquals(6, update.version);
+        }
+    }
+
+    @Test
+    public void testWarmRestartWithOriginDown() throws Exception {
+        final File cacheFile = new File(folder.getRoot(), "cache");
+        final Set<String> expected = ImmutableSet.of("a", "b", "c");
+
+        final UpdateService<InputStream, Set<String>> first = buildService(
+                new DiskCachingConfigSource(staticSource(5, "a\nb\nc\n"), cacheFile.getPath()));
+        first.startAsync().awaitRunning();
+        first.stopAsync().awaitTerminated();
+
+        final UpdateService<InputStream, Set<String>> second = buildService(
+                new DiskCachingConfigSource(failingSource(), cacheFile.getPath()));
+        second.startAsync().awaitRunning();
+        try {
+            assertEquals(expected, second.getUpdatingCollection());
+            assertEquals(5, second.getCurrentVersion());
+        } finally {
+            second.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static UpdateService<InputStream, Set<String>> buildService(ConfigSource<InputStream> source) {
+        return UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName("cached")
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.set(line -> line))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConfigSource<InputStream> failingSource() throws IOException {
+        final ConfigSource<InputStream> source = mock(ConfigSource.class);
+        when(source.fetch()).thenThrow(new IOException("origin down"));
+        when(source.fetchIfNewer(anyLong())).thenReturn(Optional.empty());
+        return source;
+    }
+
+    private static ConfigSource<InputStream> staticSource(long version, String payload) {
+        return () -> new Update<>(version, new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
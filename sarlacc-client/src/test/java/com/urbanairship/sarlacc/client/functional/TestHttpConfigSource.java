@@ -1,24 +1,49 @@
 package com.urbanairship.sarlacc.client.functional;
 
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.urbanairship.sarlacc.client.model.Update;
 import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.source.DigestedInputStream;
 import com.urbanairship.sarlacc.client.source.HttpConfigSource;
+import com.urbanairship.sarlacc.client.source.ParallelRangeInputStream;
 import com.urbanairship.sarlacc.client.util.TestHttpServer;
 import com.urbanairship.sarlacc.client.util.TestUtil;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.junit.Rule;
 import org.junit.Test;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
 
 import static com.urbanairship.sarlacc.client.util.TestUtil.assertEqualsWithSecondPrecision;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestHttpConfigSource {
     @Rule
@@ -65,4 +90,364 @@ public class TestHttpConfigSource {
         Optional<Update<InputStream>> update = configSource.fetchIfNewer(ctime + 1000);
         assertFalse(update.isPresent());
     }
+
+    @Test
+    public void testStrongETagVersioning() throws Exception {
+        final AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+        final AtomicReference<String> body = new AtomicReference<>("a\n");
+        final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                final String validator = request.getHeader("If-None-Match");
+                ifNoneMatch.add(String.valueOf(validator));
+                if (etag.get().equals(validator)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                // no Last-Modified, which used to fail the fetch
+                response.setHeader("ETag", etag.get());
+                response.getOutputStream().write(body.get().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final ConfigSource<InputStream> configSource = new HttpConfigSource(sourceServer.getLocalAddr());
+        final Update<InputStream> first = configSource.fetch();
+        assertEquals("a\n", read(first));
+        assertTrue(first.version < 0);
+
+        assertFalse(configSource.fetchIfNewer(first.version).isPresent());
+        assertEquals(Arrays.asList("null", "\"v1\""), ifNoneMatch);
+
+        etag.set("\"v2\"");
+        body.set("b\n");
+        final Update<InputStream> second = configSource.fetchIfNewer(first.version).get();
+        assertEquals("b\n", read(second));
+        assertNotEquals(first.version, second.version);
+        assertFalse(configSource.fetchIfNewer(second.version).isPresent());
+    }
+
+    @Test
+    public void testLastModifiedPreferredOverStrongETag() throws Exception {
+        final long mtime = System.currentTimeMillis();
+        final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                ifNoneMatch.add(String.valueOf(request.getHeader("If-None-Match")));
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setHeader("ETag", "\"v1\"");
+                response.addDateHeader("Last-Modified", mtime);
+                response.getOutputStream().write("a\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final ConfigSource<InputStream> configSource = new HttpConfigSource(sourceServer.getLocalAddr());
+        final Update<InputStream> update = configSource.fetch();
+        // the timestamp keeps versions ordered, the tag is still what validates
+        assertEqualsWithSecondPrecision(mtime, update.version);
+        update.close();
+
+        assertFalse(configSource.fetchIfNewer(update.version).isPresent());
+        assertEquals(Arrays.asList("null", "\"v1\""), ifNoneMatch);
+    }
+
+    @Test
+    public void testWeakETagWithLastModified() throws Exception {
+        final long mtime = System.currentTimeMillis();
+        final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                ifNoneMatch.add(String.valueOf(request.getHeader("If-None-Match")));
+                if ("W/\"weak\"".equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setHeader("ETag", "W/\"weak\"");
+                response.addDateHeader("Last-Modified", mtime);
+                response.getOutputStream().write("a\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final ConfigSource<InputStream> configSource = new HttpConfigSource(sourceServer.getLocalAddr());
+        final Update<InputStream> update = configSource.fetch();
+        assertEqualsWithSecondPrecision(mtime, update.version);
+        update.close();
+
+        assertFalse(configSource.fetchIfNewer(update.version).isPresent());
+        assertEquals("W/\"weak\"", ifNoneMatch.get(1));
+    }
+
+    @Test
+    public void testDigestVersioningWithoutValidators() throws Exception {
+        final AtomicReference<String> body = new AtomicReference<>("a\n");
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.getOutputStream().write(body.get().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final ConfigSource<InputStream> configSource = new HttpConfigSource(sourceServer.getLocalAddr());
+        final Update<InputStream> first = configSource.fetch();
+        // spooled and digested on the way in, so processors can skip identical payloads without hashing again
+        assertTrue(first.newVal instanceof DigestedInputStream);
+        assertEquals("a\n", read(first));
+        assertTrue(first.version < 0);
+
+        assertFalse(configSource.fetchIfNewer(first.version).isPresent());
+
+        body.set("b\n");
+        final Update<InputStream> second = configSource.fetchIfNewer(first.version).get();
+        assertEquals("b\n", read(second));
+        assertNotEquals(first.version, second.version);
+    }
+
+    @Test
+    public void testNegotiatesDeflate() throws Exception {
+        final List<String> acceptEncoding = new CopyOnWriteArrayList<>();
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                acceptEncoding.add(String.valueOf(request.getHeader("Accept-Encoding")));
+                response.setHeader("ETag", "\"v1\"");
+                OutputStream out = response.getOutputStream();
+                if (String.valueOf(request.getHeader("Accept-Encoding")).contains("deflate")) {
+                    response.setHeader("Content-Encoding", "deflate");
+                    out = new DeflaterOutputStream(out);
+                }
+                out.write("a\nb\n".getBytes(StandardCharsets.UTF_8));
+                out.close();
+            }
+        });
+
+        assertEquals("a\nb\n", read(new HttpConfigSource(sourceServer.getLocalAddr()).fetch()));
+        assertEquals("gzip, deflate", acceptEncoding.get(0));
+
+        final HttpConfigSource plain = HttpConfigSource.newBuilder()
+                .setUrl(sourceServer.getLocalAddr())
+                .setAcceptCompression(false)
+                .build();
+        assertEquals("a\nb\n", read(plain.fetch()));
+        assertFalse(acceptEncoding.get(1).contains("deflate"));
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final HttpConfigSource configSource = HttpConfigSource.newBuilder()
+                .setUrl(sourceServer.getLocalAddr())
+                .setReadTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        final long start = System.nanoTime();
+        try {
+            configSource.fetch();
+            fail("Expected the fetch to time out");
+        } catch (SocketTimeoutException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testConnectionReusedAfterErrorAndNotModified() throws Exception {
+        final List<Integer> remotePorts = new CopyOnWriteArrayList<>();
+        final AtomicInteger requests = new AtomicInteger();
+        sourceServer.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                remotePorts.add(request.getRemotePort());
+                if (requests.incrementAndGet() == 1) {
+                    response.setStatus(503);
+                    response.getOutputStream().write("try again later".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setHeader("ETag", "\"v1\"");
+                response.getOutputStream().write("a\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final HttpConfigSource configSource = new HttpConfigSource(sourceServer.getLocalAddr());
+        try {
+            configSource.fetch();
+            fail("Expected the 503 to fail the fetch");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("503"));
+        }
+        final Update<InputStream> update = configSource.fetch();
+        read(update);
+        assertFalse(configSource.fetchIfNewer(update.version).isPresent());
+        assertFalse(configSource.fetchIfNewer(update.version).isPresent());
+
+        assertEquals(4, remotePorts.size());
+        assertEquals(1, new HashSet<>(remotePorts).size());
+    }
+
+    @Test
+    public void testParallelRangedDownload() throws Exception {
+        final RangeHandler handler = new RangeHandler(randomBytes(9_500));
+        sourceServer.setHandler(handler);
+
+        final HttpConfigSource configSource = rangedSource(4, 1000);
+        final Update<InputStream> update = configSource.fetch();
+        assertArrayEquals(handler.body, readBytes(update));
+
+        assertEquals(10, handler.requests.size());
+        assertEquals("bytes=0-999 null", handler.requests.get(0));
+        assertTrue(handler.requests.contains("bytes=9000-9499 \"v1\""));
+
+        handler.requests.clear();
+        assertFalse(configSource.fetchIfNewer(update.version).isPresent());
+        assertEquals(1, handler.requests.size());
+    }
+
+    @Test
+    public void testResumesInterruptedRange() throws Exception {
+        final RangeHandler handler = new RangeHandler(randomBytes(8_000));
+        handler.dropAt.set(5_500);
+        sourceServer.setHandler(handler);
+
+        final Update<InputStream> update = rangedSource(3, 1000).fetch();
+        assertArrayEquals(handler.body, readBytes(update));
+
+        assertTrue(handler.requests.contains("bytes=5000-5999 \"v1\""));
+        assertTrue(handler.requests.contains("bytes=5500-5999 \"v1\""));
+        assertEquals(9, handler.requests.size());
+    }
+
+    @Test
+    public void testRangesUnsupported() throws Exception {
+        final RangeHandler handler = new RangeHandler(randomBytes(5_000));
+        handler.acceptRanges = false;
+        sourceServer.setHandler(handler);
+
+        assertArrayEquals(handler.body, readBytes(rangedSource(4, 1000).fetch()));
+        assertEquals(1, handler.requests.size());
+    }
+
+    @Test
+    public void testChangedDuringRangedDownload() throws Exception {
+        final RangeHandler handler = new RangeHandler(randomBytes(5_000));
+        handler.replacementEtag = "\"v2\"";
+        sourceServer.setHandler(handler);
+
+        final Update<InputStream> update = rangedSource(4, 1000).fetch();
+        try {
+            readBytes(update);
+            fail("Expected the download to fail once the validator changed");
+        } catch (ParallelRangeInputStream.RangeChangedException e) {
+            assertTrue(e.getMessage().contains("changed during the download"));
+        }
+        // the first request and at most one for each other part, none of them resumed
+        assertTrue(handler.requests.size() <= 5);
+    }
+
+    private HttpConfigSource rangedSource(int parallelism, int partSize) {
+        return HttpConfigSource.newBuilder()
+                .setUrl(sourceServer.getLocalAddr())
+                .setParallelDownload(parallelism, partSize)
+                .build();
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Serves single byte ranges guarded by If-Range, recording each request's Range and If-Range headers.
+     */
+    private static class RangeHandler extends AbstractHandler {
+        private final byte[] body;
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        // the connection is dropped once, just before sending the byte at this offset
+        private final AtomicLong dropAt = new AtomicLong(-1);
+        private volatile boolean acceptRanges = true;
+        // if set, the ETag of every response after the first
+        private volatile String replacementEtag;
+
+        private RangeHandler(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+            baseRequest.setHandled(true);
+            final String range = request.getHeader("Range");
+            final String ifRange = request.getHeader("If-Range");
+            requests.add(range + " " + ifRange);
+
+            final String etag = requests.size() > 1 && replacementEtag != null ? replacementEtag : "\"v1\"";
+            response.setHeader("ETag", etag);
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            if (!acceptRanges || range == null || (ifRange != null && !ifRange.equals(etag))) {
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+                return;
+            }
+
+            final String[] bounds = range.substring("bytes=".length()).split("-");
+            final int from = Integer.parseInt(bounds[0]);
+            final int to = Math.min(body.length - 1, Integer.parseInt(bounds[1]));
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", String.format("bytes %d-%d/%d", from, to, body.length));
+            response.setContentLength(to - from + 1);
+
+            final long drop = dropAt.get();
+            if (from < drop && drop <= to && dropAt.compareAndSet(drop, -1)) {
+                response.getOutputStream().write(body, from, (int) drop - from);
+                response.flushBuffer();
+                baseRequest.getHttpChannel().abort(new IOException("dropped"));
+                return;
+            }
+            response.getOutputStream().write(body, from, to - from + 1);
+        }
+    }
+
+    private static byte[] readBytes(Update<InputStream> update) throws Exception {
+        try {
+            return ByteStreams.toByteArray(update.newVal);
+        } finally {
+            update.close();
+        }
+    }
+
+    private static String read(Update<InputStream> update) throws Exception {
+        try {
+            return new String(ByteStreams.toByteArray(update.newVal), StandardCharsets.UTF_8);
+        } finally {
+            update.close();
+        }
+    }
 }
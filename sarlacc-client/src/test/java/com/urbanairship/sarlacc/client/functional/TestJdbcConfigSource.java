@@ -0,0 +1,295 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Delta;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.delta.DeltaUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.sql.PartitionedSqlUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.sql.ResultSetProcessor;
+import com.urbanairship.sarlacc.client.processor.sql.SqlUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.source.JdbcConfigSource;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestJdbcConfigSource {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        execute("CREATE TABLE blacklist (id VARCHAR(64) PRIMARY KEY, reason VARCHAR(64), version BIGINT NOT NULL, deleted BOOLEAN DEFAULT FALSE NOT NULL)");
+        execute("CREATE TABLE audited (id VARCHAR(64) PRIMARY KEY, updated_at TIMESTAMP NOT NULL)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("SHUTDOWN");
+        keepAlive.close();
+    }
+
+    @Test
+    public void testQueriesDataOnlyWhenVersionChanges() throws Exception {
+        execute("INSERT INTO blacklist (id, version) VALUES ('a', 1), ('b', 2)");
+        final JdbcConfigSource source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(version) FROM blacklist")
+                .setQuery("SELECT id FROM blacklist")
+                .setFetchSize(1)
+                .build();
+
+        final SqlUpdateProcessor<Set<String>> processor = SqlUpdateProcessor.set(TestJdbcConfigSource::id);
+        try (Update<ResultSet> update = source.fetch()) {
+            assertEquals(2, update.version);
+            assertEquals(ImmutableSet.of("a", "b"), processor.process(update.newVal));
+        }
+        assertFalse(source.fetchIfNewer(2).isPresent());
+
+        execute("INSERT INTO blacklist (id, version) VALUES ('c', 3)");
+        try (Update<ResultSet> update = source.fetchIfNewer(2).get()) {
+            assertEquals(3, update.version);
+            assertEquals(ImmutableSet.of("a", "b", "c"), processor.process(update.newVal));
+        }
+    }
+
+    @Test
+    public void testEmptyTableIsVersionZero() throws Exception {
+        final JdbcConfigSource source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(version) FROM blacklist")
+                .setQuery("SELECT id FROM blacklist")
+                .build();
+
+        try (Update<ResultSet> update = source.fetch()) {
+            assertEquals(0, update.version);
+            assertFalse(update.newVal.next());
+        }
+        assertFalse(source.fetchIfNewer(0).isPresent());
+    }
+
+    @Test
+    public void testTimestampVersionsBindIncrementalQuery() throws Exception {
+        execute("INSERT INTO audited VALUES ('a', TIMESTAMP '2024-01-01 00:00:00')");
+        final ConfigSource<Delta<ResultSet>> source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(updated_at) FROM audited")
+                .setQuery("SELECT id FROM audited")
+                .setIncrementalQuery("SELECT id FROM audited WHERE updated_at > ?")
+                .buildIncremental();
+
+        final long version;
+        try (Update<Delta<ResultSet>> update = source.fetch()) {
+            assertFalse(update.newVal.isPatch());
+            version = update.version;
+        }
+
+        execute("INSERT INTO audited VALUES ('b', TIMESTAMP '2024-01-02 00:00:00')");
+        try (Update<Delta<ResultSet>> update = source.fetchIfNewer(version).get()) {
+            assertTrue(update.newVal.isPatch());
+            assertEquals(version, update.newVal.getBaseVersion());
+            assertTrue(update.version > version);
+            assertTrue(update.newVal.payload.next());
+            assertEquals("b", update.newVal.payload.getString(1));
+            assertFalse(update.newVal.payload.next());
+        }
+    }
+
+    @Test
+    public void testSubMillisecondChangeIsNewer() throws Exception {
+        execute("INSERT INTO audited VALUES ('a', TIMESTAMP '2024-01-01 00:00:00')");
+        final ConfigSource<Delta<ResultSet>> source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(updated_at) FROM audited")
+                .setQuery("SELECT id FROM audited")
+                .setIncrementalQuery("SELECT id FROM audited WHERE updated_at > ?")
+                .buildIncremental();
+
+        final long version;
+        try (Update<Delta<ResultSet>> update = source.fetch()) {
+            version = update.version;
+        }
+        assertFalse(source.fetchIfNewer(version).isPresent());
+
+        // later within the same millisecond
+        execute("INSERT INTO audited VALUES ('b', TIMESTAMP '2024-01-01 00:00:00.000500')");
+        try (Update<Delta<ResultSet>> update = source.fetchIfNewer(version).get()) {
+            assertTrue(update.newVal.isPatch());
+            assertTrue(update.version > version);
+            assertTrue(update.newVal.payload.next());
+            assertEquals("b", update.newVal.payload.getString(1));
+            assertFalse(update.newVal.payload.next());
+        }
+        final long subMillisecondVersion = version + 1;
+
+        // bound by the exact timestamp read, so neither row is read again
+        execute("INSERT INTO audited VALUES ('c', TIMESTAMP '2024-01-01 00:00:01')");
+        try (Update<Delta<ResultSet>> update = source.fetchIfNewer(subMillisecondVersion).get()) {
+            assertTrue(update.newVal.payload.next());
+            assertEquals("c", update.newVal.payload.getString(1));
+            assertFalse(update.newVal.payload.next());
+        }
+    }
+
+    @Test
+    public void testServiceAppliesChangedRows() throws Exception {
+        execute("INSERT INTO blacklist VALUES ('a', 'spam', 1, FALSE), ('b', 'abuse', 2, FALSE), ('c', 'old', 3, TRUE)");
+        final ConfigSource<Delta<ResultSet>> source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(version) FROM blacklist")
+                .setQuery("SELECT id, reason, deleted FROM blacklist")
+                .setIncrementalQuery("SELECT id, reason, deleted FROM blacklist WHERE version > ?")
+                .buildIncremental();
+
+        final UpdateService<Delta<ResultSet>, Map<String, String>> service = UpdateService.<Delta<ResultSet>, String, String>mapServiceBuilder()
+                .setServiceName("jdbc")
+                .setConfigSource(source)
+                .setUpdateProcessor(DeltaUpdateProcessor.sqlMap(TestJdbcConfigSource::id, TestJdbcConfigSource::reason, TestJdbcConfigSource::deleted))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final Map<String, String> map = service.getUpdatingCollection();
+            assertEquals(ImmutableMap.of("a", "spam", "b", "abuse"), map);
+
+            execute("UPDATE blacklist SET deleted = TRUE, version = 4 WHERE id = 'a'");
+            execute("UPDATE blacklist SET reason = 'fraud', version = 5 WHERE id = 'b'");
+            execute("INSERT INTO blacklist VALUES ('d', 'bot', 6, FALSE)");
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(ImmutableMap.of("b", "fraud", "d", "bot"), map);
+            assertEquals(6, service.getCurrentVersion());
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testPartitionedLoad() throws Exception {
+        execute("CREATE TABLE numbers (id BIGINT PRIMARY KEY, name VARCHAR(16), version BIGINT NOT NULL)");
+        final ConfigSource<List<ResultSet>> source = JdbcConfigSource.newBuilder()
+                .setDataSource(dataSource)
+                .setVersionQuery("SELECT max(version) FROM numbers")
+                .setPartitioning(4, "SELECT min(id), max(id) FROM numbers", "SELECT id, name FROM numbers WHERE id BETWEEN ? AND ?")
+                .setFetchSize(16)
+                .buildPartitioned();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final PartitionedSqlUpdateProcessor<LongMap<String>> processor = SqlUpdateProcessor.longMap(
+                TestJdbcConfigSource::longId, TestJdbcConfigSource::name).partitioned(pool);
+
+        try {
+            try (Update<List<ResultSet>> update = source.fetch()) {
+                assertTrue(update.newVal.isEmpty());
+                assertEquals(0, processor.process(update.newVal).size());
+            }
+
+            // keys near both ends of the range, to check the bounds arithmetic
+            execute("INSERT INTO numbers VALUES (" + Long.MIN_VALUE + ", 'min', 1), (" + Long.MAX_VALUE + ", 'max', 1)");
+            for (int i = 0; i < 1000; i++) {
+                execute(String.format("INSERT INTO numbers VALUES (%d, 'n%d', 2)", i * 7, i));
+            }
+            try (Update<List<ResultSet>> update = source.fetchIfNewer(0).get()) {
+                assertEquals(2, update.version);
+                assertEquals(4, update.newVal.size());
+                final LongMap<String> map = processor.process(update.newVal);
+                assertEquals(1002, map.size());
+                assertEquals("min", map.get(Long.MIN_VALUE));
+                assertEquals("max", map.get(Long.MAX_VALUE));
+                assertEquals("n999", map.get(999 * 7));
+            }
+            assertFalse(source.fetchIfNewer(2).isPresent());
+
+            // more partitions than keys leaves out the empty ranges
+            execute("DELETE FROM numbers");
+            execute("INSERT INTO numbers VALUES (5, 'five', 3), (6, 'six', 3)");
+            try (Update<List<ResultSet>> update = source.fetchIfNewer(2).get()) {
+                assertEquals(2, update.newVal.size());
+                assertEquals(2, processor.process(update.newVal).size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartitionedNeedsMergeableProcessor() {
+        new SqlUpdateProcessor<Set<String>>(() -> new ResultSetProcessor<Set<String>>() {
+            @Override
+            public void process(ResultSet result) {
+            }
+
+            @Override
+            public Set<String> getDataStructure() {
+                return ImmutableSet.of();
+            }
+        }).partitioned(ForkJoinPool.commonPool());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String id(ResultSet resultSet) {
+        try {
+            return resultSet.getString("id");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long longId(ResultSet resultSet) {
+        try {
+            return resultSet.getLong("id");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String name(ResultSet resultSet) {
+        try {
+            return resultSet.getString("name");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String reason(ResultSet resultSet) {
+        try {
+            return resultSet.getString("reason");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean deleted(ResultSet resultSet) {
+        try {
+            return resultSet.getBoolean("deleted");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
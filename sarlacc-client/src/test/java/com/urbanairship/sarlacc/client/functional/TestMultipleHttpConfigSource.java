@@ -2,6 +2,7 @@ package com.urbanairship.sarlacc.client.functional;
 
 
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.urbanairship.sarlacc.client.model.Update;
 import com.urbanairship.sarlacc.client.source.ConfigSource;
@@ -22,11 +23,17 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestMultipleHttpConfigSource {
 
@@ -63,6 +70,158 @@ public class TestMultipleHttpConfigSource {
         assertEquals(blacklist, got);
     }
 
+    @Test
+    public void testHedgedFetchTakesFirstResponse() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        sourceServer1.setHandler(buildContentHandler("slow\n", release));
+        sourceServer2.setHandler(buildContentHandler("fast\n", null));
+
+        final MultipleHttpConfigSource source = MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer1.getLocalAddr())
+                .addUrl(sourceServer2.getLocalAddr())
+                .setHedgeDelay(100, TimeUnit.MILLISECONDS)
+                .build();
+
+        final long start = System.nanoTime();
+        try (Update<InputStream> update = source.fetch()) {
+            assertEquals("fast\n", read(update));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testHedgedFetchMovesOnAfterFailure() throws Exception {
+        final AtomicInteger brokenRequests = new AtomicInteger();
+        sourceServer1.setHandler(buildCountingBrokenHandler(brokenRequests));
+        sourceServer2.setHandler(buildContentHandler("ok\n", null));
+
+        final MultipleHttpConfigSource source = MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer1.getLocalAddr())
+                .addUrl(sourceServer2.getLocalAddr())
+                .setHedgeDelay(1, TimeUnit.MINUTES)
+                .build();
+
+        final long start = System.nanoTime();
+        try (Update<InputStream> update = source.fetch()) {
+            assertEquals("ok\n", read(update));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(1, brokenRequests.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testHedgedFetchAllFail() throws Exception {
+        Logger.getRootLogger().setLevel(Level.FATAL);
+        sourceServer1.setHandler(buildBrokenHandler());
+        sourceServer2.setHandler(buildBrokenHandler());
+
+        MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer1.getLocalAddr())
+                .addUrl(sourceServer2.getLocalAddr())
+                .setHedgeDelay(1, TimeUnit.SECONDS)
+                .build()
+                .fetchIfNewer(0);
+    }
+
+    @Test
+    public void testHedgedFetchRejectsStaleMirror() throws Exception {
+        Logger.getRootLogger().setLevel(Level.FATAL);
+        final long current = System.currentTimeMillis() / 1000 * 1000;
+        // the up to date mirror is slow to answer, and the lagging one ignores If-Modified-Since
+        sourceServer1.setHandler(buildDatedHandler("new\n", current, 300, true));
+        sourceServer2.setHandler(buildDatedHandler("old\n", current - 60_000, 0, false));
+
+        final MultipleHttpConfigSource hedged = MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer1.getLocalAddr())
+                .addUrl(sourceServer2.getLocalAddr())
+                .setHedgeDelay(50, TimeUnit.MILLISECONDS)
+                .build();
+        assertFalse(hedged.fetchIfNewer(current).isPresent());
+
+        final MultipleHttpConfigSource sequential = MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer2.getLocalAddr())
+                .addUrl(sourceServer1.getLocalAddr())
+                .build();
+        assertFalse(sequential.fetchIfNewer(current).isPresent());
+    }
+
+    @Test
+    public void testAdaptiveOrderingDemotesFailingMirror() throws Exception {
+        Logger.getRootLogger().setLevel(Level.FATAL);
+        final AtomicInteger brokenRequests = new AtomicInteger();
+        sourceServer1.setHandler(buildCountingBrokenHandler(brokenRequests));
+        sourceServer2.setHandler(buildContentHandler("ok\n", null));
+
+        final MultipleHttpConfigSource source = MultipleHttpConfigSource.newBuilder()
+                .addUrl(sourceServer1.getLocalAddr())
+                .addUrl(sourceServer2.getLocalAddr())
+                .setAdaptiveOrdering(true)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            try (Update<InputStream> update = source.fetch()) {
+                assertEquals("ok\n", read(update));
+            }
+        }
+        assertEquals(1, brokenRequests.get());
+    }
+
+    private Handler buildContentHandler(final String content, final CountDownLatch release) {
+        return new AbstractHandler() {
+            @Override
+            public void handle(String s, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+                request.setHandled(true);
+                if (release != null) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                httpServletResponse.setHeader("ETag", "\"" + content.trim() + "\"");
+                httpServletResponse.getOutputStream().write(content.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private Handler buildDatedHandler(final String content, final long mtime, final long delayMillis,
+                                      final boolean conditional) {
+        return new AbstractHandler() {
+            @Override
+            public void handle(String s, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+                request.setHandled(true);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (conditional && httpServletRequest.getDateHeader("If-Modified-Since") >= mtime) {
+                    httpServletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                httpServletResponse.addDateHeader("Last-Modified", mtime);
+                httpServletResponse.getOutputStream().write(content.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private Handler buildCountingBrokenHandler(final AtomicInteger requests) {
+        return new AbstractHandler() {
+            @Override
+            public void handle(String s, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+                requests.incrementAndGet();
+                request.setHandled(true);
+                httpServletResponse.setStatus(500);
+            }
+        };
+    }
+
+    private static String read(Update<InputStream> update) throws IOException {
+        return new String(ByteStreams.toByteArray(update.newVal), StandardCharsets.UTF_8);
+    }
+
     private Handler buildBrokenHandler() {
         return new AbstractHandler() {
             @Override
@@ -0,0 +1,117 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.urbanairship.sarlacc.client.PollingPolicy;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPollingPolicy {
+
+    @Test
+    public void testFixed() {
+        assertEquals(1000, PollingPolicy.fixed().nextDelayMillis(1000, 0, 0));
+        assertEquals(1000, PollingPolicy.fixed().nextDelayMillis(1000, 5, 5));
+    }
+
+    @Test
+    public void testJitter() {
+        final PollingPolicy policy = PollingPolicy.newBuilder().setJitter(0.2).build();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            final long delay = policy.nextDelayMillis(1000, 0, 0);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+
+        assertTrue(min >= 800);
+        assertTrue(max <= 1200);
+        assertTrue(max - min > 100);
+    }
+
+    @Test
+    public void testFailureBackoff() {
+        final PollingPolicy policy = PollingPolicy.newBuilder()
+                .setFailureBackoff(2, 10, TimeUnit.SECONDS)
+                .build();
+
+        assertEquals(1000, policy.nextDelayMillis(1000, 0, 0));
+        assertEquals(2000, policy.nextDelayMillis(1000, 1, 0));
+        assertEquals(8000, policy.nextDelayMillis(1000, 3, 0));
+        assertEquals(10000, policy.nextDelayMillis(1000, 4, 0));
+        assertEquals(10000, policy.nextDelayMillis(1000, Integer.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void testFailureBackoffCapBelowFetchInterval() {
+        final PollingPolicy policy = PollingPolicy.newBuilder()
+                .setFailureBackoff(2, 500, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertEquals(1000, policy.nextDelayMillis(1000, 1, 0));
+        assertEquals(1000, policy.nextDelayMillis(1000, 10, 0));
+    }
+
+    @Test
+    public void testAdaptive() {
+        final PollingPolicy policy = PollingPolicy.newBuilder()
+                .setAdaptive(1, 30, TimeUnit.SECONDS)
+                .setFailureBackoff(3, 1, TimeUnit.MINUTES)
+                .build();
+
+        assertEquals(1000, policy.nextDelayMillis(60000, 0, 0));
+        assertEquals(2000, policy.nextDelayMillis(60000, 0, 1));
+        assertEquals(16000, policy.nextDelayMillis(60000, 0, 4));
+        assertEquals(30000, policy.nextDelayMillis(60000, 0, 5));
+        assertEquals(30000, policy.nextDelayMillis(60000, 0, Integer.MAX_VALUE));
+        // failures back off from the fetch interval regardless of the adaptive state
+        assertEquals(60000, policy.nextDelayMillis(20000, 2, 0));
+    }
+
+    @Test
+    public void testServiceBacksOffFailingSource() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        final ConfigSource<InputStream> source = new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, new ByteArrayInputStream("a\n".getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+                checks.incrementAndGet();
+                throw new IOException("source down");
+            }
+        };
+
+        final UpdateService<InputStream, Set<String>> service = UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName("backoff")
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.set(line -> line))
+                .setFetchInterval(10, TimeUnit.MILLISECONDS)
+                .setPollingPolicy(PollingPolicy.newBuilder().setFailureBackoff(2, 1, TimeUnit.MINUTES).build())
+                .build();
+
+        service.startAsync().awaitRunning();
+        Thread.sleep(500);
+        service.stopAsync().awaitTerminated();
+
+        // checks due at 10, 30, 70, 150 and 310ms; a fixed schedule would have made around 50
+        assertTrue(checks.get() >= 3);
+        assertTrue(checks.get() <= 6);
+    }
+}
@@ -0,0 +1,159 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRefreshNow {
+
+    @Test
+    public void testRefreshPicksUpNewVersion() throws Exception {
+        final AtomicReference<String> published = new AtomicReference<>("a\n");
+        final AtomicInteger version = new AtomicInteger(1);
+        final UpdateService<InputStream, Set<String>> service = buildService(new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(version.get(), stream(published.get()));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) {
+                return ifNewerThan < version.get() ? Optional.of(fetch()) : Optional.empty();
+            }
+        });
+
+        service.startAsync().awaitRunning();
+        try {
+            assertEquals(ImmutableSet.of("a"), service.getUpdatingCollection());
+
+            published.set("a\nb\n");
+            version.incrementAndGet();
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+
+            assertEquals(ImmutableSet.of("a", "b"), service.getUpdatingCollection());
+            assertEquals(2, service.getCurrentVersion());
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersCoalesce() throws Exception {
+        final CountDownLatch firstCheckStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstCheck = new CountDownLatch(1);
+        final AtomicInteger checks = new AtomicInteger();
+        final UpdateService<InputStream, Set<String>> service = buildService(new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, stream("a\n"));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+                if (checks.incrementAndGet() == 1) {
+                    firstCheckStarted.countDown();
+                    try {
+                        releaseFirstCheck.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return Optional.empty();
+            }
+        });
+
+        service.startAsync().awaitRunning();
+        try {
+            final CompletableFuture<Void> first = service.refreshNow();
+            assertTrue(firstCheckStarted.await(5, TimeUnit.SECONDS));
+
+            // the first check may have missed whatever these callers know about, so they share one more check
+            final Set<CompletableFuture<Void>> later = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                later.add(service.refreshNow());
+            }
+            assertEquals(1, later.size());
+            assertNotSame(first, later.iterator().next());
+
+            releaseFirstCheck.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            later.iterator().next().get(5, TimeUnit.SECONDS);
+
+            assertEquals(2, checks.get());
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testFailedRefresh() throws Exception {
+        final UpdateService<InputStream, Set<String>> service = buildService(new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, stream("a\n"));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) throws IOException {
+                throw new IOException("source down");
+            }
+        });
+
+        service.startAsync().awaitRunning();
+        try {
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testRefreshBeforeStart() throws Exception {
+        final UpdateService<InputStream, Set<String>> service = buildService(() -> new Update<>(1, stream("a\n")));
+
+        try {
+            service.refreshNow().get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static UpdateService<InputStream, Set<String>> buildService(ConfigSource<InputStream> source) {
+        return UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName("refresh")
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.set(line -> line))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+    }
+
+    private static InputStream stream(String payload) {
+        return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -6,8 +6,14 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Service;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingList;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingLongMap;
+import com.urbanairship.sarlacc.client.structures.container.UpdatingLongSet;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingMap;
 import com.urbanairship.sarlacc.client.structures.container.UpdatingSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -217,6 +223,66 @@ public class TestServiceStateChecks {
         Mockito.verify(backingSet, Mockito.times(1)).contains(Mockito.any());
     }
 
+    @Test
+    public void testLongSetUnstarted() throws Exception {
+        final Service updateService = Mockito.mock(Service.class);
+        final LongSet backingSet = Mockito.spy(ImmutableArrayLongSet.copyOf(1L, 2L, 3L));
+        final UpdatingLongSet updatingSet = new UpdatingLongSet(new AtomicReference<>(backingSet));
+        updatingSet.setUpdateService(updateService);
+
+        Mockito.when(updateService.state()).thenReturn(Service.State.NEW);
+
+        for (Method method : UpdatingLongSet.class.getDeclaredMethods()) {
+            // Bridge methods for the boxed generic signatures just cast and delegate to the real ones
+            if (!shouldCheck(method) || method.isBridge()) {
+                continue;
+            }
+
+            final Object[] arguments = getArguments(method.getParameters());
+            try {
+                method.invoke(updatingSet, arguments);
+                Assert.fail("Expected call to throw, but it didn't! Method: " + method.getName());
+            } catch (Throwable t) {
+                Assert.assertTrue("Unexpected exception: " + Throwables.getStackTraceAsString(t),
+                        t.getCause() instanceof IllegalStateException || t.getCause() instanceof UnsupportedOperationException);
+            }
+        }
+
+        Mockito.verify(updateService, Mockito.atLeast(1)).state();
+        Mockito.verifyNoMoreInteractions(updateService);
+        Mockito.verifyNoInteractions(backingSet);
+    }
+
+    @Test
+    public void testLongMapStarted() throws Exception {
+        final Service updateService = Mockito.mock(Service.class);
+        final LongMap<String> backingMap = Mockito.spy(ImmutableArrayLongMap.<String>newBuilder().put(1L, "one").build());
+        final UpdatingLongMap<String> updatingMap = new UpdatingLongMap<>(new AtomicReference<>(backingMap));
+        updatingMap.setUpdateService(updateService);
+
+        Mockito.when(updateService.state()).thenReturn(Service.State.RUNNING);
+
+        for (Method method : UpdatingLongMap.class.getDeclaredMethods()) {
+            // Bridge methods for the boxed generic signatures just cast and delegate to the real ones
+            if (!shouldCheck(method) || method.isBridge()) {
+                continue;
+            }
+
+            final Object[] arguments = getArguments(method.getParameters());
+
+            try {
+                method.invoke(updatingMap, arguments);
+            } catch (Throwable t) {
+                Assert.assertTrue("Unexpected exception: " + Throwables.getStackTraceAsString(t),
+                        t.getCause() instanceof UnsupportedOperationException);
+            }
+        }
+
+        Mockito.verify(updateService, Mockito.atLeast(1)).state();
+        Mockito.verifyNoMoreInteractions(updateService);
+        Mockito.verify(backingMap, Mockito.times(1)).get(Mockito.anyLong());
+    }
+
     private Object[] getArguments(Parameter[] parameters) {
         return Stream.of(parameters)
                 .map(parameter -> {
@@ -225,6 +291,8 @@ public class TestServiceStateChecks {
                         return "";
                     } else if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
                         return 0;
+                    } else if (Long.class.equals(type) || Long.TYPE.equals(type)) {
+                        return 0L;
                     } else if (Map.class.equals(type)) {
                         return ImmutableMap.of();
                     } else if (List.class.equals(type)) {
@@ -0,0 +1,100 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSharedExecutor {
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testServicesShareExecutor() throws Exception {
+        final AtomicInteger firstChecks = new AtomicInteger();
+        final AtomicInteger secondChecks = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        final UpdateService<InputStream, Set<String>> first = buildService("first", countingSource(firstChecks, concurrent, maxConcurrent));
+        final UpdateService<InputStream, Set<String>> second = buildService("second", countingSource(secondChecks, concurrent, maxConcurrent));
+
+        first.startAsync().awaitRunning();
+        second.startAsync().awaitRunning();
+        awaitAtLeast(firstChecks, 3);
+        awaitAtLeast(secondChecks, 3);
+
+        first.stopAsync().awaitTerminated();
+        final int firstChecksAtStop = firstChecks.get();
+
+        // the shared executor outlives the stopped service, and keeps serving the other one
+        final int secondChecksAtStop = secondChecks.get();
+        awaitAtLeast(secondChecks, secondChecksAtStop + 3);
+        assertFalse(executor.isShutdown());
+        assertTrue(firstChecks.get() <= firstChecksAtStop + 1);
+
+        second.stopAsync().awaitTerminated();
+        assertFalse(executor.isShutdown());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    private UpdateService<InputStream, Set<String>> buildService(String name, ConfigSource<InputStream> source) {
+        return UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName(name)
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.set(line -> line))
+                .setFetchInterval(5, TimeUnit.MILLISECONDS)
+                .setScheduledExecutorService(executor)
+                .build();
+    }
+
+    private static ConfigSource<InputStream> countingSource(AtomicInteger checks, AtomicInteger concurrent, AtomicInteger maxConcurrent) {
+        return new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, new ByteArrayInputStream("a\n".getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrent.decrementAndGet();
+                checks.incrementAndGet();
+                return Optional.empty();
+            }
+        };
+    }
+
+    private static void awaitAtLeast(AtomicInteger counter, int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (counter.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(counter.get() >= count);
+    }
+}
@@ -0,0 +1,141 @@
+package com.urbanairship.sarlacc.client.functional;
+
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.WatchingFileConfigSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestWatchingFileConfigSource {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplacedFileIsNewerDespiteOlderMtime() throws Exception {
+        final File file = new File(folder.getRoot(), "list");
+        replace(file.toPath(), "a\n", 10_000);
+
+        final WatchingFileConfigSource source = new WatchingFileConfigSource(file.getPath(), false);
+        final long version;
+        try (Update<InputStream> update = source.fetch()) {
+            version = update.version;
+            update.markProcessed();
+        }
+        assertFalse(source.fetchIfNewer(version).isPresent());
+
+        // moved into place with an older timestamp, as rsync or a restored backup would do
+        replace(file.toPath(), "b\n", 5_000);
+        final Optional<Update<InputStream>> update = source.fetchIfNewer(version);
+        assertTrue(update.isPresent());
+        assertTrue(update.get().version > version);
+        update.get().markProcessed();
+        update.get().close();
+
+        assertFalse(source.fetchIfNewer(update.get().version).isPresent());
+    }
+
+    @Test
+    public void testUnprocessedChangeIsRetried() throws Exception {
+        final File file = new File(folder.getRoot(), "list");
+        replace(file.toPath(), "a\n", 10_000);
+
+        final WatchingFileConfigSource source = new WatchingFileConfigSource(file.getPath(), false);
+        final long version;
+        try (Update<InputStream> update = source.fetch()) {
+            version = update.version;
+            update.markProcessed();
+        }
+
+        // same mtime, so only the new inode gives the change away
+        replace(file.toPath(), "b\n", 10_000);
+        source.fetchIfNewer(version).get().close();
+
+        // the processor failed, so the next check must try again
+        final Update<InputStream> retry = source.fetchIfNewer(version).get();
+        retry.markProcessed();
+        retry.close();
+        assertFalse(source.fetchIfNewer(retry.version).isPresent());
+    }
+
+    @Test
+    public void testInPlaceWritesDoNotNotify() throws Exception {
+        final File file = new File(folder.getRoot(), "list");
+        replace(file.toPath(), "a\n", System.currentTimeMillis());
+
+        final WatchingFileConfigSource source = new WatchingFileConfigSource(file.getPath(), false);
+        final AtomicInteger notifications = new AtomicInteger();
+        source.startWatching(notifications::incrementAndGet);
+        try {
+            // an in place rewrite caught half way must not be read before it is finished
+            Files.write(file.toPath(), "a\nb".getBytes(StandardCharsets.UTF_8));
+            replace(file.toPath(), "a\nb\n", System.currentTimeMillis());
+
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (notifications.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // give any event for the in place write time to arrive
+            Thread.sleep(200);
+            assertEquals(1, notifications.get());
+        } finally {
+            source.stopWatching();
+        }
+    }
+
+    @Test
+    public void testServiceReactsToRename() throws Exception {
+        final File file = new File(folder.getRoot(), "list");
+        replace(file.toPath(), "a\n", System.currentTimeMillis());
+
+        final UpdateService<InputStream, Set<String>> service = UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName("watching")
+                .setConfigSource(new WatchingFileConfigSource(file.getPath(), false))
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.set(line -> line))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final Set<String> set = service.getUpdatingCollection();
+            assertEquals(ImmutableSet.of("a"), set);
+
+            // unrelated files in the same directory are ignored
+            Files.write(new File(folder.getRoot(), "other").toPath(), "x\n".getBytes(StandardCharsets.UTF_8));
+            replace(file.toPath(), "a\nb\n", System.currentTimeMillis());
+
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (set.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(ImmutableSet.of("a", "b"), set);
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    private void replace(Path target, String contents, long mtime) throws Exception {
+        final Path temp = folder.newFile().toPath();
+        Files.write(temp, contents.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(temp, FileTime.fromMillis(mtime));
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
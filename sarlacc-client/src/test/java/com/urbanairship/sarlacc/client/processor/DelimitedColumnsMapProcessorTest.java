@@ -0,0 +1,88 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DelimitedColumnsMapProcessorTest {
+    @Test
+    public void testTsvColumns() throws Exception {
+        final DelimitedColumnsMapProcessor<Long, Integer> processor = DelimitedColumnsMapProcessor.newBuilder()
+                .setColumns(3, 1)
+                .setSkipHeader(true)
+                .setKeyParser(Long::parseLong)
+                .setValueParser(Integer::parseInt)
+                .build();
+
+        final String tsv = "name\tscore\tcountry\tid\tnotes\n"
+                + "alice\t10\tNZ\t1\t\n"
+                + "\n"
+                + "bob\t20\t\t2\n"
+                + "carol\t30\tUS\t3\tmore\tcolumns\n";
+
+        assertEquals(ImmutableMap.of(1L, 10, 2L, 20, 3L, 30), processor.process(utf8(tsv)));
+        assertEquals(ImmutableMap.of(1L, 10, 2L, 20, 3L, 30),
+                new MappedLinesUpdateProcessor<>(processor.lineProcessorSupplier())
+                        .process(ByteBuffer.wrap(tsv.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testQuotedCsv() throws Exception {
+        final DelimitedColumnsMapProcessor<String, String> processor = DelimitedColumnsMapProcessor.newBuilder()
+                .setDelimiter(",")
+                .setQuoteChar('"')
+                .setColumns(0, 2)
+                .build();
+
+        final Map<String, String> map = processor.process(utf8(
+                "plain,\"skipped, with comma\",value\n"
+                        + "\"quoted, key\",x,\"say \"\"hi\"\"\"\n"
+                        + "\"\",x,\n"
+                        + "multi,\"\"\"\",\"ünï\""));
+
+        assertEquals(ImmutableMap.of(
+                "plain", "value",
+                "quoted, key", "say \"hi\"",
+                "", "",
+                "multi", "ünï"), map);
+    }
+
+    @Test
+    public void testMultiCharacterDelimiter() throws Exception {
+        final DelimitedColumnsMapProcessor<String, String> processor = DelimitedColumnsMapProcessor.newBuilder()
+                .setDelimiter("||")
+                .build();
+
+        assertEquals(ImmutableMap.of("a", "b|c", "d", ""), processor.process(utf8("a||b|c||e\nd||\n")));
+    }
+
+    @Test
+    public void testBadLines() throws Exception {
+        final DelimitedColumnsMapProcessor<String, Integer> processor = DelimitedColumnsMapProcessor.newBuilder()
+                .setDelimiter(",")
+                .setQuoteChar('"')
+                .setValueParser(Integer::parseInt)
+                .build();
+
+        for (String bad : new String[]{"onlykey", "\"unterminated,1", "\"key\"x,1", "key,notanumber"}) {
+            try {
+                processor.process(utf8(bad + "\n"));
+                fail("Expected failure for " + bad);
+            } catch (RuntimeException expected) {
+            }
+        }
+    }
+
+    private static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,189 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.hash.HashCode;
+import com.google.common.io.CharStreams;
+import com.urbanairship.sarlacc.client.UpdateCallback;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.source.DigestedInputStream;
+import com.urbanairship.sarlacc.client.source.FileConfigSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DigestingUpdateProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIdenticalPayloadReturnsPreviousResult() throws Exception {
+        final DigestingUpdateProcessor<Set<String>> processor =
+                new DigestingUpdateProcessor<>(MultilinePlaintextUpdateProcessor.set(line -> line));
+
+        final Set<String> first = processor.process(stream("a\nb\n"));
+        final Set<String> second = processor.process(stream("a\nb\n"));
+        final Set<String> third = processor.process(stream("a\nc\n"));
+        final Set<String> fourth = processor.process(stream("a\nb\n"));
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+        assertNotSame(third, fourth);
+        assertEquals(first, fourth);
+    }
+
+    @Test
+    public void testUnreadTrailingBytesCount() throws Exception {
+        // a delegate which only looks at the first byte
+        final DigestingUpdateProcessor<String> processor =
+                new DigestingUpdateProcessor<>(input -> String.valueOf((char) input.read()));
+
+        final String first = processor.process(stream("ab"));
+        final String second = processor.process(stream("ac"));
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testKnownDigestSkipsDelegate() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final DigestingUpdateProcessor<Set<String>> processor = new DigestingUpdateProcessor<>(input -> {
+            parses.incrementAndGet();
+            return MultilinePlaintextUpdateProcessor.set(line -> line).process(input);
+        });
+
+        final Set<String> first = processor.process(digested("a\n", 1));
+        final Set<String> second = processor.process(digested("a\n", 1));
+        final Set<String> third = processor.process(digested("b\n", 2));
+        // our own hash of a plain stream is never taken for the source's digest
+        final Set<String> fourth = processor.process(stream("b\n"));
+
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertNotSame(third, fourth);
+        assertEquals(3, parses.get());
+    }
+
+    @Test
+    public void testMappedSkipsDelegate() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final UpdateProcessor<ByteBuffer, String> processor = DigestingUpdateProcessor.mapped(input -> {
+            parses.incrementAndGet();
+            return StandardCharsets.UTF_8.decode(input).toString();
+        });
+
+        final String first = processor.process(buffer("a\nb\n"));
+        final String second = processor.process(buffer("a\nb\n"));
+        final String third = processor.process(buffer("a\nc\n"));
+
+        assertSame(first, second);
+        assertEquals("a\nc\n", third);
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    public void testDigestedFileSource() throws Exception {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+        final FileConfigSource source = FileConfigSource.digested(file.getAbsolutePath(), false);
+
+        final HashCode first = digestOf(source.fetch());
+        final HashCode second = digestOf(source.fetch());
+        Files.write(file.toPath(), "a\nc\n".getBytes(StandardCharsets.UTF_8));
+        final Update<InputStream> update = source.fetch();
+        try {
+            assertNotEquals(first, ((DigestedInputStream) update.newVal).getDigest());
+            // the digest pass leaves the stream at the start
+            assertEquals("a\nc\n", CharStreams.toString(new InputStreamReader(update.newVal, StandardCharsets.UTF_8)));
+        } finally {
+            update.close();
+        }
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testServiceSkipsIdenticalPayload() throws Exception {
+        final AtomicInteger version = new AtomicInteger(1);
+        final ConfigSource<InputStream> source = new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(version.get(), stream("a\nb\n"));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) {
+                // every check reports a new version, but the bytes never change
+                return Optional.of(new Update<>(version.incrementAndGet(), stream("a\nb\n")));
+            }
+        };
+        final AtomicInteger callbacks = new AtomicInteger();
+        final UpdateCallback<Set<String>> callback = (oldVal, oldVersion, newVal, newVersion) -> callbacks.incrementAndGet();
+        final MetricRegistry registry = new MetricRegistry();
+
+        final UpdateService<InputStream, Set<String>> service = UpdateService.<InputStream, String>setServiceBuilder()
+                .setServiceName("digesting")
+                .setConfigSource(source)
+                .setUpdateProcessor(new DigestingUpdateProcessor<>(MultilinePlaintextUpdateProcessor.set(line -> line)))
+                .setUpdateCallback(callback)
+                .setMetricRegistry(registry)
+                .setFetchInterval(5, TimeUnit.MILLISECONDS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (service.getCurrentVersion() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+
+        final Counter skipped = registry.getCounters((name, metric) -> name.contains("Skipped Identical Payloads"))
+                .values().iterator().next();
+        assertEquals(1, callbacks.get());
+        assertTrue(skipped.getCount() >= 3);
+    }
+
+    private static HashCode digestOf(Update<InputStream> update) throws Exception {
+        try {
+            return ((DigestedInputStream) update.newVal).getDigest();
+        } finally {
+            update.close();
+        }
+    }
+
+    private static InputStream digested(String payload, int digest) {
+        return new DigestedInputStream(stream(payload), HashCode.fromInt(digest));
+    }
+
+    private static ByteBuffer buffer(String payload) {
+        return ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream stream(String payload) {
+        return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
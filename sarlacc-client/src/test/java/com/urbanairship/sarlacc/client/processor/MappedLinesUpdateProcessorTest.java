@@ -0,0 +1,140 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableArrayStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.FileConfigSource;
+import com.urbanairship.sarlacc.client.source.MappedLinesConfigSource;
+import com.urbanairship.sarlacc.client.util.TestUtil;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedLinesUpdateProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLineEndings() throws Exception {
+        final MappedLinesUpdateProcessor<List<String>> processor = new MappedLinesUpdateProcessor<>(ListLineProcessor::new);
+
+        assertEquals(Arrays.asList("a", "b", "", "c", "d", "é😀"),
+                processor.process(utf8("a\nb\r\n\nc\rd\né😀")));
+        assertEquals(Arrays.asList("a", ""), processor.process(utf8("a\n\n")));
+        assertEquals(Arrays.asList(), processor.process(utf8("")));
+    }
+
+    @Test
+    public void testDirectBufferAndPosition() throws Exception {
+        final byte[] bytes = "skip\nfirst\nsecond line".getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        direct.position(5);
+
+        final List<String> lines = new MappedLinesUpdateProcessor<>(ListLineProcessor::new).process(direct);
+
+        assertEquals(Arrays.asList("first", "second line"), lines);
+        assertEquals(5, direct.position());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        final Set<String> blacklist = TestUtil.getBlacklistAsSet(1000);
+        final File file = folder.newFile();
+        Files.write(file.toPath(), StringUtils.join(blacklist, "\n").getBytes(StandardCharsets.UTF_8));
+
+        try (Update<List<ByteBuffer>> update = FileConfigSource.mapped(file.getPath()).fetch()) {
+            final Set<String> set = new MappedLinesUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER)
+                    .process(update.newVal);
+            assertEquals(blacklist, set);
+        }
+    }
+
+    @Test
+    public void testWindowedMapping() throws Exception {
+        final StringBuilder contents = new StringBuilder();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final String line = "line-" + i;
+            expected.add(line);
+            // mixed endings, so some windows are cut between a '\r' and its '\n'
+            contents.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final File file = folder.newFile();
+        Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (Update<List<ByteBuffer>> update = new MappedLinesConfigSource(file.getPath(), 64).fetch()) {
+            final List<ByteBuffer> windows = update.newVal;
+            assertTrue(windows.size() > 50);
+            long total = 0;
+            for (int i = 0; i < windows.size(); i++) {
+                final ByteBuffer window = windows.get(i);
+                assertTrue(window.remaining() <= 64);
+                assertEquals('\n', window.get(window.limit() - 1));
+                total += window.remaining();
+            }
+            assertEquals(file.length(), total);
+
+            assertEquals(expected, new MappedLinesUpdateProcessor<>(ListLineProcessor::new).process(windows));
+            final ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                assertEquals(new HashSet<>(expected),
+                        new MappedLinesUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER)
+                                .parallel(pool, 16)
+                                .process(windows));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testLinesSpanningBuffers() throws Exception {
+        // sequential reads don't need windows cut on line breaks
+        final List<ByteBuffer> buffers = Arrays.asList(utf8("a\nb"), utf8("c\r"), utf8("\nd"), utf8(""), utf8("e"));
+        assertEquals(Arrays.asList("a", "bc", "de"),
+                new MappedLinesUpdateProcessor<>(ListLineProcessor::new).process(buffers));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLineLongerThanWindow() throws Exception {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), "short\nthis line is too long for the window\nend\n".getBytes(StandardCharsets.UTF_8));
+        new MappedLinesConfigSource(file.getPath(), 16).fetch();
+    }
+
+    private static ByteBuffer utf8(String contents) {
+        return ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class ListLineProcessor extends AbstractLineProcessor<List<String>> {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void process(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public List<String> getResult() {
+            return lines;
+        }
+    }
+}
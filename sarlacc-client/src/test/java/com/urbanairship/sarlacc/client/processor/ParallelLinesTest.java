@@ -0,0 +1,149 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableArrayStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MappedLinesUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelLinesTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testMatchesSequential() throws Exception {
+        final byte[] data = randomLines(5000, new Random(7));
+
+        final MultilinePlaintextUpdateProcessor<List<String>> list = MultilinePlaintextUpdateProcessor.list(Function.identity());
+        final List<String> expected = list.process(stream(data));
+        assertEquals(5000, expected.size());
+
+        for (int chunkSize : new int[]{1, 7, 100, 4096, 1 << 20}) {
+            assertEquals(expected, list.parallel(pool, chunkSize).process(stream(data)));
+
+            final MappedLinesUpdateProcessor<Set<String>> mapped =
+                    new MappedLinesUpdateProcessor<>(ImmutableArrayStringSetLineProcessor.SUPPLIER).parallel(pool, chunkSize);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data);
+            direct.flip();
+            assertEquals(expected.size(), mapped.process(direct).size());
+            assertTrue(mapped.process(ByteBuffer.wrap(data)).containsAll(expected));
+        }
+    }
+
+    @Test
+    public void testNumbersAndLongLines() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (long i = 0; i < 10000; i++) {
+            text.append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        text.append(Strings.repeat("0", 10000)).append("42\n");
+
+        final LongSet set = MultilinePlaintextUpdateProcessor.longSet().parallel(pool, 64)
+                .process(stream(text.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(10000, set.size());
+        assertTrue(set.contains(9999L));
+        assertTrue(set.contains(42L));
+
+        assertEquals(0, MultilinePlaintextUpdateProcessor.longSet().parallel(pool).process(stream(new byte[0])).size());
+    }
+
+    @Test
+    public void testHeaderOnlySkippedOnce() throws Exception {
+        final StringBuilder tsv = new StringBuilder("id\tname\n");
+        for (int i = 0; i < 1000; i++) {
+            tsv.append(i).append('\t').append("name").append(i).append('\n');
+        }
+
+        final Map<Integer, String> map = DelimitedColumnsMapProcessor.newBuilder()
+                .setSkipHeader(true)
+                .setKeyParser(Integer::parseInt)
+                .setForkJoinPool(pool)
+                .build()
+                .process(stream(tsv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1000, map.size());
+        assertEquals("name999", map.get(999));
+    }
+
+    @Test
+    public void testFailuresPropagate() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append(i == 7777 ? "oops" : String.valueOf(i)).append('\n');
+        }
+
+        try {
+            MultilinePlaintextUpdateProcessor.longSet().parallel(pool, 128)
+                    .process(stream(text.toString().getBytes(StandardCharsets.UTF_8)));
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException expected) {
+            assertEquals("For input string: \"oops\"", expected.getMessage());
+        }
+
+        try {
+            DelimitedColumnsMapProcessor.newBuilder().setForkJoinPool(pool).build()
+                    .process(stream("a\tb\na\tc\n".getBytes(StandardCharsets.UTF_8)));
+            fail("Expected duplicate keys to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(ImmutableMap.of(), DelimitedColumnsMapProcessor.newBuilder().setForkJoinPool(pool).build()
+                .process(stream(new byte[0])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresChunkedProcessor() {
+        new MultilinePlaintextUpdateProcessor<>(() -> new ListLineProcessor()).parallel(pool);
+    }
+
+    private static byte[] randomLines(int count, Random random) {
+        final String[] endings = {"\n", "\r\n", "\r"};
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("line-").append(i).append(i % 10 == 0 ? "-ünïcödé" : "").append(endings[random.nextInt(3)]);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static InputStream stream(byte[] data) {
+        return new ByteArrayInputStream(data);
+    }
+
+    private static class ListLineProcessor extends AbstractLineProcessor<List<String>> {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void process(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public List<String> getResult() {
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.urbanairship.sarlacc.client.processor;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.LineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.AbstractLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.Utf8Lines;
+import com.urbanairship.sarlacc.client.structures.primitive.IntSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Utf8LinesTest {
+    @Test
+    public void testLineEndingsAcrossReads() throws Exception {
+        final String text = "a\r\nb\rc\n\né😀\r\n" + Strings.repeat("x", 200_000) + "\r\nlast";
+
+        // one byte per read splits every line break, including "\r\n", across reads
+        final List<String> lines = Utf8Lines.readLines(new OneByteInputStream(utf8(text)), new ListLineProcessor());
+        assertEquals(Arrays.asList("a", "b", "c", "", "é😀", Strings.repeat("x", 200_000), "last"), lines);
+
+        assertEquals(lines, Utf8Lines.readLines(utf8(text), new ListLineProcessor()));
+    }
+
+    @Test
+    public void testPlainLineProcessorCanStop() throws Exception {
+        final List<String> seen = new ArrayList<>();
+        final List<String> result = Utf8Lines.readLines(utf8("a\nb\nstop\nc\n"), new LineProcessor<List<String>>() {
+            @Override
+            public boolean processLine(String line) {
+                seen.add(line);
+                return !line.equals("stop");
+            }
+
+            @Override
+            public List<String> getResult() {
+                return seen;
+            }
+        });
+
+        assertEquals(Arrays.asList("a", "b", "stop"), result);
+    }
+
+    @Test
+    public void testCharSequenceView() throws Exception {
+        final List<String> views = new ArrayList<>();
+        Utf8Lines.readLines(utf8("ascii\nnön\n"), new AbstractLineProcessor<Void>() {
+            @Override
+            public void process(String line) {
+                fail("should receive a CharSequence");
+            }
+
+            @Override
+            public void process(CharSequence line) {
+                final StringBuilder chars = new StringBuilder();
+                for (int i = 0; i < line.length(); i++) {
+                    chars.append(line.charAt(i));
+                }
+                views.add(chars + "|" + line.subSequence(1, 3) + "|" + line);
+            }
+
+            @Override
+            public Void getResult() {
+                return null;
+            }
+        });
+
+        assertEquals(Arrays.asList("ascii|sc|ascii", "nön|ön|nön"), views);
+    }
+
+    @Test
+    public void testNumericSets() throws Exception {
+        final LongSet longs = MultilinePlaintextUpdateProcessor.longSet()
+                .process(utf8(" 1\n\n-9223372036854775808\n+42 \n9223372036854775807\n \t\n"));
+        assertEquals(4, longs.size());
+        assertTrue(longs.contains(1L));
+        assertTrue(longs.contains(Long.MIN_VALUE));
+        assertTrue(longs.contains(42L));
+        assertTrue(longs.contains(Long.MAX_VALUE));
+
+        final IntSet ints = MultilinePlaintextUpdateProcessor.intSet().process(utf8("-2147483648\n7\n"));
+        assertTrue(ints.contains(Integer.MIN_VALUE));
+        assertTrue(ints.contains(7));
+
+        for (String bad : Arrays.asList("9223372036854775808", "-9223372036854775809", "-", "+", "1x", "1 2")) {
+            try {
+                MultilinePlaintextUpdateProcessor.longSet().process(utf8(bad + "\n"));
+                fail("Expected NumberFormatException for " + bad);
+            } catch (NumberFormatException expected) {
+                assertEquals("For input string: \"" + bad + "\"", expected.getMessage());
+            }
+        }
+        try {
+            MultilinePlaintextUpdateProcessor.intSet().process(utf8("2147483648\n"));
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testUuids() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        final Set<UUID> set = MultilinePlaintextUpdateProcessor.uuidSet().process(utf8("  " + uuid + " \n\n"));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(uuid));
+
+        final Map<UUID, Integer> map = MultilinePlaintextUpdateProcessor.uuidMap("=>", Integer::parseInt)
+                .process(utf8(uuid + "=>12\n"));
+        assertEquals(ImmutableMap.of(uuid, 12), map);
+    }
+
+    @Test
+    public void testDelimitedMapMatchesSplit() throws Exception {
+        final Supplier<DelimitedStreamMapProcessor<String, String>> literal = DelimitedStreamMapProcessor.supplierBuilder()
+                .setDelimiter("::")
+                .build();
+        assertEquals(ImmutableMap.of("a", "b", "", "c", "d", "e", "f", "g:"),
+                literal.get().process(utf8("a::b\n::c\nd::e::::\nf::g:\n")));
+        for (String bad : Arrays.asList("a", "a::", "a::b::c", "a::::b")) {
+            try {
+                literal.get().process(utf8(bad + "\n"));
+                fail("Expected a bad line exception for " + bad);
+            } catch (RuntimeException expected) {
+                assertFalse(bad, bad.split("::").length == 2);
+            }
+        }
+
+        // regex delimiters still go through String.split()
+        final Supplier<DelimitedStreamMapProcessor<String, Integer>> regex = DelimitedStreamMapProcessor.supplierBuilder()
+                .setDelimiter("\\s*,\\s*")
+                .setValueParser(Integer::parseInt)
+                .build();
+        assertEquals(ImmutableMap.of("a", 1, "b", 2), regex.get().process(utf8("a , 1\nb,2\n")));
+    }
+
+    private static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class OneByteInputStream extends FilterInputStream {
+        private OneByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    private static class ListLineProcessor extends AbstractLineProcessor<List<String>> {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void process(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public List<String> getResult() {
+            return lines;
+        }
+    }
+}
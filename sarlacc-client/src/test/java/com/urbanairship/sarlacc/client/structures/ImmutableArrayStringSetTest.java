@@ -0,0 +1,94 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayStringSet;
+import com.urbanairship.sarlacc.client.util.TestUtil;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImmutableArrayStringSetTest {
+
+    @Test
+    public void testContains() {
+        final Set<String> members = TestUtil.getBlacklistAsSet(1000);
+        final Set<String> others = TestUtil.getBlacklistAsSet(1000);
+        others.removeAll(members);
+
+        final ImmutableArrayStringSet.Builder builder = ImmutableArrayStringSet.newBuilder();
+        members.forEach(builder::add);
+        final ImmutableArrayStringSet set = builder.build();
+
+        assertEquals(members.size(), set.size());
+        for (String member : members) {
+            assertTrue(set.contains(new String(member)));
+        }
+        for (String other : others) {
+            assertFalse(set.contains(other));
+        }
+        assertFalse(set.contains(42));
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // "Aa", "BB" and "C#" share a hash code, as do "AaAa", "AaBB", "BBAa" and "BBBB"
+        final ImmutableArrayStringSet set = ImmutableArrayStringSet.newBuilder()
+                .add("BB")
+                .add("AaBB")
+                .add("BBBB")
+                .add("zzz")
+                .build();
+
+        assertTrue(set.contains("BB"));
+        assertTrue(set.contains("AaBB"));
+        assertTrue(set.contains("BBBB"));
+        assertTrue(set.contains("zzz"));
+        assertFalse(set.contains("Aa"));
+        assertFalse(set.contains("C#"));
+        assertFalse(set.contains("AaAa"));
+        assertFalse(set.contains("BBAa"));
+    }
+
+    @Test
+    public void testBuilderDeduplicates() {
+        final ImmutableArrayStringSet.Builder builder = ImmutableArrayStringSet.newBuilder(4);
+        final ImmutableArrayStringSet set = builder
+                .add("foo")
+                .add("bar")
+                .add("foo")
+                .add("BB")
+                .add("Aa")
+                .add("bar")
+                .build();
+
+        assertEquals(4, set.size());
+        assertEquals(4, set.toArray().length);
+        assertTrue(set.containsAll(ImmutableSet.of("foo", "bar", "Aa", "BB")));
+    }
+
+    @Test
+    public void testBuilderReuse() {
+        final ImmutableArrayStringSet.Builder builder = ImmutableArrayStringSet.newBuilder(2)
+                .add("foo")
+                .add("bar");
+        final ImmutableArrayStringSet first = builder.build();
+        final ImmutableArrayStringSet second = builder.add("baz").build();
+
+        assertEquals(2, first.size());
+        assertFalse(first.contains("baz"));
+        assertEquals(3, second.size());
+        assertTrue(second.containsAll(ImmutableSet.of("foo", "bar", "baz")));
+    }
+
+    @Test
+    public void testEmpty() {
+        final ImmutableArrayStringSet set = ImmutableArrayStringSet.newBuilder().build();
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(""));
+    }
+}
@@ -0,0 +1,80 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.urbanairship.sarlacc.client.processor.flatfile.ImmutableHashStringSetLineProcessor;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableHashStringSet;
+import com.urbanairship.sarlacc.client.util.TestUtil;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImmutableHashStringSetTest {
+
+    @Test
+    public void testContains() {
+        final Set<String> members = TestUtil.getBlacklistAsSet(1000);
+        final Set<String> others = TestUtil.getBlacklistAsSet(1000);
+        others.removeAll(members);
+
+        final ImmutableHashStringSet.Builder builder = ImmutableHashStringSet.newBuilder();
+        members.forEach(builder::add);
+        final ImmutableHashStringSet set = builder.build();
+
+        assertEquals(members.size(), set.size());
+        for (String member : members) {
+            assertTrue(set.contains(new String(member)));
+        }
+        for (String other : others) {
+            assertFalse(set.contains(other));
+        }
+        assertFalse(set.contains(42));
+
+        assertEquals(members, set);
+        assertEquals(members.hashCode(), set.hashCode());
+        assertEquals(members, Sets.newHashSet(set));
+    }
+
+    @Test
+    public void testDuplicatesAndCollisions() {
+        final ImmutableHashStringSet set = ImmutableHashStringSet.newBuilder(2)
+                .add("Aa")
+                .add("BB")
+                .add("Aa")
+                .add("AaBB")
+                .build();
+
+        assertEquals(ImmutableSet.of("Aa", "BB", "AaBB"), set);
+        assertFalse(set.contains("C#"));
+        assertFalse(set.contains("BBBB"));
+    }
+
+    @Test
+    public void testEmpty() {
+        final ImmutableHashStringSet set = ImmutableHashStringSet.newBuilder(0).build();
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(""));
+        assertFalse(set.iterator().hasNext());
+    }
+
+    @Test
+    public void testLineProcessor() throws Exception {
+        final Set<String> members = TestUtil.getBlacklistAsSet(100);
+        final String payload = StringUtils.join(members, "\n") + "\n\n";
+
+        final Set<String> processed = new MultilinePlaintextUpdateProcessor<>(ImmutableHashStringSetLineProcessor.SUPPLIER)
+                .process(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(processed instanceof ImmutableHashStringSet);
+        assertEquals(members, processed);
+    }
+}
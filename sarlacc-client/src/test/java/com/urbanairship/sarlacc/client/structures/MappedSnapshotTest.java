@@ -0,0 +1,152 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.processor.snapshot.MappedSnapshotUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.MappedFileConfigSource;
+import com.urbanairship.sarlacc.client.structures.snapshot.MappedStringMap;
+import com.urbanairship.sarlacc.client.structures.snapshot.MappedStringSet;
+import com.urbanairship.sarlacc.client.structures.snapshot.SnapshotWriter;
+import com.urbanairship.sarlacc.client.util.TestUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSet() throws Exception {
+        final Set<String> members = TestUtil.getBlacklistAsSet(1000);
+        final Set<String> others = TestUtil.getBlacklistAsSet(1000);
+        others.removeAll(members);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.writeSet(members, out);
+        final MappedStringSet set = MappedStringSet.open(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(members, set);
+        assertEquals(members.hashCode(), set.hashCode());
+        for (String member : members) {
+            assertTrue(set.contains(new String(member)));
+        }
+        for (String other : others) {
+            assertFalse(set.contains(other));
+        }
+        assertFalse(set.contains(42));
+    }
+
+    @Test
+    public void testCollisionsAndUnicode() throws Exception {
+        // "Aa" and "BB" share a hash code; the others cover two, three and four byte UTF-8 sequences
+        final Set<String> members = ImmutableSet.of("Aa", "BB", "", "café", "日本", "😀", "Aa");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.writeSet(members, out);
+        final MappedStringSet set = MappedStringSet.open(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(members, set);
+        assertFalse(set.contains("C#"));
+        assertFalse(set.contains("cafe"));
+        assertFalse(set.contains("cafés"));
+        assertFalse(set.contains("\ud83d"));
+    }
+
+    @Test
+    public void testMap() throws Exception {
+        final Map<String, String> expected = new HashMap<>();
+        for (String key : TestUtil.getBlacklistAsSet(500)) {
+            expected.put(key, key.toUpperCase());
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.writeMap(expected, out);
+        final MappedStringMap map = MappedStringMap.open(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(expected, map);
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertNull(map.get("missing"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongKind() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.writeSet(ImmutableSet.of("a"), out);
+        MappedStringMap.open(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.writeSet(ImmutableSet.of("a", "b"), out);
+        final byte[] bytes = out.toByteArray();
+        MappedStringSet.open(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws Exception {
+        MappedStringSet.open(ByteBuffer.wrap("just,some,text\n".getBytes()));
+    }
+
+    @Test
+    public void testAtomicReplace() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("list.snapshot");
+        SnapshotWriter.writeSet(ImmutableSet.of("a", "b"), path);
+        final MappedStringSet first = open(path);
+
+        SnapshotWriter.writeSet(ImmutableSet.of("c"), path);
+        final MappedStringSet second = open(path);
+
+        // the old mapping still reads the replaced file
+        assertEquals(ImmutableSet.of("a", "b"), first);
+        assertEquals(ImmutableSet.of("c"), second);
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    private static MappedStringSet open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return MappedStringSet.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Test
+    public void testMappedService() throws Exception {
+        final File file = new File(folder.getRoot(), "map.snapshot");
+        SnapshotWriter.writeMap(ImmutableMap.of("a", "1", "b", "2"), file.toPath());
+
+        final UpdateService<ByteBuffer, Map<String, String>> service = UpdateService.<ByteBuffer, String, String>mapServiceBuilder()
+                .setServiceName("mapped")
+                .setConfigSource(new MappedFileConfigSource(file.getAbsolutePath()))
+                .setUpdateProcessor(MappedSnapshotUpdateProcessor.stringMap())
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            assertEquals(ImmutableMap.of("a", "1", "b", "2"), service.getUpdatingCollection());
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.urbanairship.sarlacc.client.structures.impl.PersistentHashMap;
+import com.urbanairship.sarlacc.client.structures.impl.PersistentHashSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentStructuresTest {
+    @Test
+    public void testSetMatchesHashSetThroughChanges() {
+        final Random random = new Random(11);
+        final Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            expected.add(random.nextInt(20000));
+        }
+
+        PersistentHashSet<Integer> set = PersistentHashSet.copyOf(expected);
+        assertEquals(expected, set);
+
+        // grow well past and then shrink well below the initial segmenting, with a snapshot kept at each step
+        final List<PersistentHashSet<Integer>> versions = new ArrayList<>();
+        final List<Set<Integer>> expectedVersions = new ArrayList<>();
+        for (int round = 0; round < 40; round++) {
+            final boolean growing = round < 20;
+            final Set<Integer> additions = new HashSet<>();
+            final Set<Integer> removals = new HashSet<>();
+            for (int i = 0; i < 2000; i++) {
+                final int value = random.nextInt(100000);
+                if (growing || random.nextInt(10) == 0) {
+                    additions.add(value);
+                } else {
+                    removals.add(value);
+                }
+            }
+            if (!growing) {
+                removals.addAll(new ArrayList<>(expected).subList(0, expected.size() / 3));
+            }
+
+            set = set.withChanges(removals, additions);
+            expected.removeAll(removals);
+            expected.addAll(additions);
+
+            versions.add(set);
+            expectedVersions.add(new HashSet<>(expected));
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(expectedVersions.get(i), versions.get(i));
+            assertEquals(expectedVersions.get(i).size(), versions.get(i).size());
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(expected.contains(i), set.contains(i));
+        }
+    }
+
+    @Test
+    public void testSetChanges() {
+        final PersistentHashSet<String> set = PersistentHashSet.copyOf(ImmutableSet.of("a", "b", "c"));
+
+        assertSame(set, set.withChanges(ImmutableSet.of("x"), ImmutableSet.of("a")));
+        assertSame(set, set.withChanges(Collections.emptySet(), Collections.emptySet()));
+
+        final PersistentHashSet<String> changed = set.withChanges(ImmutableSet.of("a", "b"), ImmutableSet.of("b", "d"));
+        assertEquals(ImmutableSet.of("b", "c", "d"), changed);
+        assertEquals(ImmutableSet.of("a", "b", "c"), set);
+
+        assertTrue(PersistentHashSet.of().isEmpty());
+        assertFalse(set.contains(null));
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void testMapMatchesHashMapThroughChanges() {
+        final Random random = new Random(5);
+        final Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            expected.put("k" + random.nextInt(10000), i);
+        }
+
+        PersistentHashMap<String, Integer> map = PersistentHashMap.copyOf(expected);
+        final Map<String, Integer> original = new HashMap<>(expected);
+        final PersistentHashMap<String, Integer> first = map;
+
+        for (int round = 0; round < 20; round++) {
+            final Map<String, Integer> upserts = new HashMap<>();
+            final Set<String> removals = new HashSet<>();
+            for (int i = 0; i < 500; i++) {
+                final String key = "k" + random.nextInt(10000);
+                if (random.nextBoolean()) {
+                    upserts.put(key, random.nextInt());
+                } else {
+                    removals.add(key);
+                }
+            }
+
+            map = map.withChanges(removals, upserts);
+            expected.keySet().removeAll(removals);
+            expected.putAll(upserts);
+            assertEquals(expected, map);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(expected.get("k" + i), map.get("k" + i));
+            assertEquals(expected.containsKey("k" + i), map.containsKey("k" + i));
+        }
+        assertEquals(original, first);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapRejectsDuplicateKeys() {
+        PersistentHashMap.<String, Integer>newBuilder().put("a", 1).put("b", 2).put("a", 3).build();
+    }
+
+    @Test
+    public void testMapUpsertWinsOverRemoval() {
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.copyOf(ImmutableMap.of("a", 1, "b", 2));
+        assertEquals(ImmutableMap.of("a", 3, "b", 2), map.withChanges(ImmutableSet.of("a"), ImmutableMap.of("a", 3)));
+        assertEquals(ImmutableMap.of("a", 1), map.withChanges(ImmutableSet.of("b", "z"), ImmutableMap.of()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        PersistentHashSet.copyOf(ImmutableSet.of("a")).add("b");
+    }
+}
@@ -0,0 +1,173 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayIntSet;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableArrayLongSet;
+import com.urbanairship.sarlacc.client.structures.primitive.LongMap;
+import com.urbanairship.sarlacc.client.structures.primitive.LongSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveStructuresTest {
+
+    @Test
+    public void testLongSet() {
+        final Random random = new Random();
+        final Set<Long> expected = new HashSet<>();
+        final ImmutableArrayLongSet.Builder builder = ImmutableArrayLongSet.newBuilder();
+        for (int i = 0; i < 1000; i++) {
+            final long value = random.nextLong();
+            expected.add(value);
+            builder.add(value).add(value);
+        }
+        final ImmutableArrayLongSet set = builder.build();
+
+        assertEquals(expected, set);
+        assertEquals(expected.hashCode(), set.hashCode());
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+            assertTrue(set.contains((Object) value));
+        }
+        assertFalse(set.contains(Integer.valueOf(1)));
+        assertTrue(ImmutableArrayLongSet.of().isEmpty());
+    }
+
+    @Test
+    public void testIntSet() {
+        final ImmutableArrayIntSet set = ImmutableArrayIntSet.copyOf(5, -3, 5, Integer.MAX_VALUE, 0);
+
+        assertEquals(ImmutableSet.of(-3, 0, 5, Integer.MAX_VALUE), set);
+        assertTrue(set.contains(-3));
+        assertFalse(set.contains(4));
+        assertFalse(set.contains(Long.valueOf(5)));
+    }
+
+    @Test
+    public void testLongMap() {
+        final Random random = new Random();
+        final Map<Long, String> expected = new HashMap<>();
+        final ImmutableArrayLongMap.Builder<String> builder = ImmutableArrayLongMap.newBuilder(2);
+        while (expected.size() < 1000) {
+            final long key = random.nextLong();
+            if (expected.put(key, Long.toHexString(key)) == null) {
+                builder.put(key, Long.toHexString(key));
+            }
+        }
+        final ImmutableArrayLongMap<String> map = builder.build();
+
+        assertEquals(expected, map);
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey().longValue()));
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertTrue(map.containsKey(entry.getKey().longValue()));
+        }
+        assertNull(map.get(Integer.valueOf(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateMapKeys() {
+        ImmutableArrayIntMap.<String>newBuilder()
+                .put(1, "one")
+                .put(2, "two")
+                .put(1, "uno")
+                .build();
+    }
+
+    @Test
+    public void testIntMap() {
+        final ImmutableArrayIntMap<String> map = ImmutableArrayIntMap.<String>newBuilder()
+                .put(3, "three")
+                .put(-1, "minus one")
+                .put(2, "two")
+                .build();
+
+        assertEquals(ImmutableMap.of(-1, "minus one", 2, "two", 3, "three"), map);
+        assertEquals("two", map.get(2));
+        assertNull(map.get(4));
+    }
+
+    @Test
+    public void testLongSetService() throws Exception {
+        final ConfigSource<InputStream> source = staticSource("1\n 2\n\n9000000000\n");
+
+        final UpdateService<InputStream, LongSet> service = UpdateService.<InputStream>longSetServiceBuilder()
+                .setServiceName("long-set")
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.longSet())
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final LongSet set = service.getUpdatingCollection();
+            assertEquals(3, set.size());
+            assertTrue(set.contains(2));
+            assertTrue(set.contains(9000000000L));
+            assertFalse(set.contains(3));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testLongMapService() throws Exception {
+        final ConfigSource<InputStream> source = staticSource("1,one\n2,two\n");
+
+        final UpdateService<InputStream, LongMap<String>> service = UpdateService.<InputStream, String>longMapServiceBuilder()
+                .setServiceName("long-map")
+                .setConfigSource(source)
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.longMap(line -> {
+                    final String[] split = line.split(",");
+                    return Maps.immutableEntry(Long.parseLong(split[0]), split[1]);
+                }))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final LongMap<String> map = service.getUpdatingCollection();
+            assertEquals("one", map.get(1));
+            assertEquals("two", map.get(2L));
+            assertNull(map.get(3));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static ConfigSource<InputStream> staticSource(String payload) {
+        return new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) {
+                return Optional.empty();
+            }
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package com.urbanairship.sarlacc.client.structures;
+
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.sarlacc.client.UpdateService;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.processor.flatfile.MultilinePlaintextUpdateProcessor;
+import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidMap;
+import com.urbanairship.sarlacc.client.structures.impl.ImmutableUuidSet;
+import com.urbanairship.sarlacc.client.structures.impl.Uuids;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidMap;
+import com.urbanairship.sarlacc.client.structures.primitive.UuidSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UuidStructuresTest {
+
+    @Test
+    public void testParse() {
+        for (int i = 0; i < 1000; i++) {
+            final UUID uuid = UUID.randomUUID();
+            final String text = i % 2 == 0 ? uuid.toString() : uuid.toString().toUpperCase();
+            assertTrue(Uuids.isUuid(text));
+            assertEquals(uuid.getMostSignificantBits(), Uuids.mostSignificantBits(text));
+            assertEquals(uuid.getLeastSignificantBits(), Uuids.leastSignificantBits(text));
+        }
+
+        assertFalse(Uuids.isUuid("1-2-3-4-5"));
+        assertFalse(Uuids.isUuid("0f8fad5b-d9cb-469f-a165-70867728950"));
+        assertFalse(Uuids.isUuid("0f8fad5b-d9cb-469f-a165-70867728950g"));
+        assertFalse(Uuids.isUuid("0f8fad5bd-9cb-469f-a165-70867728950e"));
+        assertFalse(Uuids.isUuid("0f8fad5b-d9cb-469f-a165-70867728950é"));
+    }
+
+    @Test
+    public void testSet() {
+        final Set<UUID> expected = new HashSet<>();
+        final ImmutableUuidSet.Builder builder = ImmutableUuidSet.newBuilder(2);
+        for (int i = 0; i < 1000; i++) {
+            final UUID uuid = UUID.randomUUID();
+            expected.add(uuid);
+            builder.add(uuid).add(uuid.toString());
+        }
+        // sign bits set in both halves
+        final UUID negative = new UUID(-1L, Long.MIN_VALUE);
+        expected.add(negative);
+        builder.add(negative);
+        final ImmutableUuidSet set = builder.build();
+
+        assertEquals(expected, set);
+        assertEquals(expected.hashCode(), set.hashCode());
+        for (UUID uuid : expected) {
+            assertTrue(set.contains(uuid));
+            assertTrue(set.contains(uuid.toString()));
+            assertTrue(set.contains(new StringBuilder(uuid.toString().toUpperCase())));
+            assertFalse(set.contains((Object) uuid.toString()));
+        }
+        // text lookups must not make containsAll() disagree with equals()
+        final Set<String> strings = new HashSet<>();
+        for (UUID uuid : expected) {
+            strings.add(uuid.toString());
+        }
+        assertFalse(set.containsAll(strings));
+        assertNotEquals(strings, set);
+        assertFalse(set.contains(UUID.randomUUID()));
+        assertFalse(set.contains("not a uuid"));
+        assertFalse(set.contains(42));
+        assertTrue(ImmutableUuidSet.of().isEmpty());
+    }
+
+    @Test
+    public void testMap() {
+        final Map<UUID, String> expected = new HashMap<>();
+        final ImmutableUuidMap.Builder<String> builder = ImmutableUuidMap.newBuilder();
+        for (int i = 0; i < 1000; i++) {
+            final UUID uuid = UUID.randomUUID();
+            expected.put(uuid, Integer.toString(i));
+            builder.put(uuid.toString(), Integer.toString(i));
+        }
+        final ImmutableUuidMap<String> map = builder.build();
+
+        assertEquals(expected, map);
+        for (Map.Entry<UUID, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey().toString()));
+            assertTrue(map.containsKey(entry.getKey().toString()));
+            assertFalse(map.containsKey((Object) entry.getKey().toString()));
+        }
+        assertNull(map.get(UUID.randomUUID()));
+        assertNull(map.get("nope"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateMapKeys() {
+        final UUID uuid = UUID.randomUUID();
+        ImmutableUuidMap.<String>newBuilder()
+                .put(uuid, "one")
+                .put(uuid.toString().toUpperCase(), "uno")
+                .build();
+    }
+
+    @Test
+    public void testLineProcessors() throws Exception {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+
+        final String setPayload = first + "\n\n  " + second + " \n" + first + "\n";
+        final Set<UUID> set = MultilinePlaintextUpdateProcessor.uuidSet()
+                .process(new ByteArrayInputStream(setPayload.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(first));
+        assertTrue(set.contains(second));
+
+        final String mapPayload = first + "\t1\n" + second + "\t2\n";
+        final Map<UUID, Integer> map = MultilinePlaintextUpdateProcessor.uuidMap("\t", Integer::parseInt)
+                .process(new ByteArrayInputStream(mapPayload.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(ImmutableMap.of(first, 1, second, 2), map);
+    }
+
+    @Test
+    public void testUuidSetService() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final UpdateService<InputStream, UuidSet> service = UpdateService.<InputStream>uuidSetServiceBuilder()
+                .setServiceName("uuid-set")
+                .setConfigSource(staticSource(id + "\n"))
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.uuidSet())
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final UuidSet set = service.getUpdatingCollection();
+            assertTrue(set.contains(id));
+            assertTrue(set.contains(id.toString()));
+            assertTrue(set.contains(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            assertFalse(set.contains(UUID.randomUUID().toString()));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    public void testUuidMapService() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final UpdateService<InputStream, UuidMap<Integer>> service = UpdateService.<InputStream, Integer>uuidMapServiceBuilder()
+                .setServiceName("uuid-map")
+                .setConfigSource(staticSource(id + "\t1\n"))
+                .setUpdateProcessor(MultilinePlaintextUpdateProcessor.uuidMap("\t", Integer::parseInt))
+                .setFetchInterval(1, TimeUnit.HOURS)
+                .build();
+
+        service.startAsync().awaitRunning();
+        try {
+            final UuidMap<Integer> map = service.getUpdatingCollection();
+            assertEquals(Integer.valueOf(1), map.get(id));
+            assertEquals(Integer.valueOf(1), map.get(id.toString()));
+            assertTrue(map.containsKey(id.toString()));
+            assertNull(map.get("not-a-uuid"));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLine() throws Exception {
+        MultilinePlaintextUpdateProcessor.uuidSet()
+                .process(new ByteArrayInputStream("not-a-uuid\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static ConfigSource<InputStream> staticSource(String payload) {
+        return new ConfigSource<InputStream>() {
+            @Override
+            public Update<InputStream> fetch() {
+                return new Update<>(1, new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Optional<Update<InputStream>> fetchIfNewer(long ifNewerThan) {
+                return Optional.empty();
+            }
+        };
+    }
+}
@@ -10,14 +10,23 @@ import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.urbanairship.sarlacc.client.model.Update;
 import com.urbanairship.sarlacc.client.source.ConfigSource;
+import com.urbanairship.sarlacc.client.source.DigestedInputStream;
+import com.urbanairship.sarlacc.client.source.ParallelRangeInputStream;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Config source backed by an object in Google Cloud Storage
@@ -27,16 +36,32 @@ import java.util.Optional;
  *
  * If using the default credentials, the usual GOOGLE_APPLICATION_CREDENTIALS environment variable pointed at
  * a credential file must be present.
+ *
+ * Large objects can be read over several connections at once, see {@link Builder#setParallelDownload}. Each part is
+ * read from its own channel positioned with seek(), and every channel reads the generation returned by the metadata
+ * request, so the parts always come from the same version of the object. If that generation is deleted or replaced
+ * partway, the download fails rather than resuming.
+ *
+ * Payloads carry the object's MD5 as a {@link DigestedInputStream}, so a
+ * {@link com.urbanairship.sarlacc.client.processor.DigestingUpdateProcessor} skips re-uploads of identical content
+ * without parsing them.
  */
 public class GcsConfigSource implements ConfigSource<InputStream> {
     private final BlobId sourceBlob;
     private final Storage gcsClient;
     private final BlobSourceOption[] blobSourceOptions;
+    private final int parallelism;
+    private final int partSize;
+    private final ExecutorService rangeExecutor;
 
-    private GcsConfigSource(BlobId sourceBlob, Storage gcsClient, BlobSourceOption[] blobSourceOptions) {
+    private GcsConfigSource(BlobId sourceBlob, Storage gcsClient, BlobSourceOption[] blobSourceOptions,
+                            int parallelism, int partSize, ExecutorService rangeExecutor) {
         this.sourceBlob = sourceBlob;
         this.gcsClient = gcsClient;
         this.blobSourceOptions = blobSourceOptions;
+        this.parallelism = parallelism;
+        this.partSize = partSize;
+        this.rangeExecutor = rangeExecutor;
     }
 
     @Override
@@ -63,10 +88,9 @@ public class GcsConfigSource implements ConfigSource<InputStream> {
             return Optional.empty();
         }
 
-        final ReadChannel reader = blob.reader(blobSourceOptions);
         final long generation = blob.getBlobId().getGeneration();
 
-        return Optional.of(new Update<>(generation, Channels.newInputStream(reader)));
+        return Optional.of(new Update<>(generation, open(blob)));
     }
 
     @Override
@@ -82,11 +106,43 @@ public class GcsConfigSource implements ConfigSource<InputStream> {
             throw new IOException("No result found for blob: " + sourceBlob);
         }
 
-        final ReadChannel reader = blob.reader(blobSourceOptions);
         final long generation = blob.getBlobId().getGeneration();
 
 
-        return new Update<>(generation, Channels.newInputStream(reader));
+        return new Update<>(generation, open(blob));
+    }
+
+    private InputStream open(Blob blob) {
+        final InputStream stream;
+        final Long size = blob.getSize();
+        if (parallelism > 0 && size != null && size > partSize) {
+            stream = new ParallelRangeInputStream(
+                    (from, to) -> openRange(blob, from, to), size, partSize, parallelism, rangeExecutor, null);
+        } else {
+            stream = Channels.newInputStream(blob.reader(blobSourceOptions));
+        }
+
+        // composite objects have no MD5
+        final String md5 = blob.getMd5();
+        if (md5 == null) {
+            return stream;
+        }
+        return new DigestedInputStream(stream, HashCode.fromBytes(BaseEncoding.base64().decode(md5)));
+    }
+
+    private InputStream openRange(Blob blob, long from, long to) throws IOException {
+        final ReadChannel reader = blob.reader(blobSourceOptions);
+        try {
+            // ReadChannel has no end position in this client version, so size the first and only chunk to the range
+            // rather than reading past it
+            reader.setChunkSize((int) (to - from));
+            reader.seek(from);
+        } catch (IOException | StorageException e) {
+            reader.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        return new StorageExceptionTranslatingInputStream(ByteStreams.limit(Channels.newInputStream(reader), to - from),
+                blob.getBlobId());
     }
 
     public static GcsConfigSource basicGcsSource(String bucket, String object) {
@@ -100,11 +156,55 @@ public class GcsConfigSource implements ConfigSource<InputStream> {
         return new Builder();
     }
 
+    /**
+     * Surfaces failed reads as IOExceptions, which {@link ParallelRangeInputStream} resumes from, except when the
+     * generation being read has been deleted or replaced, which no retry can fix.
+     */
+    private static class StorageExceptionTranslatingInputStream extends FilterInputStream {
+        private final BlobId blobId;
+
+        private StorageExceptionTranslatingInputStream(InputStream in, BlobId blobId) {
+            super(in);
+            this.blobId = blobId;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (StorageException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (StorageException e) {
+                throw translate(e);
+            }
+        }
+
+        private IOException translate(StorageException e) {
+            if (e.getCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND
+                    || e.getCode() == HttpStatusCodes.STATUS_CODE_PRECONDITION_FAILED) {
+                return new ParallelRangeInputStream.RangeChangedException(String.format(
+                        "Generation %d of %s in bucket %s is gone, it changed during the download",
+                        blobId.getGeneration(), blobId.getName(), blobId.getBucket()), e);
+            }
+            return new IOException(e);
+        }
+    }
+
     public static class Builder {
         private ArrayList<BlobSourceOption> blobSourceOptions = Lists.newArrayList();
 
         private Storage gcsClient;
         private BlobId sourceBlob;
+        private int parallelism = 0;
+        private int partSize = 0;
+        private ExecutorService rangeExecutor;
 
         public Builder setSourceBlob(final BlobId sourceBlob) {
             this.sourceBlob = sourceBlob;
@@ -121,6 +221,28 @@ public class GcsConfigSource implements ConfigSource<InputStream> {
             return this;
         }
 
+        /**
+         * Read objects larger than partSize as parts of that size, over up to parallelism connections at once.
+         * Buffering takes up to (parallelism + 1) * partSize bytes per download, plus a channel buffer of the same
+         * size for each part being read.
+         */
+        public Builder setParallelDownload(final int parallelism, final int partSize) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+            Preconditions.checkArgument(partSize > 0, "partSize must be positive");
+            this.parallelism = parallelism;
+            this.partSize = partSize;
+            return this;
+        }
+
+        /**
+         * Executor for parallel downloads, which needs a thread per part in flight. By default the source creates a
+         * cached pool of daemon threads.
+         */
+        public Builder setRangeExecutorService(final ExecutorService rangeExecutor) {
+            this.rangeExecutor = Preconditions.checkNotNull(rangeExecutor);
+            return this;
+        }
+
         public GcsConfigSource build() {
             Preconditions.checkNotNull(sourceBlob, "sourceBlob must not be null");
             Preconditions.checkNotNull(gcsClient, "gcsClient must not be null");
@@ -128,7 +250,15 @@ public class GcsConfigSource implements ConfigSource<InputStream> {
             final BlobSourceOption[] blobSourceOptions =
                     this.blobSourceOptions.toArray(new BlobSourceOption[this.blobSourceOptions.size()]);
 
-            return new GcsConfigSource(this.sourceBlob, this.gcsClient, blobSourceOptions);
+            ExecutorService executor = this.rangeExecutor;
+            if (parallelism > 0 && executor == null) {
+                executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("sarlacc-gcs-range-%d")
+                        .build());
+            }
+
+            return new GcsConfigSource(this.sourceBlob, this.gcsClient, blobSourceOptions, parallelism, partSize, executor);
         }
     }
 }
@@ -0,0 +1,201 @@
+package com.urbanairship.sarlacc.gcloud;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.RestorableState;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.hash.HashCode;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.urbanairship.sarlacc.client.model.Update;
+import com.urbanairship.sarlacc.client.source.DigestedInputStream;
+import com.urbanairship.sarlacc.client.source.ParallelRangeInputStream;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GcsConfigSourceTest {
+    private static final BlobId BLOB_ID = BlobId.of("bucket", "object", 42L);
+
+    private final List<String> reads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger channels = new AtomicInteger();
+    // a read at this offset fails once with a retryable error
+    private final AtomicLong failAt = new AtomicLong(-1);
+    // if set, every channel opened after the first fails as though the generation had been replaced
+    private volatile boolean replaced = false;
+
+    @Test
+    public void testParallelRangesReassembled() throws Exception {
+        final byte[] payload = randomBytes(9_500);
+        final Update<InputStream> update = source(payload, 4, 1000).fetch();
+        assertEquals(42L, update.version);
+        assertTrue(update.newVal instanceof DigestedInputStream);
+        assertEquals(HashCode.fromBytes(md5(payload)), ((DigestedInputStream) update.newVal).getDigest());
+        assertArrayEquals(payload, readBytes(update));
+
+        // each part seeks its own channel, sized to the part so it doesn't read past it
+        assertEquals(10, reads.size());
+        assertTrue(reads.contains("0 1000"));
+        assertTrue(reads.contains("9000 500"));
+    }
+
+    @Test
+    public void testSmallObjectReadInOnePiece() throws Exception {
+        final byte[] payload = randomBytes(800);
+        assertArrayEquals(payload, readBytes(source(payload, 4, 1000).fetch()));
+        assertEquals(1, reads.size());
+        assertEquals("unpositioned", reads.get(0));
+    }
+
+    @Test
+    public void testResumesFailedRead() throws Exception {
+        final byte[] payload = randomBytes(8_000);
+        failAt.set(5_500);
+
+        assertArrayEquals(payload, readBytes(source(payload, 3, 1000).fetch()));
+        assertTrue(reads.contains("5000 1000"));
+        assertTrue(reads.contains("5500 500"));
+        assertEquals(9, reads.size());
+    }
+
+    @Test
+    public void testReplacedGenerationNotResumed() throws Exception {
+        final byte[] payload = randomBytes(5_000);
+        replaced = true;
+
+        final Update<InputStream> update = source(payload, 4, 1000).fetch();
+        try {
+            readBytes(update);
+            fail("Expected the download to fail once the generation was gone");
+        } catch (ParallelRangeInputStream.RangeChangedException e) {
+            assertTrue(e.getMessage().contains("Generation 42"));
+        }
+        // one channel per part at most, none of them resumed
+        assertTrue(reads.size() <= 5);
+    }
+
+    private GcsConfigSource source(byte[] payload, int parallelism, int partSize) throws Exception {
+        final Blob blob = mock(Blob.class);
+        when(blob.getBlobId()).thenReturn(BLOB_ID);
+        when(blob.getGeneration()).thenReturn(BLOB_ID.getGeneration());
+        when(blob.getSize()).thenReturn((long) payload.length);
+        when(blob.getMd5()).thenReturn(BaseEncoding.base64().encode(md5(payload)));
+        when(blob.reader()).thenAnswer(invocation -> new FakeReadChannel(payload));
+
+        final Storage storage = mock(Storage.class);
+        when(storage.get(BLOB_ID)).thenReturn(blob);
+
+        return GcsConfigSource.builder()
+                .setGcsClient(storage)
+                .setSourceBlob(BLOB_ID)
+                .setParallelDownload(parallelism, partSize)
+                .build();
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    // GCS only publishes MD5 digests, and Guava's Hashing.md5() is deprecated
+    private static byte[] md5(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(bytes);
+    }
+
+    private static byte[] readBytes(Update<InputStream> update) throws Exception {
+        try {
+            return ByteStreams.toByteArray(update.newVal);
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * Serves the payload in chunks no larger than the chunk size, recording each channel's first position and chunk
+     * size as it starts reading.
+     */
+    private class FakeReadChannel implements ReadChannel {
+        private final byte[] payload;
+        private final boolean first;
+        private long position = 0;
+        private int chunkSize = 2 * 1024 * 1024;
+        private boolean seeked = false;
+        private boolean started = false;
+        private boolean open = true;
+
+        private FakeReadChannel(byte[] payload) {
+            this.payload = payload;
+            this.first = channels.getAndIncrement() == 0;
+        }
+
+        @Override
+        public void seek(long position) {
+            this.position = position;
+            this.seeked = true;
+        }
+
+        @Override
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!started) {
+                started = true;
+                reads.add(seeked ? position + " " + chunkSize : "unpositioned");
+            }
+            if (replaced && !first) {
+                throw new StorageException(404, "No such object");
+            }
+            if (position == failAt.get() && failAt.compareAndSet(position, -1)) {
+                throw new StorageException(503, "Backend Error");
+            }
+            if (position >= payload.length) {
+                return -1;
+            }
+
+            long end = Math.min(payload.length, position + Math.min(dst.remaining(), chunkSize));
+            final long fail = failAt.get();
+            if (position < fail && fail < end) {
+                end = fail;
+            }
+            dst.put(payload, (int) position, (int) (end - position));
+            final int read = (int) (end - position);
+            position = end;
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public RestorableState<ReadChannel> capture() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}